@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.bench;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.apocalyptech.minecraft.xray.BlockStorage;
+import com.apocalyptech.minecraft.xray.Chunk;
+import com.apocalyptech.minecraft.xray.RegionFile;
+import com.apocalyptech.minecraft.xray.XRay;
+import com.apocalyptech.minecraft.xray.dtf.DTFBufferReader;
+import com.apocalyptech.minecraft.xray.dtf.Tag;
+
+/**
+ * Measures the work done on each chunk once it's been parsed: constructing
+ * the Chunk itself, and the per-column top-block scan which drawChunkToMap()
+ * does to build the minimap.  Neither of these need a GL context.  Each
+ * invocation processes every chunk in the sample world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkBenchmark
+{
+	@Param({"false", "true"})
+	public boolean nether;
+
+	private ArrayList<SampleWorld.StoredChunk> chunks;
+	private ArrayList<Tag> tags;
+	private ArrayList<short[]> blocks;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		SampleWorld.loadBlocks();
+		RegionFile[] regions = SampleWorld.openRegions(false);
+		chunks = SampleWorld.readChunks(regions);
+		SampleWorld.closeRegions(regions);
+
+		blocks = new ArrayList<short[]>(chunks.size());
+		for (SampleWorld.StoredChunk chunk : chunks)
+		{
+			Tag tag = DTFBufferReader.readTagData(ByteBuffer.wrap(chunk.inflated), Chunk.STORED_TAGS);
+			BlockStorage storage = new Chunk(null, tag).getBlocks();
+			short[] data = new short[storage.getLength()];
+			storage.decode(data);
+			blocks.add(data);
+		}
+	}
+
+	/**
+	 * Chunk takes the Blocks and Data tags out of the data it's given, so
+	 * each invocation needs freshly-parsed tags.
+	 */
+	@Setup(Level.Invocation)
+	public void parseTags() throws Exception
+	{
+		tags = new ArrayList<Tag>(chunks.size());
+		for (SampleWorld.StoredChunk chunk : chunks)
+		{
+			tags.add(DTFBufferReader.readTagData(ByteBuffer.wrap(chunk.inflated), Chunk.STORED_TAGS));
+		}
+	}
+
+	@Benchmark
+	public void constructChunks(Blackhole bh)
+	{
+		for (Tag tag : tags)
+		{
+			bh.consume(new Chunk(null, tag));
+		}
+	}
+
+	@Benchmark
+	public void minimapColumnScan(Blackhole bh)
+	{
+		Color color;
+		for (short[] chunkData : blocks)
+		{
+			for (int zz = 0; zz < 16; zz++)
+			{
+				for (int xx = 0; xx < 16; xx++)
+				{
+					color = XRay.getMinimapColumnColor(chunkData, xx, zz, nether);
+					bh.consume(color);
+				}
+			}
+		}
+	}
+}
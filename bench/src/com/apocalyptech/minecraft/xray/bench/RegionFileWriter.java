@@ -0,0 +1,245 @@
+/*
+ ** 2011 January 5
+ **
+ ** The author disclaims copyright to this source code.  In place of
+ ** a legal notice, here is a blessing:
+ **
+ **    May you do good and not evil.
+ **    May you find forgiveness for yourself and forgive others.
+ **    May you share freely, never taking more than you give.
+ **/
+
+/*
+ * 2011 February 16
+ * 
+ * This source code is based on the work of Scaevolus (see notice above).
+ * It has been slightly modified by Mojang AB (constants instead of magic
+ * numbers, a chunk timestamp header, and auto-formatted according to our
+ * formatter template).
+ * 
+ */
+
+/*
+ * The write half of Mojang's RegionFile, which X-Ray's own RegionFile has
+ * no business using.  It lives here so that test worlds can be generated
+ * (see WorldGenerator); see RegionFile for a description of the format.
+ */
+package com.apocalyptech.minecraft.xray.bench;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.zip.DeflaterOutputStream;
+
+public class RegionFileWriter {
+
+    private static final int VERSION_DEFLATE = 2;
+
+    private static final int SECTOR_BYTES = 4096;
+    private static final int SECTOR_INTS = SECTOR_BYTES / 4;
+
+    static final int CHUNK_HEADER_SIZE = 5;
+    private static final byte emptySector[] = new byte[4096];
+
+    private final File fileName;
+    private RandomAccessFile file;
+    private final int offsets[];
+    private final int chunkTimestamps[];
+    private ArrayList<Boolean> sectorFree;
+
+    /* the timestamp stamped on chunks we write; -1 means the current time */
+    private int timestamp = -1;
+
+    public RegionFileWriter(File path) throws IOException {
+        offsets = new int[SECTOR_INTS];
+        chunkTimestamps = new int[SECTOR_INTS];
+
+        fileName = path;
+
+        file = new RandomAccessFile(path, "rw");
+
+        if (file.length() < SECTOR_BYTES * 2) {
+            // we need to write the chunk offset table
+            file.seek(0);
+            for (int i = 0; i < SECTOR_INTS; ++i) {
+                file.writeInt(0);
+            }
+            // write another sector for the timestamp info
+            for (int i = 0; i < SECTOR_INTS; ++i) {
+                file.writeInt(0);
+            }
+        }
+
+        if ((file.length() & 0xfff) != 0) {
+            // the file size is not a multiple of 4KB, grow it
+            file.seek(file.length());
+            long pad = SECTOR_BYTES - (file.length() & 0xfff);
+            for (int i = 0; i < pad; ++i) {
+                file.write((byte) 0);
+            }
+        }
+
+        /* set up the available sector map */
+        int nSectors = (int) file.length() / SECTOR_BYTES;
+        sectorFree = new ArrayList<Boolean>(nSectors);
+
+        for (int i = 0; i < nSectors; ++i) {
+            sectorFree.add(true);
+        }
+
+        sectorFree.set(0, false); // chunk offset table
+        sectorFree.set(1, false); // for the last modified info
+
+        file.seek(0);
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            int offset = file.readInt();
+            offsets[i] = offset;
+            if (offset != 0 && (offset >> 8) + (offset & 0xFF) <= sectorFree.size()) {
+                for (int sectorNum = 0; sectorNum < (offset & 0xFF); ++sectorNum) {
+                    sectorFree.set((offset >> 8) + sectorNum, false);
+                }
+            }
+        }
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            int lastModValue = file.readInt();
+            chunkTimestamps[i] = lastModValue;
+        }
+    }
+
+    /*
+     * sets the timestamp recorded for chunks written from now on, so that
+     * generated worlds come out byte-for-byte the same every time
+     */
+    public void setTimestamp(int timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public DataOutputStream getChunkDataOutputStream(int x, int z) {
+        if (outOfBounds(x, z)) return null;
+
+        return new DataOutputStream(new DeflaterOutputStream(new ChunkBuffer(x, z)));
+    }
+
+    /*
+     * lets chunk writing be multithreaded by not locking the whole file as a
+     * chunk is serializing -- only writes when serialization is over
+     */
+    class ChunkBuffer extends ByteArrayOutputStream {
+        private int x, z;
+
+        public ChunkBuffer(int x, int z) {
+            super(8096); // initialize to 8KB
+            this.x = x;
+            this.z = z;
+        }
+
+        public void close() throws IOException {
+            RegionFileWriter.this.write(x, z, buf, count);
+        }
+    }
+
+    /* write a chunk at (x,z) with length bytes of data to disk */
+    protected synchronized void write(int x, int z, byte[] data, int length) throws IOException {
+        int offset = getOffset(x, z);
+        int sectorNumber = offset >> 8;
+        int sectorsAllocated = offset & 0xFF;
+        int sectorsNeeded = (length + CHUNK_HEADER_SIZE) / SECTOR_BYTES + 1;
+
+        // maximum chunk size is 1MB
+        if (sectorsNeeded >= 256) {
+            throw new IOException("Chunk " + x + ", " + z + " is too large for " + fileName);
+        }
+
+        if (sectorNumber != 0 && sectorsAllocated == sectorsNeeded) {
+            // we can simply overwrite the old sectors
+            write(sectorNumber, data, length);
+        } else {
+            // we need to allocate new sectors
+
+            // mark the sectors previously used for this chunk as free
+            for (int i = 0; i < sectorsAllocated; ++i) {
+                sectorFree.set(sectorNumber + i, true);
+            }
+
+            // scan for a free space large enough to store this chunk
+            int runStart = sectorFree.indexOf(true);
+            int runLength = 0;
+            if (runStart != -1) {
+                for (int i = runStart; i < sectorFree.size(); ++i) {
+                    if (runLength != 0) {
+                        if (sectorFree.get(i)) runLength++;
+                        else runLength = 0;
+                    } else if (sectorFree.get(i)) {
+                        runStart = i;
+                        runLength = 1;
+                    }
+                    if (runLength >= sectorsNeeded) {
+                        break;
+                    }
+                }
+            }
+
+            if (runLength >= sectorsNeeded) {
+                // we found a free space large enough
+                sectorNumber = runStart;
+                setOffset(x, z, (sectorNumber << 8) | sectorsNeeded);
+                for (int i = 0; i < sectorsNeeded; ++i) {
+                    sectorFree.set(sectorNumber + i, false);
+                }
+                write(sectorNumber, data, length);
+            } else {
+                // no free space large enough found -- we need to grow the file
+                file.seek(file.length());
+                sectorNumber = sectorFree.size();
+                for (int i = 0; i < sectorsNeeded; ++i) {
+                    file.write(emptySector);
+                    sectorFree.add(false);
+                }
+
+                write(sectorNumber, data, length);
+                setOffset(x, z, (sectorNumber << 8) | sectorsNeeded);
+            }
+        }
+        if (timestamp == -1) {
+            setTimestamp(x, z, (int) (System.currentTimeMillis() / 1000L));
+        } else {
+            setTimestamp(x, z, timestamp);
+        }
+    }
+
+    /* write a chunk data to the region file at specified sector number */
+    private void write(int sectorNumber, byte[] data, int length) throws IOException {
+        file.seek((long) sectorNumber * SECTOR_BYTES);
+        file.writeInt(length + 1); // chunk length
+        file.writeByte(VERSION_DEFLATE); // chunk version number
+        file.write(data, 0, length); // chunk data
+    }
+
+    /* is this an invalid chunk coordinate? */
+    private boolean outOfBounds(int x, int z) {
+        return x < 0 || x >= 32 || z < 0 || z >= 32;
+    }
+
+    private int getOffset(int x, int z) {
+        return offsets[x + z * 32];
+    }
+
+    public boolean hasChunk(int x, int z) {
+        return getOffset(x, z) != 0;
+    }
+
+    private void setOffset(int x, int z, int offset) throws IOException {
+        offsets[x + z * 32] = offset;
+        file.seek((x + z * 32) * 4);
+        file.writeInt(offset);
+    }
+
+    private void setTimestamp(int x, int z, int value) throws IOException {
+        chunkTimestamps[x + z * 32] = value;
+        file.seek(SECTOR_BYTES + (x + z * 32) * 4);
+        file.writeInt(value);
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+}
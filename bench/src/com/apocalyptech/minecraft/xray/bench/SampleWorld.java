@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import com.apocalyptech.minecraft.xray.BlockTypeLoadException;
+import com.apocalyptech.minecraft.xray.ChunkInflater;
+import com.apocalyptech.minecraft.xray.MinecraftConstants;
+import com.apocalyptech.minecraft.xray.RegionFile;
+
+/**
+ * Locates and loads the sample world which the benchmarks run against.  This
+ * lives in bench/data/world by default; set the "xray.bench.world" system
+ * property to point the benchmarks at some other (Beta 1.3 format) world.
+ */
+public class SampleWorld
+{
+	public static final String WORLD_PROPERTY = "xray.bench.world";
+
+	private static boolean blocksLoaded = false;
+
+	/**
+	 * A single chunk read from the sample world.
+	 */
+	public static class StoredChunk
+	{
+		public final RegionFile region;
+		public final int x;
+		public final int z;
+
+		// The stored data: a version byte followed by the compressed payload
+		public final byte[] compressed;
+
+		// The chunk's NBT data, after inflating
+		public final byte[] inflated;
+
+		public StoredChunk(RegionFile region, int x, int z, byte[] compressed, byte[] inflated)
+		{
+			this.region = region;
+			this.x = x;
+			this.z = z;
+			this.compressed = compressed;
+			this.inflated = inflated;
+		}
+	}
+
+	/**
+	 * Returns the base directory of the sample world.
+	 */
+	public static File getWorldDir()
+	{
+		return new File(System.getProperty(WORLD_PROPERTY, "bench/data/world"));
+	}
+
+	/**
+	 * Returns all the region files in the sample world.
+	 */
+	public static File[] getRegionFiles() throws IOException
+	{
+		File regionDir = new File(getWorldDir(), "region");
+		File[] files = regionDir.listFiles();
+		if (files == null)
+		{
+			throw new IOException("No sample world found at " + regionDir.getAbsolutePath());
+		}
+		ArrayList<File> regions = new ArrayList<File>();
+		for (File f : files)
+		{
+			if (f.getName().endsWith(".mcr"))
+			{
+				regions.add(f);
+			}
+		}
+		if (regions.size() == 0)
+		{
+			throw new IOException("No region files found in " + regionDir.getAbsolutePath());
+		}
+		return regions.toArray(new File[regions.size()]);
+	}
+
+	/**
+	 * Opens all the sample region files.
+	 */
+	public static RegionFile[] openRegions(boolean mapped) throws IOException
+	{
+		File[] files = getRegionFiles();
+		RegionFile[] regions = new RegionFile[files.length];
+		for (int i = 0; i < files.length; i++)
+		{
+			regions[i] = new RegionFile(files[i], mapped);
+		}
+		return regions;
+	}
+
+	/**
+	 * Reads every chunk in the sample world into memory, both compressed and
+	 * inflated, so that the later stages of the pipeline can be measured without
+	 * the earlier ones.
+	 */
+	public static ArrayList<StoredChunk> readChunks(RegionFile[] regions) throws IOException
+	{
+		ArrayList<StoredChunk> chunks = new ArrayList<StoredChunk>();
+		ChunkInflater inflater = ChunkInflater.get();
+		for (RegionFile region : regions)
+		{
+			for (int x = 0; x < 32; x++)
+			{
+				for (int z = 0; z < 32; z++)
+				{
+					if (!region.hasChunk(x, z))
+					{
+						continue;
+					}
+					ByteBuffer stored = region.getChunkBuffer(x, z);
+					if (stored == null)
+					{
+						continue;
+					}
+					byte[] compressed = new byte[stored.remaining()];
+					stored.duplicate().get(compressed);
+					ByteBuffer inflatedBuf = inflater.inflateToBuffer(ByteBuffer.wrap(compressed));
+					if (inflatedBuf == null)
+					{
+						continue;
+					}
+					byte[] inflated = new byte[inflatedBuf.remaining()];
+					inflatedBuf.get(inflated);
+					chunks.add(new StoredChunk(region, x, z, compressed, inflated));
+				}
+			}
+		}
+		if (chunks.size() == 0)
+		{
+			throw new IOException("No chunks found in the sample world");
+		}
+		return chunks;
+	}
+
+	/**
+	 * Closes the given regions, ignoring errors.
+	 */
+	public static void closeRegions(RegionFile[] regions)
+	{
+		for (RegionFile region : regions)
+		{
+			try
+			{
+				region.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Loads our block definitions, which the minimap needs for its colors.  This
+	 * expects to be run from the top of the source tree, as X-Ray itself does.
+	 */
+	public static synchronized void loadBlocks() throws BlockTypeLoadException
+	{
+		if (!blocksLoaded)
+		{
+			MinecraftConstants.loadMainBlocks();
+			blocksLoaded = true;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.apocalyptech.minecraft.xray.Chunk;
+import com.apocalyptech.minecraft.xray.RegionFile;
+import com.apocalyptech.minecraft.xray.dtf.DTFBufferReader;
+import com.apocalyptech.minecraft.xray.dtf.DTFReader;
+
+/**
+ * Measures parsing already-inflated chunk data into tags, both the old way
+ * (everything, from a stream) and the ways MinecraftLevel actually does it
+ * now (just the tags Chunk needs, from a stream or straight from a buffer).
+ * Each invocation parses every chunk in the sample world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagParseBenchmark
+{
+	private ArrayList<SampleWorld.StoredChunk> chunks;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		RegionFile[] regions = SampleWorld.openRegions(false);
+		chunks = SampleWorld.readChunks(regions);
+		SampleWorld.closeRegions(regions);
+	}
+
+	@Benchmark
+	public void streamFull(Blackhole bh) throws IOException
+	{
+		for (SampleWorld.StoredChunk chunk : chunks)
+		{
+			bh.consume(DTFReader.readTagData(new DataInputStream(new ByteArrayInputStream(chunk.inflated))));
+		}
+	}
+
+	@Benchmark
+	public void streamProjected(Blackhole bh) throws IOException
+	{
+		for (SampleWorld.StoredChunk chunk : chunks)
+		{
+			bh.consume(DTFReader.readTagData(new DataInputStream(new ByteArrayInputStream(chunk.inflated)), Chunk.STORED_TAGS));
+		}
+	}
+
+	@Benchmark
+	public void bufferProjected(Blackhole bh) throws IOException
+	{
+		for (SampleWorld.StoredChunk chunk : chunks)
+		{
+			bh.consume(DTFBufferReader.readTagData(ByteBuffer.wrap(chunk.inflated), Chunk.STORED_TAGS));
+		}
+	}
+}
@@ -0,0 +1,482 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.bench;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.apocalyptech.minecraft.xray.dtf.ByteArrayTag;
+import com.apocalyptech.minecraft.xray.dtf.ByteTag;
+import com.apocalyptech.minecraft.xray.dtf.CompoundTag;
+import com.apocalyptech.minecraft.xray.dtf.DTFWriter;
+import com.apocalyptech.minecraft.xray.dtf.IntTag;
+import com.apocalyptech.minecraft.xray.dtf.ListTag;
+import com.apocalyptech.minecraft.xray.dtf.LongTag;
+import com.apocalyptech.minecraft.xray.dtf.ShortArrayTag;
+import com.apocalyptech.minecraft.xray.dtf.ShortTag;
+import com.apocalyptech.minecraft.xray.dtf.StringTag;
+import com.apocalyptech.minecraft.xray.dtf.Tag;
+
+/**
+ * Generates synthetic Beta 1.3 (region format) worlds, for benchmarking and
+ * testing without needing a Minecraft install.  The terrain is nothing
+ * fancy (rolling hills over stone, with some water), but the things which
+ * matter to X-Ray's load and render paths can be turned up and down: how
+ * many ores and caves there are, how many entities each chunk has, and how
+ * many chunks are missing entirely.
+ *
+ * Output only depends on the options given, so the same options always
+ * produce the same world, byte for byte.  Run with no arguments for usage.
+ */
+public class WorldGenerator
+{
+	// Block IDs we generate
+	private static final short AIR = 0;
+	private static final short STONE = 1;
+	private static final short GRASS = 2;
+	private static final short DIRT = 3;
+	private static final short BEDROCK = 7;
+	private static final short WATER = 9;
+	private static final short GOLD_ORE = 14;
+	private static final short IRON_ORE = 15;
+	private static final short COAL_ORE = 16;
+	private static final short LAPIS_ORE = 21;
+	private static final short DIAMOND_ORE = 56;
+	private static final short REDSTONE_ORE = 73;
+
+	private static final int SEA_LEVEL = 62;
+
+	// Fixed chunk timestamp, so output doesn't depend on when we ran
+	private static final int TIMESTAMP = 1300000000;
+
+	private static final String[] MOBS = new String[] { "Pig", "Sheep", "Cow", "Zombie", "Skeleton", "Creeper" };
+	private static final String[] MOTIVES = new String[] { "Kebab", "Aztec", "Alban", "Bomb", "Plant", "Wasteland" };
+
+	public int size = 64;
+	public long seed = 0;
+	public double oreDensity = 0.01;
+	public double caveDensity = 0.05;
+	public int entities = 2;
+	public double emptyRatio = 0.1;
+	public String levelName = "Generated";
+
+	/**
+	 * Generates a world into the given directory, which mustn't already have
+	 * region data in it.
+	 */
+	public void generate(File dir) throws IOException
+	{
+		File regionDir = new File(dir, "region");
+		if (regionDir.exists())
+		{
+			throw new IOException(regionDir.getPath() + " already exists; won't overwrite it");
+		}
+		if (!regionDir.mkdirs())
+		{
+			throw new IOException("Unable to create " + regionDir.getPath());
+		}
+
+		int min = -(size / 2);
+		int max = min + size - 1;
+		int chunkCount = 0;
+		for (int rx = min >> 5; rx <= max >> 5; rx++)
+		{
+			for (int rz = min >> 5; rz <= max >> 5; rz++)
+			{
+				RegionFileWriter region = null;
+				try
+				{
+					for (int cz = Math.max(min, rz * 32); cz <= Math.min(max, rz * 32 + 31); cz++)
+					{
+						for (int cx = Math.max(min, rx * 32); cx <= Math.min(max, rx * 32 + 31); cx++)
+						{
+							if (isEmpty(cx, cz))
+							{
+								continue;
+							}
+							if (region == null)
+							{
+								region = new RegionFileWriter(new File(regionDir, "r." + rx + "." + rz + ".mcr"));
+								region.setTimestamp(TIMESTAMP);
+							}
+							DataOutputStream stream = region.getChunkDataOutputStream(cx & 31, cz & 31);
+							DTFWriter.writeTagData(generateChunk(cx, cz), stream);
+							stream.close();
+							chunkCount++;
+						}
+					}
+				}
+				finally
+				{
+					if (region != null)
+					{
+						region.close();
+					}
+				}
+			}
+		}
+
+		DTFWriter.writeDTFFile(generateLevelData(), new File(dir, "level.dat"));
+		System.out.println("Generated " + chunkCount + " chunks in " + dir.getPath());
+	}
+
+	/**
+	 * Returns a random number generator for the given chunk, seeded from the
+	 * world seed and the chunk's position so that each chunk comes out the
+	 * same regardless of what order we generate things in.
+	 */
+	private Random chunkRandom(int cx, int cz, long salt)
+	{
+		return new Random(seed * 341873128712L + cx * 132897987541L + cz * 42317861L + salt);
+	}
+
+	private boolean isEmpty(int cx, int cz)
+	{
+		return chunkRandom(cx, cz, 1).nextDouble() < emptyRatio;
+	}
+
+	/**
+	 * Surface height at the given world coordinates
+	 */
+	private int getHeight(int wx, int wz)
+	{
+		double phase = (seed % 1000) / 10.0;
+		double h = 64
+			+ 6 * Math.sin((wx + phase) / 23.0)
+			+ 5 * Math.cos((wz - phase) / 19.0)
+			+ 3 * Math.sin((wx + wz) / 11.0);
+		return Math.max(4, Math.min(120, (int) h));
+	}
+
+	private static int offset(int x, int y, int z)
+	{
+		return y + (z * 128) + (x * 128 * 16);
+	}
+
+	private Tag generateChunk(int cx, int cz)
+	{
+		Random rand = chunkRandom(cx, cz, 2);
+		short[] blocks = new short[32768];
+		byte[] heightMap = new byte[256];
+
+		// Terrain
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				int h = getHeight(cx * 16 + x, cz * 16 + z);
+				heightMap[z * 16 + x] = (byte) (Math.max(h, SEA_LEVEL) + 1);
+				blocks[offset(x, 0, z)] = BEDROCK;
+				for (int y = 1; y <= h; y++)
+				{
+					if (y < h - 3)
+					{
+						blocks[offset(x, y, z)] = STONE;
+					}
+					else if (y < h || h < SEA_LEVEL)
+					{
+						blocks[offset(x, y, z)] = DIRT;
+					}
+					else
+					{
+						blocks[offset(x, y, z)] = GRASS;
+					}
+				}
+				for (int y = h + 1; y <= SEA_LEVEL; y++)
+				{
+					blocks[offset(x, y, z)] = WATER;
+				}
+			}
+		}
+
+		// Ores: each stone block has an oreDensity chance of starting a small vein
+		for (int x = 0; x < 16; x++)
+		{
+			for (int z = 0; z < 16; z++)
+			{
+				for (int y = 1; y < 128; y++)
+				{
+					if (blocks[offset(x, y, z)] == STONE && rand.nextDouble() < oreDensity)
+					{
+						short ore = pickOre(rand, y);
+						int veinSize = 1 + rand.nextInt(4);
+						int vx = x, vy = y, vz = z;
+						for (int i = 0; i < veinSize; i++)
+						{
+							if (blocks[offset(vx, vy, vz)] == STONE)
+							{
+								blocks[offset(vx, vy, vz)] = ore;
+							}
+							vx = Math.max(0, Math.min(15, vx + rand.nextInt(3) - 1));
+							vy = Math.max(1, Math.min(127, vy + rand.nextInt(3) - 1));
+							vz = Math.max(0, Math.min(15, vz + rand.nextInt(3) - 1));
+						}
+					}
+				}
+			}
+		}
+
+		// Caves: carve out spherical pockets until caveDensity of the
+		// chunk's underground is gone (or we've tried enough times)
+		int target = (int) (caveDensity * 16 * 16 * 56);
+		int carved = 0;
+		for (int attempt = 0; attempt < 256 && carved < target; attempt++)
+		{
+			int px = rand.nextInt(16);
+			int pz = rand.nextInt(16);
+			int py = 5 + rand.nextInt(Math.max(1, getHeight(cx * 16 + px, cz * 16 + pz) - 12));
+			int radius = 2 + rand.nextInt(3);
+			for (int x = Math.max(0, px - radius); x <= Math.min(15, px + radius); x++)
+			{
+				for (int z = Math.max(0, pz - radius); z <= Math.min(15, pz + radius); z++)
+				{
+					for (int y = Math.max(1, py - radius); y <= Math.min(127, py + radius); y++)
+					{
+						int dx = x - px, dy = y - py, dz = z - pz;
+						if (dx * dx + dy * dy + dz * dz > radius * radius)
+						{
+							continue;
+						}
+						short block = blocks[offset(x, y, z)];
+						if (block != AIR && block != WATER && block != BEDROCK)
+						{
+							blocks[offset(x, y, z)] = AIR;
+							carved++;
+						}
+					}
+				}
+			}
+		}
+
+		// Entities
+		ArrayList<Tag> entityList = new ArrayList<Tag>();
+		for (int i = 0; i < entities; i++)
+		{
+			int x = rand.nextInt(16);
+			int z = rand.nextInt(16);
+			int wx = cx * 16 + x;
+			int wz = cz * 16 + z;
+			int wy = getHeight(wx, wz) + 1;
+			if (i % 4 == 3)
+			{
+				entityList.add(painting(rand, wx, wy, wz));
+			}
+			else
+			{
+				entityList.add(mob(rand, wx, wy, wz));
+			}
+		}
+
+		ArrayList<Tag> level = new ArrayList<Tag>();
+		level.add(new IntTag("xPos", cx));
+		level.add(new IntTag("zPos", cz));
+		level.add(new ShortArrayTag("Blocks", blocks));
+		level.add(new ByteArrayTag("Data", new byte[16384]));
+		level.add(new ByteArrayTag("SkyLight", new byte[16384]));
+		level.add(new ByteArrayTag("BlockLight", new byte[16384]));
+		level.add(new ByteArrayTag("HeightMap", heightMap));
+		level.add(new ListTag("Entities", entityList));
+		level.add(new ListTag("TileEntities", new ArrayList<Tag>()));
+		level.add(new LongTag("LastUpdate", 0));
+		level.add(new ByteTag("TerrainPopulated", (byte) 1));
+
+		ArrayList<Tag> root = new ArrayList<Tag>();
+		root.add(new CompoundTag("Level", level));
+		return new CompoundTag("", root);
+	}
+
+	private static short pickOre(Random rand, int y)
+	{
+		int choice = rand.nextInt(y < 16 ? 6 : (y < 32 ? 4 : (y < 64 ? 2 : 1)));
+		switch (choice)
+		{
+			case 1:
+				return IRON_ORE;
+			case 2:
+				return GOLD_ORE;
+			case 3:
+				return LAPIS_ORE;
+			case 4:
+				return REDSTONE_ORE;
+			case 5:
+				return DIAMOND_ORE;
+			default:
+				return COAL_ORE;
+		}
+	}
+
+	private static ArrayList<Tag> entityBase(String id, double x, double y, double z, float yaw)
+	{
+		ArrayList<Tag> entity = new ArrayList<Tag>();
+		entity.add(new StringTag("id", id));
+		entity.add(new ListTag("Pos", new double[] { x, y, z }));
+		entity.add(new ListTag("Motion", new double[] { 0, 0, 0 }));
+		entity.add(new ListTag("Rotation", new float[] { yaw, 0 }));
+		entity.add(new ShortTag("Fire", (short) -20));
+		entity.add(new ShortTag("Air", (short) 300));
+		entity.add(new ByteTag("OnGround", (byte) 1));
+		return entity;
+	}
+
+	private static Tag mob(Random rand, int wx, int wy, int wz)
+	{
+		ArrayList<Tag> entity = entityBase(MOBS[rand.nextInt(MOBS.length)],
+				wx + 0.5, wy, wz + 0.5, rand.nextFloat() * 360f);
+		entity.add(new ShortTag("Health", (short) 10));
+		return new CompoundTag("", entity);
+	}
+
+	private static Tag painting(Random rand, int wx, int wy, int wz)
+	{
+		ArrayList<Tag> entity = entityBase("Painting", wx + 0.5, wy + 0.5, wz + 0.5, 0f);
+		entity.add(new ByteTag("Dir", (byte) rand.nextInt(4)));
+		entity.add(new StringTag("Motive", MOTIVES[rand.nextInt(MOTIVES.length)]));
+		entity.add(new IntTag("TileX", wx));
+		entity.add(new IntTag("TileY", wy));
+		entity.add(new IntTag("TileZ", wz));
+		return new CompoundTag("", entity);
+	}
+
+	private Tag generateLevelData()
+	{
+		int spawnY = Math.max(getHeight(0, 0), SEA_LEVEL) + 2;
+
+		ArrayList<Tag> player = new ArrayList<Tag>();
+		player.add(new ListTag("Pos", new double[] { 0.5, spawnY, 0.5 }));
+		player.add(new ListTag("Motion", new double[] { 0, 0, 0 }));
+		player.add(new ListTag("Rotation", new float[] { 0, 0 }));
+		player.add(new IntTag("Dimension", 0));
+
+		ArrayList<Tag> data = new ArrayList<Tag>();
+		data.add(new CompoundTag("Player", player));
+		data.add(new IntTag("SpawnX", 0));
+		data.add(new IntTag("SpawnY", spawnY));
+		data.add(new IntTag("SpawnZ", 0));
+		data.add(new LongTag("RandomSeed", seed));
+		data.add(new LongTag("Time", 0));
+		data.add(new LongTag("LastPlayed", TIMESTAMP * 1000L));
+		data.add(new IntTag("version", 19132));
+		data.add(new StringTag("LevelName", levelName));
+
+		ArrayList<Tag> root = new ArrayList<Tag>();
+		root.add(new CompoundTag("Data", data));
+		return new CompoundTag("", root);
+	}
+
+	private static void usage()
+	{
+		System.err.println("Usage: WorldGenerator [options] <output dir>");
+		System.err.println("  -size <n>         width of the (square) world, in chunks (default 64)");
+		System.err.println("  -seed <n>         random seed (default 0)");
+		System.err.println("  -ores <fraction>  chance that a stone block starts an ore vein (default 0.01)");
+		System.err.println("  -caves <fraction> fraction of the underground to carve out (default 0.05)");
+		System.err.println("  -entities <n>     entities per chunk; every fourth is a painting (default 2)");
+		System.err.println("  -empty <fraction> fraction of chunks to leave out (default 0.1)");
+		System.err.println("  -name <name>      level name (default \"Generated\")");
+		System.exit(1);
+	}
+
+	public static void main(String[] args)
+	{
+		WorldGenerator gen = new WorldGenerator();
+		String output = null;
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				String arg = args[i];
+				if (!arg.startsWith("-"))
+				{
+					if (output != null)
+					{
+						usage();
+					}
+					output = arg;
+					continue;
+				}
+				if (i + 1 >= args.length)
+				{
+					usage();
+				}
+				String value = args[++i];
+				if (arg.equals("-size"))
+				{
+					gen.size = Integer.parseInt(value);
+				}
+				else if (arg.equals("-seed"))
+				{
+					gen.seed = Long.parseLong(value);
+				}
+				else if (arg.equals("-ores"))
+				{
+					gen.oreDensity = Double.parseDouble(value);
+				}
+				else if (arg.equals("-caves"))
+				{
+					gen.caveDensity = Double.parseDouble(value);
+				}
+				else if (arg.equals("-entities"))
+				{
+					gen.entities = Integer.parseInt(value);
+				}
+				else if (arg.equals("-empty"))
+				{
+					gen.emptyRatio = Double.parseDouble(value);
+				}
+				else if (arg.equals("-name"))
+				{
+					gen.levelName = value;
+				}
+				else
+				{
+					usage();
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			usage();
+		}
+		if (output == null || gen.size < 1)
+		{
+			usage();
+		}
+
+		try
+		{
+			gen.generate(new File(output));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Error generating world: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,481 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.Arrays;
+
+/**
+ * Block IDs (or data values) for a whole chunk, stored as compactly as
+ * we can manage.  Offsets are the same as in the chunk's "Blocks" array:
+ * y + (z * 128) + (x * 128 * 16).
+ *
+ * create() looks at the values and picks whichever of these is smallest:
+ * 
+ *   uniform  - every value's the same, so we just keep that one value
+ *   byte     - unsigned bytes, when every value is under 256
+ *   palette  - each distinct value gets an index, and the indexes are
+ *              packed into longs with as few bits as they need
+ *   runs     - each 128-block column is stored as runs of identical
+ *              values going up from Y=0, which suits the usual layers of
+ *              stone, dirt and air
+ *
+ * Once created the storage never changes, so it's safe to read from any
+ * thread.  get() is fine for the odd lookup, but anything which walks the
+ * whole chunk should decode() it into a short[] first.
+ */
+public abstract class BlockStorage
+{
+	public static final int COLUMN_HEIGHT = 128;
+
+	// Rough size of an object or array header, for getByteSize()
+	private static final int OVERHEAD = 16;
+
+	protected final int length;
+
+	protected BlockStorage(int length)
+	{
+		this.length = length;
+	}
+
+	/**
+	 * Returns the value at the given offset
+	 */
+	public abstract short get(int offset);
+
+	/**
+	 * Writes every value into the given array, which must be at least
+	 * getLength() long.
+	 */
+	public abstract void decode(short[] into);
+
+	/**
+	 * Writes the COLUMN_HEIGHT values of the given column into the given
+	 * array, starting at intoOffset.
+	 */
+	public void decodeColumn(int column, short[] into, int intoOffset)
+	{
+		int offset = column * COLUMN_HEIGHT;
+		for (int y = 0; y < COLUMN_HEIGHT; y++)
+		{
+			into[intoOffset + y] = this.get(offset + y);
+		}
+	}
+
+	/**
+	 * Roughly how many bytes of heap we're using
+	 */
+	public abstract long getByteSize();
+
+	/**
+	 * A short name for how we're stored, for reporting
+	 */
+	public abstract String getEncoding();
+
+	public int getLength()
+	{
+		return this.length;
+	}
+
+	/**
+	 * Builds the smallest storage for the given values.  The array isn't
+	 * kept, so the caller is free to reuse it.
+	 */
+	public static BlockStorage create(short[] values)
+	{
+		int length = values.length;
+		if (length == 0)
+		{
+			return new Uniform(0, (short) 0);
+		}
+
+		short value;
+		int max = 0;
+		int min = 0;
+		for (int i = 0; i < length; i++)
+		{
+			value = values[i];
+			if (value > max)
+			{
+				max = value;
+			}
+			else if (value < min)
+			{
+				min = value;
+			}
+		}
+		if (min < 0)
+		{
+			// Shouldn't happen, since the readers widen IDs into 0-255 and data
+			// values are nibbles, but plain 16-bit values are always correct.
+			return new Paletted(values, null, 0, 16);
+		}
+
+		// Build our palette, and count how many runs there'd be per column.  A
+		// value that's the same as the one below it is already in the palette.
+		int[] index = new int[max + 1];
+		short[] palette = new short[Math.min(length, max + 1)];
+		int paletteSize = 0;
+		boolean columns = (length % COLUMN_HEIGHT == 0);
+		int column = (columns ? COLUMN_HEIGHT : length);
+		int runs = 0;
+		short previous;
+		for (int base = 0; base < length; base += column)
+		{
+			previous = -1;
+			for (int i = base; i < base + column; i++)
+			{
+				value = values[i];
+				if (value != previous)
+				{
+					runs++;
+					previous = value;
+					if (index[value] == 0)
+					{
+						palette[paletteSize++] = value;
+						index[value] = paletteSize;
+					}
+				}
+			}
+		}
+
+		if (paletteSize == 1)
+		{
+			return new Uniform(length, palette[0]);
+		}
+
+		int bits = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+		int perLong = 64 / bits;
+		long paletteBytes = ((length + perLong - 1) / perLong) * 8L + paletteSize * 2L;
+		long byteBytes = (max < 256 ? length : Long.MAX_VALUE);
+		long runBytes = (columns ? runs * 3L + (length / COLUMN_HEIGHT + 1) * 2L : Long.MAX_VALUE);
+
+		if (runBytes < paletteBytes && runBytes < byteBytes)
+		{
+			return new ColumnRuns(values, runs);
+		}
+		if (byteBytes <= paletteBytes)
+		{
+			return new Bytes(values);
+		}
+		return new Paletted(values, index, paletteSize, bits);
+	}
+
+	/**
+	 * Builds storage for a packed array of nibbles (the chunk "Data" array),
+	 * or returns null if every nibble is zero.
+	 */
+	public static BlockStorage createFromNibbles(byte[] nibbles)
+	{
+		boolean empty = true;
+		for (int i = 0; i < nibbles.length; i++)
+		{
+			if (nibbles[i] != 0)
+			{
+				empty = false;
+				break;
+			}
+		}
+		if (empty)
+		{
+			return null;
+		}
+		short[] values = new short[nibbles.length * 2];
+		for (int i = 0; i < nibbles.length; i++)
+		{
+			values[i*2] = (short) (nibbles[i] & 0xF);
+			values[i*2+1] = (short) ((nibbles[i] >> 4) & 0xF);
+		}
+		return create(values);
+	}
+
+	/**
+	 * Every value is the same
+	 */
+	private static class Uniform extends BlockStorage
+	{
+		private final short value;
+
+		public Uniform(int length, short value)
+		{
+			super(length);
+			this.value = value;
+		}
+
+		public short get(int offset)
+		{
+			return this.value;
+		}
+
+		public void decode(short[] into)
+		{
+			Arrays.fill(into, 0, this.length, this.value);
+		}
+
+		public void decodeColumn(int column, short[] into, int intoOffset)
+		{
+			Arrays.fill(into, intoOffset, intoOffset + COLUMN_HEIGHT, this.value);
+		}
+
+		public long getByteSize()
+		{
+			return OVERHEAD;
+		}
+
+		public String getEncoding()
+		{
+			return "uniform";
+		}
+	}
+
+	/**
+	 * Unsigned bytes, for when every value's under 256
+	 */
+	private static class Bytes extends BlockStorage
+	{
+		private final byte[] data;
+
+		public Bytes(short[] values)
+		{
+			super(values.length);
+			this.data = new byte[values.length];
+			for (int i = 0; i < values.length; i++)
+			{
+				this.data[i] = (byte) values[i];
+			}
+		}
+
+		public short get(int offset)
+		{
+			return (short) (this.data[offset] & 0xFF);
+		}
+
+		public void decode(short[] into)
+		{
+			for (int i = 0; i < this.length; i++)
+			{
+				into[i] = (short) (this.data[i] & 0xFF);
+			}
+		}
+
+		public long getByteSize()
+		{
+			return OVERHEAD * 2 + this.data.length;
+		}
+
+		public String getEncoding()
+		{
+			return "byte";
+		}
+	}
+
+	/**
+	 * Palette indexes packed into longs, as many per long as will fit without
+	 * straddling two of them.
+	 */
+	private static class Paletted extends BlockStorage
+	{
+		private final short[] palette;
+		private final long[] data;
+		private final int bits;
+		private final int perLong;
+		private final long mask;
+
+		/**
+		 * If index is null, values are stored as-is with the given number of
+		 * bits, without a palette.  Otherwise index maps each value to its
+		 * palette entry plus one (as create() builds it).
+		 */
+		public Paletted(short[] values, int[] index, int paletteSize, int bits)
+		{
+			super(values.length);
+			this.bits = bits;
+			this.perLong = 64 / bits;
+			this.mask = (1L << bits) - 1;
+			this.data = new long[(values.length + this.perLong - 1) / this.perLong];
+			if (index == null)
+			{
+				this.palette = null;
+			}
+			else
+			{
+				this.palette = new short[paletteSize];
+				for (int i = 0; i < index.length; i++)
+				{
+					if (index[i] > 0)
+					{
+						this.palette[index[i] - 1] = (short) i;
+					}
+				}
+			}
+			long packed;
+			int i = 0;
+			for (int w = 0; w < this.data.length; w++)
+			{
+				packed = 0;
+				for (int shift = 0; shift + bits <= 64 && i < values.length; shift += bits, i++)
+				{
+					if (index == null)
+					{
+						packed |= (values[i] & this.mask) << shift;
+					}
+					else
+					{
+						packed |= (long) (index[values[i]] - 1) << shift;
+					}
+				}
+				this.data[w] = packed;
+			}
+		}
+
+		public short get(int offset)
+		{
+			int entry = (int) ((this.data[offset / this.perLong] >>> ((offset % this.perLong) * this.bits)) & this.mask);
+			return (this.palette == null ? (short) entry : this.palette[entry]);
+		}
+
+		public void decode(short[] into)
+		{
+			long packed;
+			int entry;
+			int i = 0;
+			for (int w = 0; w < this.data.length; w++)
+			{
+				packed = this.data[w];
+				for (int n = 0; n < this.perLong && i < this.length; n++, i++)
+				{
+					entry = (int) (packed & this.mask);
+					into[i] = (this.palette == null ? (short) entry : this.palette[entry]);
+					packed >>>= this.bits;
+				}
+			}
+		}
+
+		public long getByteSize()
+		{
+			long bytes = OVERHEAD * 2 + this.data.length * 8L;
+			if (this.palette != null)
+			{
+				bytes += OVERHEAD + this.palette.length * 2L;
+			}
+			return bytes;
+		}
+
+		public String getEncoding()
+		{
+			return "palette";
+		}
+	}
+
+	/**
+	 * Runs of identical values up each column.  Column c's runs are at
+	 * starts[c] up to starts[c+1]; each has its value, and the Y just above
+	 * its top (1-128, kept as an unsigned byte).
+	 */
+	private static class ColumnRuns extends BlockStorage
+	{
+		private final char[] starts;
+		private final short[] values;
+		private final byte[] ends;
+
+		public ColumnRuns(short[] values, int runs)
+		{
+			super(values.length);
+			int columns = values.length / COLUMN_HEIGHT;
+			this.starts = new char[columns + 1];
+			this.values = new short[runs];
+			this.ends = new byte[runs];
+			int run = -1;
+			int offset = 0;
+			for (int c = 0; c < columns; c++)
+			{
+				this.starts[c] = (char) (run + 1);
+				for (int y = 0; y < COLUMN_HEIGHT; y++, offset++)
+				{
+					if (y == 0 || values[offset] != values[offset-1])
+					{
+						run++;
+						this.values[run] = values[offset];
+					}
+					this.ends[run] = (byte) (y + 1);
+				}
+			}
+			this.starts[columns] = (char) (run + 1);
+		}
+
+		public short get(int offset)
+		{
+			int y = offset % COLUMN_HEIGHT;
+			int run = this.starts[offset / COLUMN_HEIGHT];
+			while ((this.ends[run] & 0xFF) <= y)
+			{
+				run++;
+			}
+			return this.values[run];
+		}
+
+		public void decode(short[] into)
+		{
+			int offset = 0;
+			int top;
+			for (int c = 0; c < this.starts.length - 1; c++)
+			{
+				for (int run = this.starts[c]; run < this.starts[c+1]; run++)
+				{
+					top = c * COLUMN_HEIGHT + (this.ends[run] & 0xFF);
+					while (offset < top)
+					{
+						into[offset++] = this.values[run];
+					}
+				}
+			}
+		}
+
+		public void decodeColumn(int column, short[] into, int intoOffset)
+		{
+			int y = 0;
+			int top;
+			for (int run = this.starts[column]; run < this.starts[column+1]; run++)
+			{
+				top = this.ends[run] & 0xFF;
+				while (y < top)
+				{
+					into[intoOffset + y++] = this.values[run];
+				}
+			}
+		}
+
+		public long getByteSize()
+		{
+			return OVERHEAD * 4 + this.starts.length * 2L + this.values.length * 3L;
+		}
+
+		public String getEncoding()
+		{
+			return "runs";
+		}
+	}
+}
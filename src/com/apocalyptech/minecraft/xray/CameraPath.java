@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.Random;
+
+import org.lwjgl.util.vector.Vector3f;
+
+/**
+ * A scripted camera path, for headless benchmark runs.  Each call to step()
+ * moves the camera along by one frame's worth of movement:
+ *
+ *   LINE     - flies straight ahead at the camera's current heading
+ *   SPIRAL   - spirals outwards from the starting point, with the loops
+ *              far enough apart that each one loads in new chunks
+ *   TELEPORT - sits still for a while, then jumps somewhere else nearby,
+ *              like using the Jump dialog over and over
+ *
+ * Paths are deterministic, so that runs can be compared.
+ */
+public class CameraPath
+{
+	public enum TYPE
+	{
+		LINE,
+		SPIRAL,
+		TELEPORT
+	}
+
+	private TYPE type;
+
+	// Blocks per second
+	private float speed;
+
+	// Distance between the loops of the spiral, in blocks
+	private float spiralSpacing;
+
+	// How far teleports can go from the starting point, in blocks, and
+	// how many frames we wait between them
+	private int teleportRadius;
+	private int teleportFrames;
+
+	private Random rand;
+
+	private float startX;
+	private float startZ;
+	private float angle;
+	private int frame;
+
+	public CameraPath(TYPE type, float speed, long seed)
+	{
+		this.type = type;
+		this.speed = speed;
+		this.spiralSpacing = 128f;
+		this.teleportRadius = 512;
+		this.teleportFrames = 120;
+		this.rand = new Random(seed);
+	}
+
+	public TYPE getType()
+	{
+		return this.type;
+	}
+
+	/**
+	 * Remembers where the camera is, as the starting point of the path.
+	 */
+	public void start(FirstPersonCameraController camera)
+	{
+		this.startX = camera.getPosition().x;
+		this.startZ = camera.getPosition().z;
+		this.angle = 0f;
+		this.frame = 0;
+	}
+
+	/**
+	 * Moves the camera along by one frame.  Returns true if the camera
+	 * teleported (and so everything around it will need loading from
+	 * scratch), rather than just moving.
+	 *
+	 * @param camera
+	 * @param timeDelta Length of this frame, in seconds
+	 */
+	public boolean step(FirstPersonCameraController camera, float timeDelta)
+	{
+		this.frame++;
+		float distance = this.speed * timeDelta;
+		Vector3f pos = camera.getPosition();
+		switch (this.type)
+		{
+			case LINE:
+				camera.walkForward(distance, true);
+				return false;
+
+			case SPIRAL:
+				// An Archimedean spiral: the radius grows by spiralSpacing every
+				// loop.  We advance the angle so that we cover about the same
+				// distance each frame, however far out we are.
+				float radius = this.spiralSpacing * this.angle / (2f * (float) Math.PI);
+				this.angle += distance / Math.max(radius, this.spiralSpacing / 4f);
+				radius = this.spiralSpacing * this.angle / (2f * (float) Math.PI);
+				pos.x = this.startX + radius * (float) Math.cos(this.angle);
+				pos.z = this.startZ + radius * (float) Math.sin(this.angle);
+				return false;
+
+			case TELEPORT:
+				if (this.frame % this.teleportFrames != 0)
+				{
+					return false;
+				}
+				pos.x = this.startX + this.rand.nextInt(this.teleportRadius * 2) - this.teleportRadius;
+				pos.z = this.startZ + this.rand.nextInt(this.teleportRadius * 2) - this.teleportRadius;
+				return true;
+		}
+		return false;
+	}
+}
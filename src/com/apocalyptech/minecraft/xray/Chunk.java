@@ -38,6 +38,7 @@ import com.apocalyptech.minecraft.xray.dtf.StringTag;
 import com.apocalyptech.minecraft.xray.dtf.ListTag;
 import com.apocalyptech.minecraft.xray.dtf.IntTag;
 import com.apocalyptech.minecraft.xray.dtf.Tag;
+import com.apocalyptech.minecraft.xray.dtf.TagProjection;
 
 import static com.apocalyptech.minecraft.xray.MinecraftConstants.*;
 
@@ -50,6 +51,21 @@ import static com.apocalyptech.minecraft.xray.MinecraftConstants.*;
  * that much of the rendering code would be improved by moving to those if possible.
  */
 public class Chunk {
+	// The only parts of a chunk file we actually use.  Everything else (lighting,
+	// heightmaps, tile entities, and most of each entity) is skipped while reading.
+	// Keep this in sync with what the constructor and PaintingEntity read.
+	public static final TagProjection STORED_TAGS = new TagProjection()
+		.add("Level.xPos")
+		.add("Level.zPos")
+		.add("Level.Blocks")
+		.add("Level.Data")
+		.add("Level.Entities.id")
+		.add("Level.Entities.Motive")
+		.add("Level.Entities.Dir")
+		.add("Level.Entities.TileX")
+		.add("Level.Entities.TileY")
+		.add("Level.Entities.TileZ");
+
 	private int displayListNum;
 	private int transparentListNum;
 	private int selectedDisplayListNum;
@@ -58,13 +74,58 @@ public class Chunk {
 	public boolean isDirty;
 	public boolean isSelectedDirty;
 	public boolean isOnMinimap;
+
+	// Which stored copy of this chunk we were loaded from (see RegionFile.getChunkOffset()
+	// and RegionFile.getChunkTimestamp()), so a reload can tell if it's changed on disk.
+	// Both are zero for chunks which didn't come from a region file.
+	public int storedOffset;
+	public int storedTimestamp;
 	private CompoundTag chunkData;
-	private ShortArrayTag blockData;
-	private ByteArrayTag mapData;
+	private BlockStorage blocks;
+	private BlockStorage blockMeta;
+	private ChunkSections sections;
+	private ChunkOres ores;
+
+	// Where our torches are, and which of our blocks are near one (see
+	// hasAdjacentTorch()), with the radius it was built for
+	private char[] torches;
+	private long[] torchField;
+	private boolean torchFieldBuilt;
+	private int torchFieldRadius;
 	private ArrayList<PaintingEntity> paintings;
 	
 	private MinecraftLevel level;
 
+	// The chunks next to us, indexed by NORTH/SOUTH/EAST/WEST, or null where
+	// nothing's loaded.  Kept up to date by MinecraftLevel as chunks come and go;
+	// see setNeighbour().
+	public static final int NORTH = 0;
+	public static final int SOUTH = 1;
+	public static final int EAST = 2;
+	public static final int WEST = 3;
+	private final Chunk[] neighbours = new Chunk[4];
+
+	// What we're costing in memory (see ChunkResidency): our NBT data besides the
+	// block arrays, and how many vertices were in our display lists when they
+	// were last compiled.
+	private long tagBytes;
+	private int solidVertices;
+	private int selectedVertices;
+
+	// Our block IDs decoded into a plain array, for renderWorld() to walk.  That's
+	// only ever done on the render thread, so one array does for every chunk, and
+	// we remember whose blocks are in it so the solid and transparent passes (and
+	// the getAdj*BlockId() lookups in between) share the work.
+	private static short[] decodedBlocks = new short[BLOCKSPERCOLUMN * 16];
+	private static Chunk decodedChunk;
+
+	// Likewise, the edge of each neighbour which faces us, so the getAdj*BlockId()
+	// lookups past our own edge are plain array reads.  Each is indexed by
+	// (position along the edge * BLOCKSPERROW) + y, and borderChunks says whose
+	// edge is in there.  See getBorder().
+	private static short[][] borderBlocks = new short[4][BLOCKSPERCOLUMN];
+	private static Chunk[] borderChunks = new Chunk[4];
+
 	private final float fence_postsize = .125f;
 	private final float fence_postsize_h = fence_postsize/2f;
 	private final float fence_slat_height = .1875f;
@@ -98,15 +159,26 @@ public class Chunk {
 		this.x = xPosTag.value;
 		this.z = zPosTag.value;
 		
-		blockData = (ShortArrayTag) levelTag.getTagWithName("Blocks");
-		mapData = (ByteArrayTag) levelTag.getTagWithName("Data");
+		// We keep our blocks and data values in compact storage instead, so there's
+		// no need for the tags to hang around.
+		ShortArrayTag blockData = (ShortArrayTag) levelTag.removeTagWithName("Blocks");
+		ByteArrayTag mapData = (ByteArrayTag) levelTag.removeTagWithName("Data");
+		blocks = BlockStorage.create(blockData.value);
+		sections = new ChunkSections(blockData.value);
+		ores = new ChunkOres(blockData.value, (level == null ? null : level.HIGHLIGHT_ORES));
+		torches = TorchField.findTorches(blockData.value);
+		if (mapData != null)
+		{
+			blockMeta = BlockStorage.createFromNibbles(mapData.value);
+		}
 		
 		this.isDirty = true;
 		this.isSelectedDirty = true;
 
-		displayListNum = GL11.glGenLists(1);
-		selectedDisplayListNum = GL11.glGenLists(1);
-		transparentListNum = GL11.glGenLists(1);
+		// Our display lists get allocated the first time we're rendered, rather than
+		// here, so that chunks can be constructed without a GL context.
+
+		this.tagBytes = ChunkResidency.estimateTagBytes(this.chunkData);
 		
 		//System.out.println(data);
 		//System.exit(0);
@@ -116,106 +188,234 @@ public class Chunk {
 		return this.chunkData;
 	}
 	
-	public ShortArrayTag getMapData() {
-		return this.blockData;
+	public BlockStorage getBlocks() {
+		return this.blocks;
+	}
+
+	public ChunkSections getSections() {
+		return this.sections;
+	}
+
+	public ChunkOres getOres() {
+		return this.ores;
+	}
+
+	public char[] getTorches() {
+		return this.torches;
+	}
+
+	public boolean hasTorches() {
+		return this.torches.length > 0;
+	}
+
+	/**
+	 * Our block IDs as a plain array.  Only the render thread may call this,
+	 * and the array is only good until the next chunk's blocks are decoded.
+	 */
+	private short[] getDecodedBlocks() {
+		if (decodedChunk != this)
+		{
+			blocks.decode(decodedBlocks);
+			decodedChunk = this;
+		}
+		return decodedBlocks;
 	}
 
 	/**
-	 * Gets the Block ID of the block immediately to the north.  This might
-	 * load in the adjacent chunk, if needed.  Will return -1 if that adjacent
-	 * chunk can't be found.
+	 * Sets the chunk next to us on the given side (null if it's been unloaded).
+	 * Our edge faces on that side were culled against whatever was there before,
+	 * so a newly-arrived neighbour means we need re-rendering; one going away
+	 * doesn't, since it's out of range by then.
+	 */
+	public void setNeighbour(int side, Chunk neighbour) {
+		if (this.neighbours[side] == neighbour)
+		{
+			return;
+		}
+		this.neighbours[side] = neighbour;
+		if (neighbour != null)
+		{
+			this.isDirty = true;
+		}
+	}
+
+	public Chunk getNeighbour(int side) {
+		return this.neighbours[side];
+	}
+
+	/**
+	 * The side opposite the given one
+	 */
+	public static int opposite(int side) {
+		return side ^ 1;
+	}
+
+	/**
+	 * Writes the blocks along our given edge into the given array, indexed by
+	 * (position along the edge * BLOCKSPERROW) + y.
+	 */
+	private void decodeEdge(int side, short[] into) {
+		for (int i = 0; i < 16; i++)
+		{
+			switch (side)
+			{
+				case NORTH:
+					blocks.decodeColumn(i, into, i * BLOCKSPERROW);
+					break;
+				case SOUTH:
+					blocks.decodeColumn(15 * 16 + i, into, i * BLOCKSPERROW);
+					break;
+				case EAST:
+					blocks.decodeColumn(i * 16, into, i * BLOCKSPERROW);
+					break;
+				default:
+					blocks.decodeColumn(i * 16 + 15, into, i * BLOCKSPERROW);
+					break;
+			}
+		}
+	}
+
+	/**
+	 * The edge of our neighbour on the given side which faces us, or null if
+	 * that neighbour isn't loaded.  Only the render thread may call this, and
+	 * the array is only good until another chunk's edge is decoded.
+	 */
+	private short[] getBorder(int side) {
+		Chunk other = this.neighbours[side];
+		if (other == null)
+		{
+			return null;
+		}
+		if (borderChunks[side] != other)
+		{
+			other.decodeEdge(opposite(side), borderBlocks[side]);
+			borderChunks[side] = other;
+		}
+		return borderBlocks[side];
+	}
+
+	/**
+	 * Bytes used by our block IDs and data values
+	 */
+	public long getBlockBytes() {
+		long bytes = blocks.getByteSize() + ores.getByteSize() + torches.length * 2L;
+		if (torchField != null)
+		{
+			bytes += torchField.length * 8L;
+		}
+		if (blockMeta != null)
+		{
+			bytes += blockMeta.getByteSize();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Roughly how many bytes the rest of our NBT data uses
+	 */
+	public long getTagBytes() {
+		return this.tagBytes;
+	}
+
+	/**
+	 * Roughly how many bytes our compiled display lists use
+	 */
+	public long getDisplayListBytes() {
+		return (long) (this.solidVertices + this.selectedVertices) * ChunkResidency.BYTES_PER_VERTEX;
+	}
+
+	/**
+	 * Gets the Block ID of the block immediately to the north.  Will return
+	 * -1 if that's in an adjacent chunk which isn't loaded.
 	 */
 	private short getAdjNorthBlockId(int x, int y, int z, int blockOffset)
 	{
 		if (x > 0)
 		{
-			return blockData.value[blockOffset-BLOCKSPERCOLUMN];
+			return this.getDecodedBlocks()[blockOffset-BLOCKSPERCOLUMN];
 		}
 		else
 		{
-			Chunk otherChunk = level.getChunk(this.x-1, this.z);
-			if (otherChunk == null)
+			short[] border = this.getBorder(NORTH);
+			if (border == null)
 			{
 				return -1;
 			}
 			else
 			{
-				return otherChunk.getBlock(15, y, z);
+				return border[z * BLOCKSPERROW + y];
 			}
 		}
 	}
 
 	/**
-	 * Gets the Block ID of the block immediately to the south.  This might
-	 * load in the adjacent chunk, if needed.  Will return -1 if that adjacent
-	 * chunk can't be found.
+	 * Gets the Block ID of the block immediately to the south.  Will return
+	 * -1 if that's in an adjacent chunk which isn't loaded.
 	 */
 	private short getAdjSouthBlockId(int x, int y, int z, int blockOffset)
 	{
 		if (x < 15)
 		{
-			return blockData.value[blockOffset+BLOCKSPERCOLUMN];
+			return this.getDecodedBlocks()[blockOffset+BLOCKSPERCOLUMN];
 		}
 		else
 		{
-			Chunk otherChunk = level.getChunk(this.x+1, this.z);
-			if (otherChunk == null)
+			short[] border = this.getBorder(SOUTH);
+			if (border == null)
 			{
 				return -1;
 			}
 			else
 			{
-				return otherChunk.getBlock(0, y, z);
+				return border[z * BLOCKSPERROW + y];
 			}
 		}
 	}
 
 	/**
-	 * Gets the Block ID of the block immediately to the east.  This might
-	 * load in the adjacent chunk, if needed.  Will return -1 if that adjacent
-	 * chunk can't be found.
+	 * Gets the Block ID of the block immediately to the east.  Will return
+	 * -1 if that's in an adjacent chunk which isn't loaded.
 	 */
 	private short getAdjEastBlockId(int x, int y, int z, int blockOffset)
 	{
 		if (z > 0)
 		{
-			return blockData.value[blockOffset-BLOCKSPERROW];
+			return this.getDecodedBlocks()[blockOffset-BLOCKSPERROW];
 		}
 		else
 		{
-			Chunk otherChunk = level.getChunk(this.x, this.z-1);
-			if (otherChunk == null)
+			short[] border = this.getBorder(EAST);
+			if (border == null)
 			{
 				return -1;
 			}
 			else
 			{
-				return otherChunk.getBlock(x, y, 15);
+				return border[x * BLOCKSPERROW + y];
 			}
 		}
 	}
 
 	/**
-	 * Gets the Block ID of the block immediately to the west.  This might
-	 * load in the adjacent chunk, if needed.  Will return -1 if that adjacent
-	 * chunk can't be found.
+	 * Gets the Block ID of the block immediately to the west.  Will return
+	 * -1 if that's in an adjacent chunk which isn't loaded.
 	 */
 	private short getAdjWestBlockId(int x, int y, int z, int blockOffset)
 	{
 		if (z < 15)
 		{
-			return blockData.value[blockOffset+BLOCKSPERROW];
+			return this.getDecodedBlocks()[blockOffset+BLOCKSPERROW];
 		}
 		else
 		{
-			Chunk otherChunk = level.getChunk(this.x, this.z+1);
-			if (otherChunk == null)
+			short[] border = this.getBorder(WEST);
+			if (border == null)
 			{
 				return -1;
 			}
 			else
 			{
-				return otherChunk.getBlock(x, y, 0);
+				return border[x * BLOCKSPERROW + y];
 			}
 		}
 	}
@@ -238,19 +438,19 @@ public class Chunk {
 	 * @param xzScale How large the rest of the block is.  0.5f is full-size, 0.1 would be tiny.
 	 */
 	public void renderNorthSouth(int t, float x, float y, float z, float yHeightOffset, float xzScale) {
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x-xzScale, y+yHeightOffset, z+xzScale);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x-xzScale, y+yHeightOffset, z+xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x-xzScale, y+yHeightOffset, z-xzScale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x-xzScale, y+yHeightOffset, z-xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t],precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x-xzScale, y-xzScale, z+xzScale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t],precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x-xzScale, y-xzScale, z+xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x-xzScale, y-xzScale, z-xzScale);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x-xzScale, y-xzScale, z-xzScale);
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -301,19 +501,19 @@ public class Chunk {
 				break;
 		}
 		
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(x1, y1);
-			GL11.glVertex3f(x-scale, y-scale, z+scale);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(x1, y1);
+			ChunkGL.glVertex3f(x-scale, y-scale, z+scale);
 	
-			GL11.glTexCoord2f(x2, y2);
-			GL11.glVertex3f(x-scale, y-scale, z-scale);
+			ChunkGL.glTexCoord2f(x2, y2);
+			ChunkGL.glVertex3f(x-scale, y-scale, z-scale);
 	
-			GL11.glTexCoord2f(x3, y3);
-			GL11.glVertex3f(x+scale, y-scale, z+scale);
+			ChunkGL.glTexCoord2f(x3, y3);
+			ChunkGL.glVertex3f(x+scale, y-scale, z+scale);
 	
-			GL11.glTexCoord2f(x4, y4);
-			GL11.glVertex3f(x+scale, y-scale, z-scale);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(x4, y4);
+			ChunkGL.glVertex3f(x+scale, y-scale, z-scale);
+		ChunkGL.glEnd();
 		
 	}
 	
@@ -334,19 +534,19 @@ public class Chunk {
 	 * @param scale ".5" is a full-sized block, ".1" would be tiny.
 	 */
 	public void renderTopDown(int t, float x, float y, float z, float scale) {
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x-scale, y-scale, z+scale);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x-scale, y-scale, z+scale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x-scale, y-scale, z-scale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x-scale, y-scale, z-scale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x+scale, y-scale, z+scale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x+scale, y-scale, z+scale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x+scale, y-scale, z-scale);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x+scale, y-scale, z-scale);
+		ChunkGL.glEnd();
 	}
 	
 
@@ -368,19 +568,19 @@ public class Chunk {
 	 * @param xzScale How large the rest of the block is.  0.5f is full-size, 0.1 would be tiny.
 	 */
 	public void renderWestEast(int t, float x, float y, float z, float yHeightOffset, float xzScale) {
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x-xzScale, y+yHeightOffset, z-xzScale);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x-xzScale, y+yHeightOffset, z-xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
-			GL11.glVertex3f(x+xzScale, y+yHeightOffset, z-xzScale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]);
+			ChunkGL.glVertex3f(x+xzScale, y+yHeightOffset, z-xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x-xzScale, y-xzScale, z-xzScale);
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t], precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x-xzScale, y-xzScale, z-xzScale);
 	
-			GL11.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
-			GL11.glVertex3f(x+xzScale, y-xzScale, z-xzScale);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(precalcSpriteSheetToTextureX[t]+TEX16, precalcSpriteSheetToTextureY[t]+TEX32);
+			ChunkGL.glVertex3f(x+xzScale, y-xzScale, z-xzScale);
+		ChunkGL.glEnd();
 	}
 
 
@@ -413,19 +613,19 @@ public class Chunk {
 		float tdx = TEX256*tex_width;
 		float tdy = TEX512*tex_height;
 
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x1, y+height, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x1, y+height, z1);
 	
-			GL11.glTexCoord2f(bx+tdx, by);
-			GL11.glVertex3f(x2, y+height, z2);
+			ChunkGL.glTexCoord2f(bx+tdx, by);
+			ChunkGL.glVertex3f(x2, y+height, z2);
 	
-			GL11.glTexCoord2f(bx, by+tdy);
-			GL11.glVertex3f(x1, y, z1);
+			ChunkGL.glTexCoord2f(bx, by+tdy);
+			ChunkGL.glVertex3f(x1, y, z1);
 	
-			GL11.glTexCoord2f(bx+tdx, by+tdy);
-			GL11.glVertex3f(x2, y, z2);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+tdx, by+tdy);
+			ChunkGL.glVertex3f(x2, y, z2);
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -448,19 +648,19 @@ public class Chunk {
 	 */
 	public void renderNonstandardVertical(float tx, float ty, float tdx, float tdy, float x1, float y1, float z1, float x2, float y2, float z2)
 	{
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(tx, ty);
-			GL11.glVertex3f(x1, y1, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(tx, ty);
+			ChunkGL.glVertex3f(x1, y1, z1);
 			
-			GL11.glTexCoord2f(tx+tdx, ty);
-			GL11.glVertex3f(x2, y1, z2);
+			ChunkGL.glTexCoord2f(tx+tdx, ty);
+			ChunkGL.glVertex3f(x2, y1, z2);
 			
-			GL11.glTexCoord2f(tx, ty+tdy);
-			GL11.glVertex3f(x1, y2, z1);
+			ChunkGL.glTexCoord2f(tx, ty+tdy);
+			ChunkGL.glVertex3f(x1, y2, z1);
 			
-			GL11.glTexCoord2f(tx+tdx, ty+tdy);
-			GL11.glVertex3f(x2, y2, z2);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(tx+tdx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y2, z2);
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -486,19 +686,19 @@ public class Chunk {
 	 */
 	public void renderNonstandardVerticalTexRotate(float tx, float ty, float tdx, float tdy, float x1, float y1, float z1, float x2, float y2, float z2)
 	{
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(tx+tdx, ty);
-			GL11.glVertex3f(x1, y1, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(tx+tdx, ty);
+			ChunkGL.glVertex3f(x1, y1, z1);
 			
-			GL11.glTexCoord2f(tx+tdx, ty+tdy);
-			GL11.glVertex3f(x2, y1, z2);
+			ChunkGL.glTexCoord2f(tx+tdx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y1, z2);
 			
-			GL11.glTexCoord2f(tx, ty);
-			GL11.glVertex3f(x1, y2, z1);
+			ChunkGL.glTexCoord2f(tx, ty);
+			ChunkGL.glVertex3f(x1, y2, z1);
 			
-			GL11.glTexCoord2f(tx, ty+tdy);
-			GL11.glVertex3f(x2, y2, z2);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(tx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y2, z2);
+		ChunkGL.glEnd();
 	}
 
 	/**
@@ -528,37 +728,37 @@ public class Chunk {
 		float tdx = TEX256*tex_width;
 		float tdy = TEX512*tex_height;
 
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
 			
 			if (flip_tex)
 			{
-				GL11.glTexCoord2f(bx, by);
-				GL11.glVertex3f(x1, y, z2);
+				ChunkGL.glTexCoord2f(bx, by);
+				ChunkGL.glVertex3f(x1, y, z2);
 		
-				GL11.glTexCoord2f(bx+tdx, by);
-				GL11.glVertex3f(x2, y, z2);
+				ChunkGL.glTexCoord2f(bx+tdx, by);
+				ChunkGL.glVertex3f(x2, y, z2);
 		
-				GL11.glTexCoord2f(bx, by+tdy);
-				GL11.glVertex3f(x1, y, z1);
+				ChunkGL.glTexCoord2f(bx, by+tdy);
+				ChunkGL.glVertex3f(x1, y, z1);
 		
-				GL11.glTexCoord2f(bx+tdx, by+tdy);
-				GL11.glVertex3f(x2, y, z1);
+				ChunkGL.glTexCoord2f(bx+tdx, by+tdy);
+				ChunkGL.glVertex3f(x2, y, z1);
 			}
 			else
 			{
-				GL11.glTexCoord2f(bx, by);
-				GL11.glVertex3f(x1, y, z1);
+				ChunkGL.glTexCoord2f(bx, by);
+				ChunkGL.glVertex3f(x1, y, z1);
 		
-				GL11.glTexCoord2f(bx+tdx, by);
-				GL11.glVertex3f(x1, y, z2);
+				ChunkGL.glTexCoord2f(bx+tdx, by);
+				ChunkGL.glVertex3f(x1, y, z2);
 		
-				GL11.glTexCoord2f(bx, by+tdy);
-				GL11.glVertex3f(x2, y, z1);
+				ChunkGL.glTexCoord2f(bx, by+tdy);
+				ChunkGL.glVertex3f(x2, y, z1);
 		
-				GL11.glTexCoord2f(bx+tdx, by+tdy);
-				GL11.glVertex3f(x2, y, z2);
+				ChunkGL.glTexCoord2f(bx+tdx, by+tdy);
+				ChunkGL.glVertex3f(x2, y, z2);
 			}
-		GL11.glEnd();
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -581,19 +781,19 @@ public class Chunk {
 		float bx = precalcSpriteSheetToTextureX[t];
 		float by = precalcSpriteSheetToTextureY[t];
 
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x1, y, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x1, y, z1);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x2, y, z2);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x2, y, z2);
 	
-			GL11.glTexCoord2f(bx, by+TEX32);
-			GL11.glVertex3f(x3, y, z3);
+			ChunkGL.glTexCoord2f(bx, by+TEX32);
+			ChunkGL.glVertex3f(x3, y, z3);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x4, y, z4);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x4, y, z4);
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -612,19 +812,19 @@ public class Chunk {
 	 * @param y
 	 */
 	public void renderNonstandardHorizontal(float tx, float ty, float tdx, float tdy, float x1, float z1, float x2, float z2, float y) {
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(tx, ty);
-			GL11.glVertex3f(x1, y, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(tx, ty);
+			ChunkGL.glVertex3f(x1, y, z1);
 	
-			GL11.glTexCoord2f(tx+tdx, ty);
-			GL11.glVertex3f(x1, y, z2);
+			ChunkGL.glTexCoord2f(tx+tdx, ty);
+			ChunkGL.glVertex3f(x1, y, z2);
 	
-			GL11.glTexCoord2f(tx, ty+tdy);
-			GL11.glVertex3f(x2, y, z1);
+			ChunkGL.glTexCoord2f(tx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y, z1);
 	
-			GL11.glTexCoord2f(tx+tdx, ty+tdy);
-			GL11.glVertex3f(x2, y, z2);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(tx+tdx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y, z2);
+		ChunkGL.glEnd();
 	}
 
 	/**
@@ -646,19 +846,19 @@ public class Chunk {
 	 * @param y
 	 */
 	public void renderNonstandardHorizontalTexRotate(float tx, float ty, float tdx, float tdy, float x1, float z1, float x2, float z2, float y) {
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(tx+tdx, ty);
-			GL11.glVertex3f(x1, y, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(tx+tdx, ty);
+			ChunkGL.glVertex3f(x1, y, z1);
 	
-			GL11.glTexCoord2f(tx+tdx, ty+tdy);
-			GL11.glVertex3f(x1, y, z2);
+			ChunkGL.glTexCoord2f(tx+tdx, ty+tdy);
+			ChunkGL.glVertex3f(x1, y, z2);
 	
-			GL11.glTexCoord2f(tx, ty);
-			GL11.glVertex3f(x2, y, z1);
+			ChunkGL.glTexCoord2f(tx, ty);
+			ChunkGL.glVertex3f(x2, y, z1);
 	
-			GL11.glTexCoord2f(tx, ty+tdy);
-			GL11.glVertex3f(x2, y, z2);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(tx, ty+tdy);
+			ChunkGL.glVertex3f(x2, y, z2);
+		ChunkGL.glEnd();
 	}
 
 	/**
@@ -687,19 +887,19 @@ public class Chunk {
 		float tx = precalcSpriteSheetToTextureX[t];
 		float ty = precalcSpriteSheetToTextureY[t];
 
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(tx, ty);
-			GL11.glVertex3f(x1, y1, z1);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(tx, ty);
+			ChunkGL.glVertex3f(x1, y1, z1);
 	
-			GL11.glTexCoord2f(tx+TEX16, ty);
-			GL11.glVertex3f(x2, y2, z2);
+			ChunkGL.glTexCoord2f(tx+TEX16, ty);
+			ChunkGL.glVertex3f(x2, y2, z2);
 	
-			GL11.glTexCoord2f(tx, ty+TEX32);
-			GL11.glVertex3f(x3, y3, z3);
+			ChunkGL.glTexCoord2f(tx, ty+TEX32);
+			ChunkGL.glVertex3f(x3, y3, z3);
 	
-			GL11.glTexCoord2f(tx+TEX16, ty+TEX32);
-			GL11.glVertex3f(x4, y4, z4);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(tx+TEX16, ty+TEX32);
+			ChunkGL.glVertex3f(x4, y4, z4);
+		ChunkGL.glEnd();
 		
 	}
 	
@@ -732,27 +932,27 @@ public class Chunk {
 			zoff = -0.5f;
 		}
 		
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
 		
-			GL11.glTexCoord2f(bx, by+TEX32);
-			GL11.glVertex3f(x-0.5f, y-0.5f, z+zoff);
+			ChunkGL.glTexCoord2f(bx, by+TEX32);
+			ChunkGL.glVertex3f(x-0.5f, y-0.5f, z+zoff);
 	
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y, z+zoff);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y, z+zoff);
 			
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x-0.5f, y-0.5f, z-zoff);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x-0.5f, y-0.5f, z-zoff);
 	
-			GL11.glTexCoord2f(bx+TEX32, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y, z);
+			ChunkGL.glTexCoord2f(bx+TEX32, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y, z);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x-0.5f, y+0.5f, z-zoff);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x-0.5f, y+0.5f, z-zoff);
 			
-			GL11.glTexCoord2f(bx+TEX32, by);
-			GL11.glVertex3f(x-0.5f, y+0.5f, z);
+			ChunkGL.glTexCoord2f(bx+TEX32, by);
+			ChunkGL.glVertex3f(x-0.5f, y+0.5f, z);
 
-		GL11.glEnd();
+		ChunkGL.glEnd();
 	}	
 
 	/**
@@ -776,64 +976,64 @@ public class Chunk {
 		}
 		
 		// Lower Step surface
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x+0.5f, y, z+zoff);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x+0.5f, y, z+zoff);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x-0.5f, y, z+zoff);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x-0.5f, y, z+zoff);
 	
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x+0.5f, y, z);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x+0.5f, y, z);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y, z);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y, z);
+		ChunkGL.glEnd();
 
 		// Lower Step Side
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x+0.5f, y, z+zoff);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x+0.5f, y, z+zoff);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y, z+zoff);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y, z+zoff);
 	
-			GL11.glTexCoord2f(bx,by+TEX32);
-			GL11.glVertex3f(x+0.5f, y-0.5f, z+zoff);
+			ChunkGL.glTexCoord2f(bx,by+TEX32);
+			ChunkGL.glVertex3f(x+0.5f, y-0.5f, z+zoff);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x-0.5f, y-0.5f, z+zoff);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x-0.5f, y-0.5f, z+zoff);
+		ChunkGL.glEnd();
 
 		// Higher Step surface
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x+0.5f, y+0.5f, z);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x+0.5f, y+0.5f, z);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y+0.5f, z);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y+0.5f, z);
 	
-			GL11.glTexCoord2f(bx, by+TEX32);
-			GL11.glVertex3f(x+0.5f, y+0.5f, z-zoff);
+			ChunkGL.glTexCoord2f(bx, by+TEX32);
+			ChunkGL.glVertex3f(x+0.5f, y+0.5f, z-zoff);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x-0.5f, y+0.5f, z-zoff);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x-0.5f, y+0.5f, z-zoff);
+		ChunkGL.glEnd();
 
 		// Higher Step Side
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x+0.5f, y+0.5f, z);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x+0.5f, y+0.5f, z);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x-0.5f, y+0.5f, z);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x-0.5f, y+0.5f, z);
 	
-			GL11.glTexCoord2f(bx,by+TEX64);
-			GL11.glVertex3f(x+0.5f, y, z);
+			ChunkGL.glTexCoord2f(bx,by+TEX64);
+			ChunkGL.glVertex3f(x+0.5f, y, z);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x-0.5f, y, z);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x-0.5f, y, z);
+		ChunkGL.glEnd();
 	}
 	
 	/**
@@ -865,27 +1065,27 @@ public class Chunk {
 			xoff = -0.5f;
 		}
 		
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
 		
-			GL11.glTexCoord2f(bx, by+TEX32);
-			GL11.glVertex3f(x+xoff, y-0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx, by+TEX32);
+			ChunkGL.glVertex3f(x+xoff, y-0.5f, z-0.5f);
 	
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x+xoff, y, z-0.5f);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x+xoff, y, z-0.5f);
 			
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x-xoff, y-0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x-xoff, y-0.5f, z-0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX32, by+TEX64);
-			GL11.glVertex3f(x, y, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX32, by+TEX64);
+			ChunkGL.glVertex3f(x, y, z-0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x-xoff, y+0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x-xoff, y+0.5f, z-0.5f);
 			
-			GL11.glTexCoord2f(bx+TEX32, by);
-			GL11.glVertex3f(x, y+0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX32, by);
+			ChunkGL.glVertex3f(x, y+0.5f, z-0.5f);
 
-		GL11.glEnd();
+		ChunkGL.glEnd();
 	}	
 
 	/**
@@ -909,88 +1109,83 @@ public class Chunk {
 		}
 		
 		// Lower Step surface
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x+xoff, y, z+0.5f);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x+xoff, y, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x+xoff, y, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x+xoff, y, z-0.5f);
 	
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x, y, z+0.5f);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x, y, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x, y, z-0.5f);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x, y, z-0.5f);
+		ChunkGL.glEnd();
 
 		// Lower Step Side
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x+xoff, y, z+0.5f);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x+xoff, y, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x+xoff, y, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x+xoff, y, z-0.5f);
 	
-			GL11.glTexCoord2f(bx,by+TEX32);
-			GL11.glVertex3f(x+xoff, y-0.5f, z+0.5f);
+			ChunkGL.glTexCoord2f(bx,by+TEX32);
+			ChunkGL.glVertex3f(x+xoff, y-0.5f, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x+xoff, y-0.5f, z-0.5f);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x+xoff, y-0.5f, z-0.5f);
+		ChunkGL.glEnd();
 
 		// Higher Step surface
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by+TEX64);
-			GL11.glVertex3f(x, y+0.5f, z+0.5f);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by+TEX64);
+			ChunkGL.glVertex3f(x, y+0.5f, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x, y+0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x, y+0.5f, z-0.5f);
 	
-			GL11.glTexCoord2f(bx, by+TEX32);
-			GL11.glVertex3f(x-xoff, y+0.5f, z+0.5f);
+			ChunkGL.glTexCoord2f(bx, by+TEX32);
+			ChunkGL.glVertex3f(x-xoff, y+0.5f, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX32);
-			GL11.glVertex3f(x-xoff, y+0.5f, z-0.5f);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX32);
+			ChunkGL.glVertex3f(x-xoff, y+0.5f, z-0.5f);
+		ChunkGL.glEnd();
 
 
 		// Higher Step Side
-		GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glTexCoord2f(bx, by);
-			GL11.glVertex3f(x, y+0.5f, z+0.5f);
+		ChunkGL.glBegin(GL11.GL_TRIANGLE_STRIP);
+			ChunkGL.glTexCoord2f(bx, by);
+			ChunkGL.glVertex3f(x, y+0.5f, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by);
-			GL11.glVertex3f(x, y+0.5f, z-0.5f);
+			ChunkGL.glTexCoord2f(bx+TEX16, by);
+			ChunkGL.glVertex3f(x, y+0.5f, z-0.5f);
 	
-			GL11.glTexCoord2f(bx,by+TEX64);
-			GL11.glVertex3f(x, y, z+0.5f);
+			ChunkGL.glTexCoord2f(bx,by+TEX64);
+			ChunkGL.glVertex3f(x, y, z+0.5f);
 	
-			GL11.glTexCoord2f(bx+TEX16, by+TEX64);
-			GL11.glVertex3f(x, y, z-0.5f);
-		GL11.glEnd();
+			ChunkGL.glTexCoord2f(bx+TEX16, by+TEX64);
+			ChunkGL.glVertex3f(x, y, z-0.5f);
+		ChunkGL.glEnd();
 	}
 	
 	/**
-	 * Gets the block ID at the specified coordinate in the chunk.  This is
-	 * only really used in the getAdj*BlockId() methods.
+	 * Gets the block ID at the specified coordinate in the chunk.
 	 */
 	public short getBlock(int x, int y, int z) {
-		return blockData.value[y + (z * 128) + (x * 128 * 16)];
+		return blocks.get(y + (z * 128) + (x * 128 * 16));
 	}
 
 	/**
 	 * Gets the block data at the specified coordinates.
 	 */
 	public byte getData(int x, int y, int z) {
-		int offset = y + (z * 128) + (x * 128 * 16);
-		int halfOffset = offset / 2;
-		if(offset % 2 == 0) {
-			return (byte) (mapData.value[halfOffset] & 0xF);
-		} else {
-			// We shouldn't have to &0xF here, but if we don't the value
-			// returned could be negative, even though that would be silly.
-			return (byte) ((mapData.value[halfOffset] >> 4) & 0xF);
+		if (blockMeta == null) {
+			// Every data value in the chunk was zero
+			return 0;
 		}
+		return (byte) blockMeta.get(y + (z * 128) + (x * 128 * 16));
 	}
 	
 	/**
@@ -1009,36 +1204,36 @@ public class Chunk {
 	public void renderSpecial(float bx, float by, float ex, float ey, float x, float y, float z)
 	{
 		 
-		// GL11.glDisable(GL11.GL_CULL_FACE);
-		 //GL11.glDisable(GL11.GL_DEPTH_TEST);
-		 GL11.glBegin(GL11.GL_QUADS);
-		 GL11.glNormal3f(1.0f, 0.0f, 0.0f);
-		 GL11.glTexCoord2f(bx, by); 	GL11.glVertex3f(x+9/16.0f+TEX64, y+1.0f, 	z);
-		 GL11.glTexCoord2f(ex, by); 	GL11.glVertex3f(x+9/16.0f+TEX64, y+1.0f, 	z+1.0f);
-		 GL11.glTexCoord2f(ex, ey); 	GL11.glVertex3f(x+9/16.0f-TEX64, y, 		z+1.0f);
-		 GL11.glTexCoord2f(bx, ey); 	GL11.glVertex3f(x+9/16.0f-TEX64, y,	 		z);
-		
-		 GL11.glNormal3f(-1.0f, 0.0f, 0.0f);
-		 GL11.glTexCoord2f(bx, by); 	GL11.glVertex3f(x+7/16.0f+TEX64, y+1.0f,	z+1.0f);
-		 GL11.glTexCoord2f(ex, by); 	GL11.glVertex3f(x+7/16.0f+TEX64, y+1.0f,	z);
-		 GL11.glTexCoord2f(ex, ey); 	GL11.glVertex3f(x+7/16.0f-TEX64, y,			z);
-		 GL11.glTexCoord2f(bx, ey); 	GL11.glVertex3f(x+7/16.0f-TEX64, y,			z+1.0f);
+		// ChunkGL.glDisable(GL11.GL_CULL_FACE);
+		 //ChunkGL.glDisable(GL11.GL_DEPTH_TEST);
+		 ChunkGL.glBegin(GL11.GL_QUADS);
+		 ChunkGL.glNormal3f(1.0f, 0.0f, 0.0f);
+		 ChunkGL.glTexCoord2f(bx, by); 	ChunkGL.glVertex3f(x+9/16.0f+TEX64, y+1.0f, 	z);
+		 ChunkGL.glTexCoord2f(ex, by); 	ChunkGL.glVertex3f(x+9/16.0f+TEX64, y+1.0f, 	z+1.0f);
+		 ChunkGL.glTexCoord2f(ex, ey); 	ChunkGL.glVertex3f(x+9/16.0f-TEX64, y, 		z+1.0f);
+		 ChunkGL.glTexCoord2f(bx, ey); 	ChunkGL.glVertex3f(x+9/16.0f-TEX64, y,	 		z);
+		
+		 ChunkGL.glNormal3f(-1.0f, 0.0f, 0.0f);
+		 ChunkGL.glTexCoord2f(bx, by); 	ChunkGL.glVertex3f(x+7/16.0f+TEX64, y+1.0f,	z+1.0f);
+		 ChunkGL.glTexCoord2f(ex, by); 	ChunkGL.glVertex3f(x+7/16.0f+TEX64, y+1.0f,	z);
+		 ChunkGL.glTexCoord2f(ex, ey); 	ChunkGL.glVertex3f(x+7/16.0f-TEX64, y,			z);
+		 ChunkGL.glTexCoord2f(bx, ey); 	ChunkGL.glVertex3f(x+7/16.0f-TEX64, y,			z+1.0f);
 		 
-		 GL11.glNormal3f(0.0f, 0.0f, 1.0f);
-		 GL11.glTexCoord2f(bx, by); 	GL11.glVertex3f(x+1.0f,	y+1.0f,	z+9/16.0f+TEX64);
-		 GL11.glTexCoord2f(ex, by); 	GL11.glVertex3f(x, 		y+1.0f,	z+9/16.0f+TEX64);
-		 GL11.glTexCoord2f(ex, ey); 	GL11.glVertex3f(x, 		y, 		z+9/16.0f-TEX64);
-		 GL11.glTexCoord2f(bx, ey);	 	GL11.glVertex3f(x+1.0f,	y, 		z+9/16.0f-TEX64);
+		 ChunkGL.glNormal3f(0.0f, 0.0f, 1.0f);
+		 ChunkGL.glTexCoord2f(bx, by); 	ChunkGL.glVertex3f(x+1.0f,	y+1.0f,	z+9/16.0f+TEX64);
+		 ChunkGL.glTexCoord2f(ex, by); 	ChunkGL.glVertex3f(x, 		y+1.0f,	z+9/16.0f+TEX64);
+		 ChunkGL.glTexCoord2f(ex, ey); 	ChunkGL.glVertex3f(x, 		y, 		z+9/16.0f-TEX64);
+		 ChunkGL.glTexCoord2f(bx, ey);	 	ChunkGL.glVertex3f(x+1.0f,	y, 		z+9/16.0f-TEX64);
 		 
-		 GL11.glNormal3f(0.0f, 0.0f, -1.0f);
-		 GL11.glTexCoord2f(bx, by); 	GL11.glVertex3f(x, 		y+1.0f,	z+7/16.0f+TEX64);
-		 GL11.glTexCoord2f(ex, by); 	GL11.glVertex3f(x+1.0f,	y+1.0f,	z+7/16.0f+TEX64);
-		 GL11.glTexCoord2f(ex, ey); 	GL11.glVertex3f(x+1.0f,	y, 		z+7/16.0f-TEX64);
-		 GL11.glTexCoord2f(bx, ey); 	GL11.glVertex3f(x, 		y, 		z+7/16.0f-TEX64);
+		 ChunkGL.glNormal3f(0.0f, 0.0f, -1.0f);
+		 ChunkGL.glTexCoord2f(bx, by); 	ChunkGL.glVertex3f(x, 		y+1.0f,	z+7/16.0f+TEX64);
+		 ChunkGL.glTexCoord2f(ex, by); 	ChunkGL.glVertex3f(x+1.0f,	y+1.0f,	z+7/16.0f+TEX64);
+		 ChunkGL.glTexCoord2f(ex, ey); 	ChunkGL.glVertex3f(x+1.0f,	y, 		z+7/16.0f-TEX64);
+		 ChunkGL.glTexCoord2f(bx, ey); 	ChunkGL.glVertex3f(x, 		y, 		z+7/16.0f-TEX64);
 		 
-		 GL11.glEnd();
-		 //GL11.glEnable(GL11.GL_DEPTH_TEST);
-		 //GL11.glEnable(GL11.GL_CULL_FACE);	
+		 ChunkGL.glEnd();
+		 //ChunkGL.glEnable(GL11.GL_DEPTH_TEST);
+		 //ChunkGL.glEnable(GL11.GL_CULL_FACE);	
 	}
 	
 	/**
@@ -1312,9 +1507,9 @@ public class Chunk {
 		// to the origin for the actual verticies, and then translate?
 		if (do_rotate)
 		{
-			GL11.glPushMatrix();
-			GL11.glTranslatef(tx, ty, tz);
-			GL11.glRotatef((float)rotate_degrees, rotate_x, 0f, rotate_z);
+			ChunkGL.glPushMatrix();
+			ChunkGL.glTranslatef(tx, ty, tz);
+			ChunkGL.glRotatef((float)rotate_degrees, rotate_x, 0f, rotate_z);
 		}
 		
 		// First draw the borders
@@ -1339,7 +1534,7 @@ public class Chunk {
 
 		if (do_rotate)
 		{
-			GL11.glPopMatrix();
+			ChunkGL.glPopMatrix();
 		}
 	}
 	
@@ -1450,7 +1645,7 @@ public class Chunk {
 			this.renderNorthSouth(textureId, x+1.0f-TEX64, y, z);
 			rendered = true;
 		 }
-		 if (data == 0 || (rendered && yyy < 127 && isSolid(blockData.value[blockOffset+1])))
+		 if (data == 0 || (rendered && yyy < 127 && isSolid(blocks.get(blockOffset+1))))
 		 {
 			// Top
 			this.renderHorizontal(textureId, x-.5f, z-.5f, x+.5f, z+.5f, y+.45f);
@@ -1704,24 +1899,24 @@ public class Chunk {
 		float side_tex_y = precalcSpriteSheetToTextureY[textureId+32]-bed_tex_height;
 
 		// Use GL to rotate these properly
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 
 		// We're drawing the bed with the head facing East (direction 2)
 		if (data == 0)
 		{
 			// Pointing West
-			GL11.glRotatef(180f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(180f, 0f, 1f, 0f);
 		}
 		else if (data == 1)
 		{
 			// Pointing North
-			GL11.glRotatef(90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(90f, 0f, 1f, 0f);
 		}
 		else if (data == 3)
 		{
 			// Pointing South
-			GL11.glRotatef(-90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(-90f, 0f, 1f, 0f);
 		}
 
 		float end_tex_x, end_tex_y;
@@ -1754,7 +1949,7 @@ public class Chunk {
 		this.renderNonstandardVertical(end_tex_x, end_tex_y, TEX16, bed_tex_height, side_part, bed_height-side_full, end_z, -side_part, -side_full, end_z);
 
 		// Pop the matrix
-		GL11.glPopMatrix();
+		ChunkGL.glPopMatrix();
 	}
 	
 	/**
@@ -1836,29 +2031,29 @@ public class Chunk {
 		float tex_dy = TEX32 * twidth;
 
 		// Use GL to rotate these properly
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 		if (swung)
 		{
 			if (dir == 0)
 			{
 				// West
-				GL11.glRotatef(-90f, 1f, 0f, 0f);
+				ChunkGL.glRotatef(-90f, 1f, 0f, 0f);
 			}
 			else if (dir == 1)
 			{
 				// East
-				GL11.glRotatef(90f, 1f, 0f, 0f);
+				ChunkGL.glRotatef(90f, 1f, 0f, 0f);
 			}
 			else if (dir == 2)
 			{
 				// South
-				GL11.glRotatef(90f, 0f, 0f, 1f);
+				ChunkGL.glRotatef(90f, 0f, 0f, 1f);
 			}
 			else
 			{
 				// North
-				GL11.glRotatef(-90f, 0f, 0f, 1f);
+				ChunkGL.glRotatef(-90f, 0f, 0f, 1f);
 			}
 		}
 		
@@ -1880,7 +2075,7 @@ public class Chunk {
 				-.5f+toff, -.5f+toff,       -.5f+toff,
 				.5f-toff, -.5f+toff+twidth, -.5f+toff);
 
-		GL11.glPopMatrix();
+		ChunkGL.glPopMatrix();
 	}
 	
 	/**
@@ -2183,12 +2378,12 @@ public class Chunk {
 		boolean have_fence_2 = false;
 
 		// GL stuff; only draw one way
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 		switch (dir)
 		{
 			case 1:
-				GL11.glRotatef(270f, 0f, 1f, 0f);
+				ChunkGL.glRotatef(270f, 0f, 1f, 0f);
 				if (getAdjWestBlockId(xxx, yyy, zzz, blockOffset) == BLOCK_FENCE.id)
 				{
 					have_fence_1 = true;
@@ -2199,7 +2394,7 @@ public class Chunk {
 				}
 				break;
 			case 2:
-				GL11.glRotatef(180f, 0f, 1f, 0f);
+				ChunkGL.glRotatef(180f, 0f, 1f, 0f);
 				if (getAdjNorthBlockId(xxx, yyy, zzz, blockOffset) == BLOCK_FENCE.id)
 				{
 					have_fence_1 = true;
@@ -2210,7 +2405,7 @@ public class Chunk {
 				}
 				break;
 			case 3:
-				GL11.glRotatef(90f, 0f, 1f, 0f);
+				ChunkGL.glRotatef(90f, 0f, 1f, 0f);
 				if (getAdjEastBlockId(xxx, yyy, zzz, blockOffset) == BLOCK_FENCE.id)
 				{
 					have_fence_1 = true;
@@ -2342,7 +2537,7 @@ public class Chunk {
 		}
 
 		// aaand pop our GL matrix
-		GL11.glPopMatrix();
+		ChunkGL.glPopMatrix();
 	}
 
 	/**
@@ -2505,29 +2700,29 @@ public class Chunk {
 		float TEX_PISTON = TEX128*3f;
 
 		// Use GL to rotate these properly
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 
 		// This routine draws the piston facing west, which is direction value 3
 		if (direction == 1)
 		{
 			// Up
-			GL11.glRotatef(-90f, 1f, 0f, 0f);
+			ChunkGL.glRotatef(-90f, 1f, 0f, 0f);
 		}
 		else if (direction == 2)
 		{
 			// East
-			GL11.glRotatef(180f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(180f, 0f, 1f, 0f);
 		}
 		else if (direction == 4)
 		{
 			// North
-			GL11.glRotatef(-90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(-90f, 0f, 1f, 0f);
 		}
 		else if (direction == 5)
 		{
 			// South
-			GL11.glRotatef(90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(90f, 0f, 1f, 0f);
 		}
 
 		// First the main body bit
@@ -2543,12 +2738,12 @@ public class Chunk {
 			renderVertical(textureId+2, -.49f, .25f, .49f, .25f, -.49f, .98f);
 
 			// Pop the matrix after
-			GL11.glPopMatrix();
+			ChunkGL.glPopMatrix();
 		}
 		else
 		{
 			// Pop the matrix before
-			GL11.glPopMatrix();
+			ChunkGL.glPopMatrix();
 
 			renderPistonHead(textureId-1, xxx, yyy, zzz, true, (blockType == 29));
 		}
@@ -2587,29 +2782,29 @@ public class Chunk {
 		float side_tex_y = precalcSpriteSheetToTextureY[textureId+1];
 
 		// Matrix stuff
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 
 		// This routine draws the piston facing west, which is direction value 3
 		if (direction == 1)
 		{
 			// Up
-			GL11.glRotatef(-90f, 1f, 0f, 0f);
+			ChunkGL.glRotatef(-90f, 1f, 0f, 0f);
 		}
 		else if (direction == 2)
 		{
 			// East
-			GL11.glRotatef(180f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(180f, 0f, 1f, 0f);
 		}
 		else if (direction == 4)
 		{
 			// North
-			GL11.glRotatef(-90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(-90f, 0f, 1f, 0f);
 		}
 		else if (direction == 5)
 		{
 			// South
-			GL11.glRotatef(90f, 0f, 1f, 0f);
+			ChunkGL.glRotatef(90f, 0f, 1f, 0f);
 		}
 
 		// Outside edges
@@ -2649,7 +2844,7 @@ public class Chunk {
 		renderVertical(textureId, -.49f, .49f, .49f, .49f, -.49f, .98f);
 
 		// Pop the matrix
-		GL11.glPopMatrix();
+		ChunkGL.glPopMatrix();
 	}
 	
 	/**
@@ -2699,8 +2894,8 @@ public class Chunk {
 		float actual_width = (6f-(float)bites_eaten)/6f;
 
 		// Use GL to rotate these properly
-		GL11.glPushMatrix();
-		GL11.glTranslatef(x, y, z);
+		ChunkGL.glPushMatrix();
+		ChunkGL.glTranslatef(x, y, z);
 
 		// Note that cake will always be eaten from the North
 		// Knowing that, draw the south face, first
@@ -2734,7 +2929,7 @@ public class Chunk {
 				0f);
 
 		// Pop the matrix
-		GL11.glPopMatrix();
+		ChunkGL.glPopMatrix();
 	}
 	
 	/**
@@ -2853,13 +3048,11 @@ public class Chunk {
 	}
 	
 	/**
-	 * Tests if the given source block has a torch nearby.  This is, I'm willing
-	 * to bet, the least efficient way possible of doing this.  It turns out that
-	 * despite that, it doesn't really have a noticeable impact on performance,
-	 * which is why it remains in here, but perhaps one day I'll rewrite this
-	 * stuff to be less stupid.  The one upside to doing it like this is that
-	 * we're not using any extra memory storing data about which block should be
-	 * highlighted...
+	 * Tests if the given source block has a torch nearby: within the level's
+	 * torch radius along each of X, Y and Z, including torches in the chunks
+	 * around us.  We work that out for the whole chunk at once (see TorchField)
+	 * the first time it's asked for, and again after a neighbouring chunk with
+	 * torches loads or unloads.
 	 * 
 	 * @param sx
 	 * @param sy
@@ -2868,79 +3061,43 @@ public class Chunk {
 	 */
 	public boolean hasAdjacentTorch(int sx, int sy, int sz)
 	{
-		int distance = 3;
-		int x, y, z;
-		int min_x = sx-distance;
-		int max_x = sx+distance;
-		int min_z = sz-distance;
-		int max_z = sz+distance;
-		int min_y = Math.max(0, sy-distance);
-		int max_y = Math.min(127, sy+distance);
-		Chunk otherChunk;
-		int cx, cz;
-		int tx, tz;
-		for (x = min_x; x<=max_x; x++)
-		{
-			for (y = min_y; y<=max_y; y++)
+		int radius = level.getTorchRadius();
+		if (!this.torchFieldBuilt || this.torchFieldRadius != radius)
+		{
+			Chunk[] around = new Chunk[9];
+			for (int dx = -1; dx <= 1; dx++)
 			{
-				for (z = min_z; z<=max_z; z++)
+				for (int dz = -1; dz <= 1; dz++)
 				{
-					otherChunk = null;
-					if (x < 0)
-					{
-						cx = this.x-1;
-						tx = 16+x;
-					}
-					else if (x > 15)
-					{
-						cx = this.x+1;
-						tx = x-16;
-					}
-					else
-					{
-						cx = this.x;
-						tx = x;
-					}
-
-					if (z < 0)
-					{
-						cz = this.z-1;
-						tz = 16+z;
-					}
-					else if (z > 15)
-					{
-						cz = this.z+1;
-						tz = z-16;
-					}
-					else
-					{
-						cz = this.z;
-						tz = z;
-					}
-					
-					if (cx != this.x || cz != this.z)
+					if (dx == 0 && dz == 0)
 					{
-						otherChunk = level.getChunk(cx, cz);
-						if (otherChunk == null)
-						{
-							continue;
-						}
-						else if (otherChunk.blockData.value[(tz*128)+(tx*128*16)+y] == BLOCK_TORCH.id)
-						{
-							return true;
-						}
+						around[4] = this;
 					}
 					else
 					{
-						if (blockData.value[(z*128)+(x*128*16)+y] == BLOCK_TORCH.id)
-						{
-							return true;
-						}
+						around[(dx + 1) * 3 + (dz + 1)] = level.getChunk(this.x + dx, this.z + dz);
 					}
 				}
 			}
+			this.torchField = TorchField.build(around, radius);
+			this.torchFieldRadius = radius;
+			this.torchFieldBuilt = true;
+		}
+		return TorchField.isSet(this.torchField, sy + (sz * 128) + (sx * 128 * 16));
+	}
+
+	/**
+	 * Called when a neighbouring chunk with torches loads or unloads.  If we've
+	 * been drawn with our torch field, it's out of date, and so are we.
+	 */
+	public void invalidateTorchField()
+	{
+		if (this.torchFieldBuilt)
+		{
+			this.torchFieldBuilt = false;
+			this.torchField = null;
+			this.isDirty = true;
 		}
-		return false;
 	}
 	
 	/**
@@ -2951,14 +3108,17 @@ public class Chunk {
 	 * @param render_bedrock Are we forcing bedrock to be rendered?
 	 * @param render_water Are we forcing water to be rendered?
 	 * @param highlight_explored Are we highlighting the area around torches?
-	 * @param onlySelected Are we ONLY rendering ores that the user's selected?
+	 * @param onlySelected Are we ONLY rendering ores that the user's selected?  (That's handed off to renderOres().)
 	 * @param selectedMap ... if so, here's a HashMap to which ones to highlight.
 	 */
 	public void renderWorld(boolean transparency, boolean render_bedrock, boolean render_water, boolean highlight_explored,
 			boolean onlySelected, boolean[] selectedMap) {
-		float worldX = this.x*16;
-		float worldZ = this.z*16;
-		
+		if (onlySelected)
+		{
+			this.renderOres(selectedMap);
+			return;
+		}
+
 		boolean draw = false;
 		boolean above = true;
 		boolean below = true;
@@ -2966,19 +3126,75 @@ public class Chunk {
 		boolean right = true;
 		boolean near = true;
 		boolean far = true;
-		int tex_offset = 0;
 		BlockType block;
 
-		int north, south, west, east, top, bottom;
+		// Sections without the sort of block this pass draws get skipped entirely
+		int wanted;
+		if (transparency)
+		{
+			wanted = ChunkSections.HAS_NONSOLID;
+		}
+		else
+		{
+			wanted = ChunkSections.HAS_SOLID;
+		}
+		if (!sections.any(wanted))
+		{
+			return;
+		}
+
+		// In the solid pass, the inside of an opaque section can't have any faces
+		// showing, so we only need to visit its outside columns, plus its top and
+		// bottom layers if what's past them isn't opaque too.  Bedrock's drawn
+		// against anything that isn't bedrock when we're forcing it, though.
+		boolean[] opaque = new boolean[ChunkSections.SECTIONS];
+		int[] hiddenFrom = new int[ChunkSections.SECTIONS];
+		int[] hiddenTo = new int[ChunkSections.SECTIONS];
+		if (!transparency)
+		{
+			for (int s = 0; s < ChunkSections.SECTIONS; s++)
+			{
+				opaque[s] = sections.has(s, ChunkSections.OPAQUE) &&
+					!(render_bedrock && sections.has(s, ChunkSections.HAS_BEDROCK));
+			}
+			for (int s = 0; s < ChunkSections.SECTIONS; s++)
+			{
+				hiddenFrom[s] = s * ChunkSections.SECTION_HEIGHT;
+				hiddenTo[s] = hiddenFrom[s] + ChunkSections.SECTION_HEIGHT - 1;
+				if (s > 0 && !opaque[s-1])
+				{
+					hiddenFrom[s]++;
+				}
+				if (s < ChunkSections.SECTIONS - 1 && !opaque[s+1])
+				{
+					hiddenTo[s]--;
+				}
+			}
+		}
+
+		short[] blockIds = this.getDecodedBlocks();
 		
 		for(int x=0;x<16;x++) {
 			int xOff = (x * 128 * 16);
 			for(int z=0;z<16;z++) {
 				int zOff = (z * 128);
-				int blockOffset = zOff + xOff-1;
-				for(int y=0;y<128;y++) {
-					blockOffset++;
-					short t = blockData.value[blockOffset];
+				int column = (x * 16) + z;
+				boolean edge = (x == 0 || x == 15 || z == 0 || z == 15);
+				int maxY = sections.getColumnMax(column);
+				for(int y=sections.getColumnMin(column);y<=maxY;y++) {
+					int section = y / ChunkSections.SECTION_HEIGHT;
+					if (!sections.has(section, wanted))
+					{
+						y = (section + 1) * ChunkSections.SECTION_HEIGHT - 1;
+						continue;
+					}
+					if (opaque[section] && !edge && y >= hiddenFrom[section] && y <= hiddenTo[section])
+					{
+						y = hiddenTo[section];
+						continue;
+					}
+					int blockOffset = zOff + xOff + y;
+					short t = blockIds[blockOffset];
 					
 					if(t < 1) {
 						continue;
@@ -2990,41 +3206,21 @@ public class Chunk {
 						block = BLOCK_UNKNOWN;
 					}
 					
-					if (onlySelected)
-					{
-						draw = false;
-						for(int i=0;i<selectedMap.length;i++) {
-							if(selectedMap[i] && level.HIGHLIGHT_ORES[i] == t) {
-								// TODO: should maybe check our boundaries for similar ores, like we do for regular blocks
-								draw = true;
-								above = false;
-								below = false;
-								left = false;
-								right = false;
-								near = false;
-								far = false;
-								break;
-							}
-						}
+					if(transparency && block.isSolid()) {
+						continue;
 					}
-					else
-					{
-						if(transparency && block.isSolid()) {
-							continue;
-						}
-						if(!transparency && !block.isSolid()) {
-							continue;
-						}
-						
-						draw = false;
-						above = true;
-						below = true;
-						left = true;
-						right = true;
-						near = true;
-						far = true;
+					if(!transparency && !block.isSolid()) {
+						continue;
 					}
 					
+					draw = false;
+					above = true;
+					below = true;
+					left = true;
+					right = true;
+					near = true;
+					far = true;
+					
 					if (!render_water && block.type == BLOCK_TYPE.WATER)
 					{
 						continue;
@@ -3042,424 +3238,474 @@ public class Chunk {
 					}
 					*/
 
-					if (!onlySelected)
+					if (render_bedrock && t == BLOCK_BEDROCK.id)
 					{
-						if (render_bedrock && t == BLOCK_BEDROCK.id)
-						{
-							// This block of code was more or less copied/modified directly from the "else" block
-							// below - should see if there's a way we can abstract this instead.  Also, I suspect
-							// that this is where we'd fix water rendering...
-							
-							// check above
-							if(y<127 && blockData.value[blockOffset+1] != BLOCK_BEDROCK.id) {
-								draw = true;
-								above = false;
-							}
-							
-							// check below
-							if(y>0 && blockData.value[blockOffset-1] != BLOCK_BEDROCK.id) {
-								draw = true;
-								below = false;
-							}
-							
-							// check left;
-							if (this.getAdjNorthBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
-								draw = true;
-								left = false;
-							}
+						// This block of code was more or less copied/modified directly from the "else" block
+						// below - should see if there's a way we can abstract this instead.  Also, I suspect
+						// that this is where we'd fix water rendering...
 						
-							// check right
-							if (this.getAdjSouthBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
-								draw = true;
-								right = false;
-							}
-							
-							// check near
-							if (this.getAdjEastBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
-								draw = true;
-								near = false;
-							}
-							
-							// check far
-							if (this.getAdjWestBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
-								draw = true;
-								far = false;
-							}
+						// check above
+						if(y<127 && blockIds[blockOffset+1] != BLOCK_BEDROCK.id) {
+							draw = true;
+							above = false;
 						}
-						else
-						{
-							// check above
-							if(y<127 && checkSolid(blockData.value[blockOffset+1], transparency)) {
-								draw = true;
-								above = false;
-							}
-							
-							// check below
-							if(y>0 && checkSolid(blockData.value[blockOffset-1], transparency)) {
-								draw = true;
-								below = false;
-							}
-							
-							// check left;
-							if (checkSolid(this.getAdjNorthBlockId(x, y, z, blockOffset), transparency)) {
-								draw = true;
-								left = false;
-							}
 						
-							// check right
-							if (checkSolid(this.getAdjSouthBlockId(x, y, z, blockOffset), transparency)) {
-								draw = true;
-								right = false;
-							}
-							
-							// check near
-							if (checkSolid(this.getAdjEastBlockId(x, y, z, blockOffset), transparency)) {
-								draw = true;
-								near = false;
-							}
-							
-							// check far
-							if (checkSolid(this.getAdjWestBlockId(x, y, z, blockOffset), transparency)) {
-								draw = true;
-								far = false;
-							}
+						// check below
+						if(y>0 && blockIds[blockOffset-1] != BLOCK_BEDROCK.id) {
+							draw = true;
+							below = false;
+						}
+						
+						// check left;
+						if (this.getAdjNorthBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
+							draw = true;
+							left = false;
+						}
+					
+						// check right
+						if (this.getAdjSouthBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
+							draw = true;
+							right = false;
+						}
+						
+						// check near
+						if (this.getAdjEastBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
+							draw = true;
+							near = false;
+						}
+						
+						// check far
+						if (this.getAdjWestBlockId(x, y, z, blockOffset) != BLOCK_BEDROCK.id) {
+							draw = true;
+							far = false;
+						}
+					}
+					else
+					{
+						// check above
+						if(y<127 && checkSolid(blockIds[blockOffset+1], transparency)) {
+							draw = true;
+							above = false;
+						}
+						
+						// check below
+						if(y>0 && checkSolid(blockIds[blockOffset-1], transparency)) {
+							draw = true;
+							below = false;
+						}
+						
+						// check left;
+						if (checkSolid(this.getAdjNorthBlockId(x, y, z, blockOffset), transparency)) {
+							draw = true;
+							left = false;
+						}
+					
+						// check right
+						if (checkSolid(this.getAdjSouthBlockId(x, y, z, blockOffset), transparency)) {
+							draw = true;
+							right = false;
+						}
+						
+						// check near
+						if (checkSolid(this.getAdjEastBlockId(x, y, z, blockOffset), transparency)) {
+							draw = true;
+							near = false;
+						}
+						
+						// check far
+						if (checkSolid(this.getAdjWestBlockId(x, y, z, blockOffset), transparency)) {
+							draw = true;
+							far = false;
 						}
 					}
 					
-					boolean adj_torch = false;
 					if (draw)
 					{
-						// Check to see if this block type has a texture ID which changes depending
-						// on the block's data value
-						if (block.texture_data_map != null)
-						{
-							byte data = getData(x, y, z);
+						this.renderBlock(t, block, textureId, x, y, z, blockOffset, highlight_explored,
+								above, below, left, right, near, far);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Draws the highlightable ores which the user's selected, going straight
+	 * to them through our ore index.  Every face gets drawn, since they're
+	 * meant to be seen through everything else.
+	 */
+	private void renderOres(boolean[] selectedMap)
+	{
+		boolean[] selected = level.getSelectedOres(selectedMap);
+		BlockType block;
+		char[] positions;
+		short t;
+		int offset;
+		for (int i = 0; i < ores.getTypeCount(); i++)
+		{
+			t = ores.getType(i);
+			if (!selected[t])
+			{
+				continue;
+			}
+			block = blockArray[t];
+			if (block == null)
+			{
+				block = BLOCK_UNKNOWN;
+			}
+			// TODO: should maybe check our boundaries for similar ores, like we do for regular blocks
+			if (block.type == BLOCK_TYPE.WATER || block.tex_idx == -1)
+			{
+				continue;
+			}
+			positions = ores.getPositions(i);
+			for (int j = 0; j < positions.length; j++)
+			{
+				offset = positions[j];
+				this.renderBlock(t, block, block.tex_idx, offset / BLOCKSPERCOLUMN, offset % BLOCKSPERROW,
+						(offset / BLOCKSPERROW) % 16, offset, false, false, false, false, false, false, false);
+			}
+		}
+	}
+
+	/**
+	 * Draws a single block, once renderWorld() (or renderOres()) has decided that it needs drawing,
+	 * and which of its faces are hidden.
+	 */
+	private void renderBlock(short t, BlockType block, int textureId, int x, int y, int z, int blockOffset,
+			boolean highlight_explored, boolean above, boolean below, boolean left, boolean right, boolean near, boolean far)
+	{
+		float worldX = this.x*16;
+		float worldZ = this.z*16;
+		int tex_offset;
+		int north, south, west, east, top, bottom;
+		boolean adj_torch = false;
 
-							if (t == BLOCK_SAPLING.id)
+		// Check to see if this block type has a texture ID which changes depending
+		// on the block's data value
+		if (block.texture_data_map != null)
+		{
+			byte data = getData(x, y, z);
+
+			if (t == BLOCK_SAPLING.id)
+			{
+				// Special-case here for Sapling data, since we can't trust the upper two bits
+				data &= 0x3;
+			}
+			else
+			{
+				// ... otherwise, just make sure we're dealing with the bottom four
+				data &= 0xF;
+			}
+
+			// Now try to get the new texture
+			try
+			{
+				textureId = block.texture_data_map.get(data);
+			}
+			catch (NullPointerException e)
+			{
+				// Just report and continue
+				System.out.println("Unknown data value for block " + block.idStr + ": " + data);
+			}
+		}
+
+		// If we're highlighting explored regions and there's an adjacent
+		// torch, flip over to the "highlighted" textures
+		if (highlight_explored)
+		{
+			adj_torch = hasAdjacentTorch(x,y,z);
+			if (adj_torch)
+			{
+				textureId += 256;
+				tex_offset = 256;
+			}
+			else
+			{
+				tex_offset = 0;
+			}
+		}
+		else
+		{
+			tex_offset = 0;
+		}
+
+		// Now process the actual drawing
+		switch(block.type)
+		{
+			case TORCH:
+				renderTorch(textureId,x,y,z);
+				break;
+			case DECORATION_CROSS:
+				renderCrossDecoration(textureId,x,y,z);
+				break;
+			case CROPS:
+				renderCrops(textureId,x,y,z);
+				break;
+			case LADDER:
+				renderLadder(textureId,x,y,z);
+				break;
+			case FLOOR:
+				renderFloor(textureId,x,y,z);
+				break;
+			case MINECART_TRACKS:
+				renderMinecartTracks(textureId,x,y,z);
+				break;
+			case SIMPLE_RAIL:
+				renderSimpleRail(textureId,x,y,z);
+				break;
+			case PRESSURE_PLATE:
+				renderPlate(textureId,x,y,z);
+				break;
+			case DOOR:
+				renderDoor(textureId,x,y,z);
+				break;
+			case STAIRS:
+				renderStairs(textureId,x,y,z);
+				break;
+			case SIGNPOST:
+				renderSignpost(textureId,x,y,z);
+				break;
+			case WALLSIGN:
+				renderWallSign(textureId,x,y,z);
+				break;
+			case FENCE:
+				renderFence(textureId,x,y,z,blockOffset);
+				break;
+			case FENCE_GATE:
+				renderFenceGate(textureId,x,y,z,blockOffset);
+				break;
+			case LEVER:
+				renderLever(textureId,x,y,z);
+				break;
+			case BUTTON:
+				renderButton(textureId,x,y,z);
+				break;
+			case PORTAL:
+				renderPortal(textureId,x,y,z,blockOffset,t);
+				break;
+			case THINSLICE:
+				renderThinslice(textureId,x,y,z);
+				break;
+			case BED:
+				renderBed(textureId,x,y,z);
+				break;
+			case TRAPDOOR:
+				renderTrapdoor(textureId,x,y,z);
+				break;
+			case PISTON_BODY:
+				renderPistonBody(textureId,x,y,z,t);
+				break;
+			case PISTON_HEAD:
+				renderPistonHead(textureId,x,y,z,false,false);
+				break;
+			case CAKE:
+				renderCake(textureId,x,y,z);
+				break;
+			case VINE:
+				renderVine(textureId,x,y,z,blockOffset);
+				break;
+			case SOLID_PANE:
+				renderSolidPane(textureId,x,y,z,blockOffset,t);
+				break;
+			case HALFHEIGHT:
+				if(!near) this.renderWestEast(textureId, worldX+x, y, worldZ+z, 0f, .495f);
+				if(!far) this.renderWestEast(textureId, worldX+x, y, worldZ+z+1, 0f, .495f);
+				
+				if(!below) this.renderTopDown(textureId, worldX+x, y, worldZ+z);
+				this.renderTopDown(textureId, worldX+x, y+0.5f, worldZ+z);	
+				
+				if(!left) this.renderNorthSouth(textureId, worldX+x, y, worldZ+z, 0f, .495f);
+				if(!right) this.renderNorthSouth(textureId, worldX+x+1, y, worldZ+z, 0f, .495f);
+				break;
+			default:
+				north = textureId;
+				south = textureId;
+				west = textureId;
+				east = textureId;
+				top = textureId;
+				bottom = textureId;
+				if (block.type == BLOCK_TYPE.HUGE_MUSHROOM)
+				{
+					byte data = getData(x, y, z);
+					switch (data)
+					{
+						case 0:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							top = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+					    case 1:
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 2:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 3:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 4:
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 5:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 6:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 7:
+							south = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 8:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							south = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 9:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						case 10:
+							north = TEX_HUGE_MUSHROOM_STEM;
+							south = TEX_HUGE_MUSHROOM_STEM;
+							west = TEX_HUGE_MUSHROOM_STEM;
+							east = TEX_HUGE_MUSHROOM_STEM;
+							top = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+						default:
+							north = TEX_HUGE_MUSHROOM_PORES;
+							south = TEX_HUGE_MUSHROOM_PORES;
+							west = TEX_HUGE_MUSHROOM_PORES;
+							east = TEX_HUGE_MUSHROOM_PORES;
+							top = TEX_HUGE_MUSHROOM_PORES;
+							bottom = TEX_HUGE_MUSHROOM_PORES;
+							break;
+					}
+				}
+				if (block.texture_dir_map != null)
+				{
+					byte data = getData(x, y, z);
+					BlockType.DIRECTION_ABS dir;
+					if (block.texture_dir_data_map != null && block.texture_dir_data_map.containsKey(data))
+					{
+						dir = block.texture_dir_data_map.get(data);
+					}
+					else
+					{
+						dir = BlockType.DIRECTION_ABS.NORTH;
+					}
+
+					switch (dir)
+					{
+						case NORTH:
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
 							{
-								// Special-case here for Sapling data, since we can't trust the upper two bits
-								data &= 0x3;
+								north = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
 							}
-							else
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
 							{
-								// ... otherwise, just make sure we're dealing with the bottom four
-								data &= 0xF;
+								south = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
 							}
-
-							// Now try to get the new texture
-							try
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
 							{
-								textureId = block.texture_data_map.get(data);
+								west = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+								east = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
 							}
-							catch (NullPointerException e)
+							break;
+						case SOUTH:
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
 							{
-								// Just report and continue
-								System.out.println("Unknown data value for block " + block.idStr + ": " + data);
+								north = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
 							}
-						}
-
-						// If we're highlighting explored regions and there's an adjacent
-						// torch, flip over to the "highlighted" textures
-						if (highlight_explored)
-						{
-							adj_torch = hasAdjacentTorch(x,y,z);
-							if (adj_torch)
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
 							{
-								textureId += 256;
-								tex_offset = 256;
+								south = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
 							}
-							else
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
 							{
-								tex_offset = 0;
+								west = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+								east = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
 							}
-						}
-						else
-						{
-							tex_offset = 0;
-						}
+							break;
+						case WEST:
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
+							{
+								north = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+								south = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+							}
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
+							{
+								west = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
+							}
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
+							{
+								east = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
+							}
+							break;
+						case EAST:
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
+							{
+								north = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+								south = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
+							}
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
+							{
+								west = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
+							}
+							if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
+							{
+								east = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
+							}
+							break;
+					}
 
-						// Now process the actual drawing
-						switch(block.type)
-						{
-							case TORCH:
-								renderTorch(textureId,x,y,z);
-								break;
-							case DECORATION_CROSS:
-								renderCrossDecoration(textureId,x,y,z);
-								break;
-							case CROPS:
-								renderCrops(textureId,x,y,z);
-								break;
-							case LADDER:
-								renderLadder(textureId,x,y,z);
-								break;
-							case FLOOR:
-								renderFloor(textureId,x,y,z);
-								break;
-							case MINECART_TRACKS:
-								renderMinecartTracks(textureId,x,y,z);
-								break;
-							case SIMPLE_RAIL:
-								renderSimpleRail(textureId,x,y,z);
-								break;
-							case PRESSURE_PLATE:
-								renderPlate(textureId,x,y,z);
-								break;
-							case DOOR:
-								renderDoor(textureId,x,y,z);
-								break;
-							case STAIRS:
-								renderStairs(textureId,x,y,z);
-								break;
-							case SIGNPOST:
-								renderSignpost(textureId,x,y,z);
-								break;
-							case WALLSIGN:
-								renderWallSign(textureId,x,y,z);
-								break;
-							case FENCE:
-								renderFence(textureId,x,y,z,blockOffset);
-								break;
-							case FENCE_GATE:
-								renderFenceGate(textureId,x,y,z,blockOffset);
-								break;
-							case LEVER:
-								renderLever(textureId,x,y,z);
-								break;
-							case BUTTON:
-								renderButton(textureId,x,y,z);
-								break;
-							case PORTAL:
-								renderPortal(textureId,x,y,z,blockOffset,t);
-								break;
-							case THINSLICE:
-								renderThinslice(textureId,x,y,z);
-								break;
-							case BED:
-								renderBed(textureId,x,y,z);
-								break;
-							case TRAPDOOR:
-								renderTrapdoor(textureId,x,y,z);
-								break;
-							case PISTON_BODY:
-								renderPistonBody(textureId,x,y,z,t);
-								break;
-							case PISTON_HEAD:
-								renderPistonHead(textureId,x,y,z,false,false);
-								break;
-							case CAKE:
-								renderCake(textureId,x,y,z);
-								break;
-							case VINE:
-								renderVine(textureId,x,y,z,blockOffset);
-								break;
-							case SOLID_PANE:
-								renderSolidPane(textureId,x,y,z,blockOffset,t);
-								break;
-							case HALFHEIGHT:
-								if(draw) {
-									if(!near) this.renderWestEast(textureId, worldX+x, y, worldZ+z, 0f, .495f);
-									if(!far) this.renderWestEast(textureId, worldX+x, y, worldZ+z+1, 0f, .495f);
-									
-									if(!below) this.renderTopDown(textureId, worldX+x, y, worldZ+z);
-									this.renderTopDown(textureId, worldX+x, y+0.5f, worldZ+z);	
-									
-									if(!left) this.renderNorthSouth(textureId, worldX+x, y, worldZ+z, 0f, .495f);
-									if(!right) this.renderNorthSouth(textureId, worldX+x+1, y, worldZ+z, 0f, .495f);
-								}
-								break;
-							default:
-								north = textureId;
-								south = textureId;
-								west = textureId;
-								east = textureId;
-								top = textureId;
-								bottom = textureId;
-								if (block.type == BLOCK_TYPE.HUGE_MUSHROOM)
-								{
-									byte data = getData(x, y, z);
-									switch (data)
-									{
-										case 0:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											top = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-									    case 1:
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 2:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 3:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 4:
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 5:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 6:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 7:
-											south = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 8:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											south = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 9:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										case 10:
-											north = TEX_HUGE_MUSHROOM_STEM;
-											south = TEX_HUGE_MUSHROOM_STEM;
-											west = TEX_HUGE_MUSHROOM_STEM;
-											east = TEX_HUGE_MUSHROOM_STEM;
-											top = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-										default:
-											north = TEX_HUGE_MUSHROOM_PORES;
-											south = TEX_HUGE_MUSHROOM_PORES;
-											west = TEX_HUGE_MUSHROOM_PORES;
-											east = TEX_HUGE_MUSHROOM_PORES;
-											top = TEX_HUGE_MUSHROOM_PORES;
-											bottom = TEX_HUGE_MUSHROOM_PORES;
-											break;
-									}
-								}
-								if (block.texture_dir_map != null)
-								{
-									byte data = getData(x, y, z);
-									BlockType.DIRECTION_ABS dir;
-									if (block.texture_dir_data_map != null && block.texture_dir_data_map.containsKey(data))
-									{
-										dir = block.texture_dir_data_map.get(data);
-									}
-									else
-									{
-										dir = BlockType.DIRECTION_ABS.NORTH;
-									}
-
-									switch (dir)
-									{
-										case NORTH:
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
-											{
-												north = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
-											{
-												south = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
-											{
-												west = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-												east = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-											}
-											break;
-										case SOUTH:
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
-											{
-												north = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
-											{
-												south = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
-											{
-												west = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-												east = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-											}
-											break;
-										case WEST:
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
-											{
-												north = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-												south = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
-											{
-												west = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
-											{
-												east = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
-											}
-											break;
-										case EAST:
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.SIDES))
-											{
-												north = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-												south = block.texture_dir_map.get(BlockType.DIRECTION_REL.SIDES) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BACKWARD))
-											{
-												west = block.texture_dir_map.get(BlockType.DIRECTION_REL.BACKWARD) + tex_offset;
-											}
-											if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.FORWARD))
-											{
-												east = block.texture_dir_map.get(BlockType.DIRECTION_REL.FORWARD) + tex_offset;
-											}
-											break;
-									}
-
-									// Top/Bottom doesn't depend on orientation, at least for anything currently in Minecraft.
-									// If Minecraft starts adding blocks that can be oriented Up or Down, we'll have to move
-									// this back into the case statement above
-									if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.TOP))
-									{
-										top = block.texture_dir_map.get(BlockType.DIRECTION_REL.TOP) + tex_offset;
-									}
-									if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BOTTOM))
-									{
-										bottom = block.texture_dir_map.get(BlockType.DIRECTION_REL.BOTTOM) + tex_offset;
-									}
-								}
-
-								if(!near) this.renderWestEast(east, worldX+x, y, worldZ+z);
-								if(!far) this.renderWestEast(west, worldX+x, y, worldZ+z+1);
-								
-								if(!below) this.renderTopDown(bottom, worldX+x, y, worldZ+z);
-								if(!above) this.renderTopDown(top, worldX+x, y+1, worldZ+z);	
-								
-								if(!left) this.renderNorthSouth(north, worldX+x, y, worldZ+z);
-								if(!right) this.renderNorthSouth(south, worldX+x+1, y, worldZ+z);
-						}					
+					// Top/Bottom doesn't depend on orientation, at least for anything currently in Minecraft.
+					// If Minecraft starts adding blocks that can be oriented Up or Down, we'll have to move
+					// this back into the case statement above
+					if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.TOP))
+					{
+						top = block.texture_dir_map.get(BlockType.DIRECTION_REL.TOP) + tex_offset;
+					}
+					if (block.texture_dir_map.containsKey(BlockType.DIRECTION_REL.BOTTOM))
+					{
+						bottom = block.texture_dir_map.get(BlockType.DIRECTION_REL.BOTTOM) + tex_offset;
 					}
 				}
-			}
-		}
+
+				if(!near) this.renderWestEast(east, worldX+x, y, worldZ+z);
+				if(!far) this.renderWestEast(west, worldX+x, y, worldZ+z+1);
+				
+				if(!below) this.renderTopDown(bottom, worldX+x, y, worldZ+z);
+				if(!above) this.renderTopDown(top, worldX+x, y+1, worldZ+z);	
+				
+				if(!left) this.renderNorthSouth(north, worldX+x, y, worldZ+z);
+				if(!right) this.renderNorthSouth(south, worldX+x+1, y, worldZ+z);
+		}					
 	}
 	
 	/**
@@ -3561,32 +3807,83 @@ public class Chunk {
 		}
 	}
 	
+	/**
+	 * Allocates our display lists, if that hasn't happened yet.  Must be called
+	 * from the GL thread.
+	 */
+	private void allocateDisplayLists() {
+		if (displayListNum == 0)
+		{
+			displayListNum = DisplayListPool.acquire();
+			selectedDisplayListNum = DisplayListPool.acquire();
+			transparentListNum = DisplayListPool.acquire();
+			this.isDirty = true;
+			this.isSelectedDirty = true;
+		}
+	}
+
+	/**
+	 * Gives our display lists back to the DisplayListPool, once we've been
+	 * unloaded.  If we're rendered again after all, we'll just get new ones.
+	 * Must be called from the GL thread.
+	 */
+	public void releaseDisplayLists() {
+		if (displayListNum != 0)
+		{
+			DisplayListPool.release(displayListNum);
+			DisplayListPool.release(selectedDisplayListNum);
+			DisplayListPool.release(transparentListNum);
+			displayListNum = 0;
+			selectedDisplayListNum = 0;
+			transparentListNum = 0;
+		}
+		this.solidVertices = 0;
+		this.selectedVertices = 0;
+		if (decodedChunk == this)
+		{
+			decodedChunk = null;
+		}
+		for (int side = 0; side < 4; side++)
+		{
+			if (borderChunks[side] == this)
+			{
+				borderChunks[side] = null;
+			}
+		}
+	}
+
 	public void renderSolid(boolean render_bedrock, boolean render_water, boolean highlight_explored) {
+		allocateDisplayLists();
 		if(isDirty) {
-				GL11.glNewList(this.displayListNum, GL11.GL_COMPILE);
+				long vertices = ChunkGL.getVertexCount();
+				ChunkGL.glNewList(this.displayListNum, GL11.GL_COMPILE);
 				renderWorld(false, render_bedrock, false, highlight_explored, false, null);
-				GL11.glEndList();
-				GL11.glNewList(this.transparentListNum, GL11.GL_COMPILE);
-				//GL11.glDepthMask(false);
+				ChunkGL.glEndList();
+				ChunkGL.glNewList(this.transparentListNum, GL11.GL_COMPILE);
+				//ChunkGL.glDepthMask(false);
 				renderWorld(true, false, render_water, highlight_explored, false, null);
-				//GL11.glDepthMask(true);
-				GL11.glEndList();
+				//ChunkGL.glDepthMask(true);
+				ChunkGL.glEndList();
+				this.solidVertices = (int) (ChunkGL.getVertexCount() - vertices);
 				this.isDirty = false;
 		}
-		GL11.glCallList(this.displayListNum);
+		ChunkGL.glCallList(this.displayListNum);
 	}
 	
 	public void renderTransparency() {
-		GL11.glCallList(this.transparentListNum);
+		ChunkGL.glCallList(this.transparentListNum);
 	}
 	
 	public void renderSelected(boolean[] selectedMap) {
+		allocateDisplayLists();
 		if(isSelectedDirty) {
-			GL11.glNewList(this.selectedDisplayListNum, GL11.GL_COMPILE);
-			renderWorld(false, false, false, false, true, selectedMap);
-			GL11.glEndList();
+			long vertices = ChunkGL.getVertexCount();
+			ChunkGL.glNewList(this.selectedDisplayListNum, GL11.GL_COMPILE);
+			renderOres(selectedMap);
+			ChunkGL.glEndList();
+			this.selectedVertices = (int) (ChunkGL.getVertexCount() - vertices);
 			this.isSelectedDirty = false;
 		}
-		GL11.glCallList(this.selectedDisplayListNum);
+		ChunkGL.glCallList(this.selectedDisplayListNum);
 	}
 }
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * The GL calls Chunk makes while building and drawing its display lists.
+ * Normally these just pass through to GL11.  In headless mode (see
+ * XRay's -headless option) there's no GL context at all, so instead we
+ * count what would have been drawn, which lets chunk meshing be timed on
+ * machines without a display.
+ *
+ * Only the GL thread may use this, same as GL11 itself.
+ */
+public class ChunkGL
+{
+	private static boolean headless = false;
+
+	// Fake display list IDs, for headless mode
+	private static int nextList = 1;
+
+	private static long vertices = 0;
+	private static long primitives = 0;
+	private static long listsCompiled = 0;
+	private static long listsGenerated = 0;
+	private static long listsDeleted = 0;
+
+	public static void setHeadless(boolean headless)
+	{
+		ChunkGL.headless = headless;
+	}
+
+	public static boolean isHeadless()
+	{
+		return headless;
+	}
+
+	/**
+	 * Vertices sent since the last resetCounts().  Unlike the other counts, this
+	 * is kept up outside of headless mode too, since Chunk uses it to see how big
+	 * its display lists are.
+	 */
+	public static long getVertexCount()
+	{
+		return vertices;
+	}
+
+	/**
+	 * glBegin() calls since the last resetCounts(); only counted in headless mode
+	 */
+	public static long getPrimitiveCount()
+	{
+		return primitives;
+	}
+
+	/**
+	 * Display lists compiled since the last resetCounts(); only counted in headless mode
+	 */
+	public static long getListsCompiled()
+	{
+		return listsCompiled;
+	}
+
+	/**
+	 * Display lists generated since the last resetCounts(); only counted in headless mode
+	 */
+	public static long getListsGenerated()
+	{
+		return listsGenerated;
+	}
+
+	/**
+	 * Display lists deleted since the last resetCounts(); only counted in headless mode
+	 */
+	public static long getListsDeleted()
+	{
+		return listsDeleted;
+	}
+
+	public static void resetCounts()
+	{
+		vertices = 0;
+		primitives = 0;
+		listsCompiled = 0;
+		listsGenerated = 0;
+		listsDeleted = 0;
+	}
+
+	public static int glGenLists(int range)
+	{
+		if (headless)
+		{
+			int list = nextList;
+			nextList += range;
+			listsGenerated += range;
+			return list;
+		}
+		return GL11.glGenLists(range);
+	}
+
+	public static void glDeleteLists(int list, int range)
+	{
+		if (headless)
+		{
+			listsDeleted += range;
+			return;
+		}
+		GL11.glDeleteLists(list, range);
+	}
+
+	public static void glNewList(int list, int mode)
+	{
+		if (headless)
+		{
+			listsCompiled++;
+			return;
+		}
+		GL11.glNewList(list, mode);
+	}
+
+	public static void glEndList()
+	{
+		if (!headless)
+		{
+			GL11.glEndList();
+		}
+	}
+
+	public static void glCallList(int list)
+	{
+		if (!headless)
+		{
+			GL11.glCallList(list);
+		}
+	}
+
+	public static void glBegin(int mode)
+	{
+		if (headless)
+		{
+			primitives++;
+			return;
+		}
+		GL11.glBegin(mode);
+	}
+
+	public static void glEnd()
+	{
+		if (!headless)
+		{
+			GL11.glEnd();
+		}
+	}
+
+	public static void glVertex3f(float x, float y, float z)
+	{
+		vertices++;
+		if (!headless)
+		{
+			GL11.glVertex3f(x, y, z);
+		}
+	}
+
+	public static void glTexCoord2f(float s, float t)
+	{
+		if (!headless)
+		{
+			GL11.glTexCoord2f(s, t);
+		}
+	}
+
+	public static void glNormal3f(float nx, float ny, float nz)
+	{
+		if (!headless)
+		{
+			GL11.glNormal3f(nx, ny, nz);
+		}
+	}
+
+	public static void glPushMatrix()
+	{
+		if (!headless)
+		{
+			GL11.glPushMatrix();
+		}
+	}
+
+	public static void glPopMatrix()
+	{
+		if (!headless)
+		{
+			GL11.glPopMatrix();
+		}
+	}
+
+	public static void glTranslatef(float x, float y, float z)
+	{
+		if (!headless)
+		{
+			GL11.glTranslatef(x, y, z);
+		}
+	}
+
+	public static void glRotatef(float angle, float x, float y, float z)
+	{
+		if (!headless)
+		{
+			GL11.glRotatef(angle, x, y, z);
+		}
+	}
+
+	public static void glEnable(int cap)
+	{
+		if (!headless)
+		{
+			GL11.glEnable(cap);
+		}
+	}
+
+	public static void glDisable(int cap)
+	{
+		if (!headless)
+		{
+			GL11.glDisable(cap);
+		}
+	}
+
+	public static void glDepthMask(boolean flag)
+	{
+		if (!headless)
+		{
+			GL11.glDepthMask(flag);
+		}
+	}
+}
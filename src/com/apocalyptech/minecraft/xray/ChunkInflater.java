@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses chunk data out of region files without allocating anything
+ * per chunk.  Each thread gets its own instance (via get()), which holds on
+ * to a couple of Inflaters plus input and output buffers that grow as needed
+ * and are then reused for every chunk that thread reads.
+ * 
+ * The catch is that the data handed back is only good until the next time
+ * the same thread inflates something, so callers need to be finished parsing
+ * one chunk before reading the next.  That's how MinecraftLevel.loadChunk()
+ * works anyway.
+ */
+public class ChunkInflater
+{
+	private static final int VERSION_GZIP = 1;
+	private static final int VERSION_DEFLATE = 2;
+
+	private static final ThreadLocal<ChunkInflater> perThread = new ThreadLocal<ChunkInflater>()
+	{
+		protected ChunkInflater initialValue()
+		{
+			return new ChunkInflater();
+		}
+	};
+
+	// zlib-wrapped data, for VERSION_DEFLATE chunks
+	private final Inflater zlibInflater = new Inflater();
+
+	// raw deflate data, for the body of VERSION_GZIP chunks
+	private final Inflater rawInflater = new Inflater(true);
+
+	private byte[] input = new byte[16 * 1024];
+	private byte[] output = new byte[96 * 1024];
+	private int outputLength = 0;
+
+	private final ScratchInputStream outputStream = new ScratchInputStream();
+	private final DataInputStream dataStream = new DataInputStream(outputStream);
+
+	private ChunkInflater()
+	{
+		// Use get()
+	}
+
+	/**
+	 * Returns the ChunkInflater belonging to the current thread.
+	 */
+	public static ChunkInflater get()
+	{
+		return perThread.get();
+	}
+
+	/**
+	 * Returns a heap buffer of at least the given size which is backed by our
+	 * input array.  Reading compressed data into this lets inflate() skip
+	 * copying it.
+	 */
+	public ByteBuffer getInputBuffer(int length)
+	{
+		if (input.length < length)
+		{
+			input = new byte[Math.max(length, input.length * 2)];
+		}
+		ByteBuffer buf = ByteBuffer.wrap(input);
+		buf.limit(length);
+		return buf;
+	}
+
+	/**
+	 * Inflates raw chunk data (a version byte followed by the compressed payload)
+	 * and returns a stream over the result.  The stream is reused; see the class
+	 * comments.  Returns null if the data is in a format we don't know, or is corrupt.
+	 */
+	public DataInputStream inflate(ByteBuffer chunk)
+	{
+		if (!inflateToOutput(chunk))
+		{
+			return null;
+		}
+		outputStream.reset(output, outputLength);
+		return dataStream;
+	}
+
+	/**
+	 * Like inflate(), but hands back the inflated data as a buffer instead.
+	 */
+	public ByteBuffer inflateToBuffer(ByteBuffer chunk)
+	{
+		if (!inflateToOutput(chunk))
+		{
+			return null;
+		}
+		return ByteBuffer.wrap(output, 0, outputLength);
+	}
+
+	private boolean inflateToOutput(ByteBuffer chunk)
+	{
+		int length = chunk.remaining() - 1;
+		if (length < 1)
+		{
+			return false;
+		}
+		byte version = chunk.get(chunk.position());
+
+		// Find the compressed bytes in an array, copying them into our own input
+		// buffer only if they're not already in one (ie: they're in a mapped file)
+		byte[] in;
+		int inOffset;
+		if (chunk.hasArray())
+		{
+			in = chunk.array();
+			inOffset = chunk.arrayOffset() + chunk.position() + 1;
+		}
+		else
+		{
+			getInputBuffer(length);
+			ByteBuffer src = chunk.duplicate();
+			src.position(src.position() + 1);
+			src.get(input, 0, length);
+			in = input;
+			inOffset = 0;
+		}
+
+		try
+		{
+			if (version == VERSION_DEFLATE)
+			{
+				return run(zlibInflater, in, inOffset, length);
+			}
+			else if (version == VERSION_GZIP)
+			{
+				int header = gzipHeaderLength(in, inOffset, length);
+				if (header < 0)
+				{
+					return false;
+				}
+				return run(rawInflater, in, inOffset + header, length - header);
+			}
+		}
+		catch (DataFormatException e)
+		{
+			return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Inflates everything in the given array range into our output buffer, growing it
+	 * as needed.
+	 */
+	private boolean run(Inflater inflater, byte[] in, int offset, int length) throws DataFormatException
+	{
+		inflater.reset();
+		inflater.setInput(in, offset, length);
+		outputLength = 0;
+		while (!inflater.finished())
+		{
+			if (outputLength == output.length)
+			{
+				byte[] bigger = new byte[output.length * 2];
+				System.arraycopy(output, 0, bigger, 0, outputLength);
+				output = bigger;
+			}
+			int count = inflater.inflate(output, outputLength, output.length - outputLength);
+			if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+			{
+				// Truncated data
+				return false;
+			}
+			outputLength += count;
+		}
+		return true;
+	}
+
+	/**
+	 * Works out how long the gzip header at the start of the given range is, so that we
+	 * can feed what follows it straight to a raw Inflater.  Returns -1 if it doesn't
+	 * look like gzip data.  We don't bother checking the trailing CRC; GZIPInputStream
+	 * would have, but the NBT parser will notice if the data's garbage anyway.
+	 */
+	private static int gzipHeaderLength(byte[] in, int offset, int length)
+	{
+		final int FHCRC = 2;
+		final int FEXTRA = 4;
+		final int FNAME = 8;
+		final int FCOMMENT = 16;
+
+		if (length < 10 || (in[offset] & 0xFF) != 0x1f || (in[offset+1] & 0xFF) != 0x8b || in[offset+2] != 8)
+		{
+			return -1;
+		}
+		int flags = in[offset+3] & 0xFF;
+		int pos = 10;
+		if ((flags & FEXTRA) != 0)
+		{
+			if (pos + 2 > length)
+			{
+				return -1;
+			}
+			pos += 2 + ((in[offset+pos] & 0xFF) | ((in[offset+pos+1] & 0xFF) << 8));
+		}
+		if ((flags & FNAME) != 0)
+		{
+			while (pos < length && in[offset+pos] != 0)
+			{
+				pos++;
+			}
+			pos++;
+		}
+		if ((flags & FCOMMENT) != 0)
+		{
+			while (pos < length && in[offset+pos] != 0)
+			{
+				pos++;
+			}
+			pos++;
+		}
+		if ((flags & FHCRC) != 0)
+		{
+			pos += 2;
+		}
+		if (pos >= length)
+		{
+			return -1;
+		}
+		return pos;
+	}
+
+	/**
+	 * A minimal, unsynchronized stand-in for ByteArrayInputStream which can be
+	 * pointed at new data.
+	 */
+	private static class ScratchInputStream extends InputStream
+	{
+		private byte[] buf;
+		private int pos;
+		private int count;
+
+		public void reset(byte[] buf, int count)
+		{
+			this.buf = buf;
+			this.pos = 0;
+			this.count = count;
+		}
+
+		public int read()
+		{
+			return (pos < count) ? (buf[pos++] & 0xFF) : -1;
+		}
+
+		public int read(byte[] b, int off, int len)
+		{
+			if (pos >= count)
+			{
+				return -1;
+			}
+			if (len > count - pos)
+			{
+				len = count - pos;
+			}
+			System.arraycopy(buf, pos, b, off, len);
+			pos += len;
+			return len;
+		}
+
+		public long skip(long n)
+		{
+			if (n > count - pos)
+			{
+				n = count - pos;
+			}
+			if (n < 0)
+			{
+				return 0;
+			}
+			pos += (int) n;
+			return n;
+		}
+
+		public int available()
+		{
+			return count - pos;
+		}
+
+		public void close()
+		{
+			// Nothing to do; the buffer belongs to the ChunkInflater
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * The chunks we still need to load, in the order we'd like them.  Rather than
+ * loading them in the order they were asked for, we hand out whichever chunk is
+ * closest to the camera first, with chunks in front of the camera coming ahead
+ * of those the same distance behind it, so that what's on screen fills in
+ * first.  update() should be called each frame with the camera's current chunk
+ * and direction; that re-sorts the queue if we've moved or turned, and drops
+ * anything which is no longer within our load range (because we've flown past
+ * it, or jumped somewhere else entirely) without ever reading it.
+ * 
+ * Chunks are passed around as Blocks, whose x and z are chunk coordinates, like
+ * the rest of the chunk loading code does.  Adding a chunk that's already
+ * queued does nothing.
+ */
+public class ChunkLoadQueue implements Iterable<Block>
+{
+	// How much further away a chunk directly behind us seems than one directly
+	// in front.  Chunks to the side come halfway in between.
+	private static final float BEHIND_PENALTY = 2.5f;
+
+	// Don't bother re-sorting for turns smaller than this many degrees
+	private static final float YAW_TOLERANCE = 10f;
+
+	private static class Entry
+	{
+		public final Block block;
+		public float score;
+
+		public Entry(Block block)
+		{
+			this.block = block;
+		}
+	}
+
+	// Sorted so that the chunk we want next is at the end, which makes handing
+	// it out cheap.
+	private ArrayList<Entry> entries;
+
+	// Keys (from MinecraftLevel.chunkKey()) of everything in entries
+	private HashSet<Long> queued;
+
+	private boolean needsSort;
+	private int chunkX;
+	private int chunkZ;
+	private int range;
+	private float yaw;
+	private float viewX;
+	private float viewZ;
+
+	private static final Comparator<Entry> BEST_LAST = new Comparator<Entry>()
+	{
+		public int compare(Entry a, Entry b)
+		{
+			return Float.compare(b.score, a.score);
+		}
+	};
+
+	public ChunkLoadQueue()
+	{
+		this.entries = new ArrayList<Entry>();
+		this.queued = new HashSet<Long>();
+		this.needsSort = false;
+		this.range = -1;
+		this.yaw = Float.NaN;
+	}
+
+	/**
+	 * Queues up a chunk to load.  Returns false if it was already queued.
+	 */
+	public boolean add(Block chunk)
+	{
+		if (!this.queued.add(MinecraftLevel.chunkKey(chunk.x, chunk.z)))
+		{
+			return false;
+		}
+		this.entries.add(new Entry(chunk));
+		this.needsSort = true;
+		return true;
+	}
+
+	/**
+	 * Tells us where the camera is now.  If we've moved to a new chunk or the
+	 * range has changed, anything more than range chunks away from the given
+	 * chunk (on either axis) is dropped.  The rest is re-prioritised if we've
+	 * moved to a new chunk or turned.
+	 * 
+	 * @param chunkX The chunk the camera is in
+	 * @param chunkZ The chunk the camera is in
+	 * @param yaw The camera's yaw, as from FirstPersonCameraController.getYaw()
+	 * @param range Our load range, in chunks
+	 */
+	public void update(int chunkX, int chunkZ, float yaw, int range)
+	{
+		if (chunkX != this.chunkX || chunkZ != this.chunkZ || range != this.range)
+		{
+			if (chunkX != this.chunkX || chunkZ != this.chunkZ)
+			{
+				this.chunkX = chunkX;
+				this.chunkZ = chunkZ;
+				this.needsSort = true;
+			}
+			this.range = range;
+
+			Iterator<Entry> i = this.entries.iterator();
+			Block b;
+			while (i.hasNext())
+			{
+				b = i.next().block;
+				if (Math.abs(b.x - chunkX) > range || Math.abs(b.z - chunkZ) > range)
+				{
+					i.remove();
+					this.queued.remove(MinecraftLevel.chunkKey(b.x, b.z));
+				}
+			}
+		}
+		float turned = Math.abs(yaw - this.yaw) % 360f;
+		if (Float.isNaN(turned) || Math.min(turned, 360f - turned) > YAW_TOLERANCE)
+		{
+			// The camera moves along (-sin(yaw), cos(yaw)) in its own coordinates,
+			// which are the negatives of world coordinates.
+			this.yaw = yaw;
+			this.viewX = (float) Math.sin(Math.toRadians(yaw));
+			this.viewZ = (float) -Math.cos(Math.toRadians(yaw));
+			this.needsSort = true;
+		}
+		if (this.needsSort)
+		{
+			this.sort();
+		}
+	}
+
+	private void sort()
+	{
+		float dx, dz, distance, facing;
+		for (Entry e : this.entries)
+		{
+			dx = e.block.x - this.chunkX;
+			dz = e.block.z - this.chunkZ;
+			distance = (float) Math.sqrt(dx * dx + dz * dz);
+			if (distance < 1.5f)
+			{
+				// Our own chunk and its immediate neighbors always come first
+				e.score = distance;
+				continue;
+			}
+			facing = (dx * this.viewX + dz * this.viewZ) / distance;
+			e.score = distance * (1f + (BEHIND_PENALTY - 1f) * (1f - facing) / 2f);
+		}
+		Collections.sort(this.entries, BEST_LAST);
+		this.needsSort = false;
+	}
+
+	/**
+	 * Removes and returns the chunk we'd most like to load next, or null if
+	 * there aren't any.
+	 */
+	public Block poll()
+	{
+		if (this.entries.isEmpty())
+		{
+			return null;
+		}
+		if (this.needsSort)
+		{
+			this.sort();
+		}
+		Block b = this.entries.remove(this.entries.size() - 1).block;
+		this.queued.remove(MinecraftLevel.chunkKey(b.x, b.z));
+		return b;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.entries.isEmpty();
+	}
+
+	public int size()
+	{
+		return this.entries.size();
+	}
+
+	public void clear()
+	{
+		this.entries.clear();
+		this.queued.clear();
+		this.needsSort = false;
+	}
+
+	/**
+	 * Iterates over everything queued, in no particular order
+	 */
+	public Iterator<Block> iterator()
+	{
+		final Iterator<Entry> i = this.entries.iterator();
+		return new Iterator<Block>()
+		{
+			public boolean hasNext()
+			{
+				return i.hasNext();
+			}
+
+			public Block next()
+			{
+				return i.next().block;
+			}
+
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
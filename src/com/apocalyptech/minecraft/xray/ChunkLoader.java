@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads chunks for a MinecraftLevel on a small pool of background threads, so
+ * that the render thread never has to wait on disk I/O, decompression or NBT
+ * parsing.  Chunks are handed over with submit(); once a worker has built the
+ * Chunk object it goes on a ready queue, and the render thread picks it up
+ * with poll() (or take(), if it's happy to wait) and adopts it into the level
+ * with MinecraftLevel.adoptChunk().  Anything that touches GL (compiling the
+ * display lists, updating the minimap texture) stays on the render thread.
+ * 
+ * submit(), poll() and take() should only be called from the render thread;
+ * we keep track of which chunks are in flight there, so asking for the same
+ * chunk twice before it's come back only loads it once.  We only want a few
+ * chunks in flight at a time (see hasCapacity()), so that the rest can wait in
+ * a ChunkLoadQueue, where they can still be re-ordered or dropped as the
+ * camera moves.
+ */
+public class ChunkLoader
+{
+	/**
+	 * A chunk which has come back from the loader threads.  chunk is null if
+	 * it couldn't be read.
+	 */
+	public static class LoadedChunk
+	{
+		public final int x;
+		public final int z;
+		public Chunk chunk;
+
+		// If reading the chunk threw, we hand it back to the render thread to deal with
+		public RuntimeException error;
+
+		// System.nanoTime() when this was submitted, and how long the read itself took
+		public final long submitTime;
+		public long loadTime;
+
+		// Set if we no longer want this; if it hasn't been read yet, it won't be
+		public volatile boolean cancelled;
+
+		private LoadedChunk(int x, int z)
+		{
+			this.x = x;
+			this.z = z;
+			this.submitTime = System.nanoTime();
+		}
+	}
+
+	private MinecraftLevel level;
+	private ExecutorService pool;
+	private LinkedBlockingQueue<LoadedChunk> ready;
+
+	// Chunks we've submitted but not yet handed back, keyed by MinecraftLevel.chunkKey()
+	private HashMap<Long, LoadedChunk> pending;
+	private int capacity;
+
+	private volatile boolean stopped;
+
+	// How long stop() will wait for chunks which are already being read
+	private static final int STOP_TIMEOUT_SECONDS = 30;
+
+	/**
+	 * Starts a loader for the given level.  threads may be zero, in which case
+	 * we'll use one fewer than the number of processors (but always at least one,
+	 * and never more than four; past that we're just fighting over the disk).
+	 */
+	public ChunkLoader(MinecraftLevel level, int threads)
+	{
+		if (threads <= 0)
+		{
+			threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+		}
+		this.level = level;
+		this.ready = new LinkedBlockingQueue<LoadedChunk>();
+		this.pending = new HashMap<Long, LoadedChunk>();
+		this.capacity = threads * 4;
+		this.stopped = false;
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private int count = 0;
+
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "X-Ray chunk loader " + (++count));
+				t.setDaemon(true);
+				t.setPriority(Thread.NORM_PRIORITY - 1);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Queues the given chunk to be read.  Returns false if it was already on
+	 * its way (and hasn't been cancelled since).
+	 */
+	public boolean submit(int x, int z)
+	{
+		Long key = MinecraftLevel.chunkKey(x, z);
+		LoadedChunk previous = this.pending.get(key);
+		if (previous != null && !previous.cancelled)
+		{
+			return false;
+		}
+		final LoadedChunk loaded = new LoadedChunk(x, z);
+		this.pending.put(key, loaded);
+		this.pool.execute(new Runnable()
+		{
+			public void run()
+			{
+				if (stopped)
+				{
+					return;
+				}
+				long start = System.nanoTime();
+				try
+				{
+					if (!loaded.cancelled)
+					{
+						loaded.chunk = level.readChunk(loaded.x, loaded.z);
+					}
+				}
+				catch (RuntimeException e)
+				{
+					loaded.error = e;
+				}
+				finally
+				{
+					// Always hand it back, so that take() can't wait forever
+					loaded.loadTime = System.nanoTime() - start;
+					ready.add(loaded);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Returns a chunk which has finished loading, or null if none are ready yet.
+	 */
+	public LoadedChunk poll()
+	{
+		return this.handBack(this.ready.poll());
+	}
+
+	/**
+	 * Returns a chunk which has finished loading, waiting for one if need be.
+	 * Returns null straight away if there's nothing in flight.
+	 */
+	public LoadedChunk take()
+	{
+		if (this.pending.isEmpty())
+		{
+			return null;
+		}
+		try
+		{
+			return this.handBack(this.ready.take());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private LoadedChunk handBack(LoadedChunk loaded)
+	{
+		if (loaded != null)
+		{
+			// If it was cancelled and then asked for again, the new request is
+			// still pending
+			Long key = MinecraftLevel.chunkKey(loaded.x, loaded.z);
+			if (this.pending.get(key) == loaded)
+			{
+				this.pending.remove(key);
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Cancels any chunks in flight which are more than range chunks away from
+	 * the given chunk (on either axis).  They'll still be handed back, but
+	 * without having been read if we got to them in time.
+	 */
+	public void cancelOutside(int chunkX, int chunkZ, int range)
+	{
+		for (LoadedChunk loaded : this.pending.values())
+		{
+			if (Math.abs(loaded.x - chunkX) > range || Math.abs(loaded.z - chunkZ) > range)
+			{
+				loaded.cancelled = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether we'd like more chunks submitted.  We keep enough in
+	 * flight to keep our threads busy, but no more.
+	 */
+	public boolean hasCapacity()
+	{
+		return this.pending.size() < this.capacity;
+	}
+
+	/**
+	 * The number of chunks which have been submitted but not yet handed back
+	 */
+	public int getPendingCount()
+	{
+		return this.pending.size();
+	}
+
+	/**
+	 * Stops the loader threads.  Anything still queued is dropped.  Chunks which
+	 * are already being read are left to finish rather than interrupted (an
+	 * interrupt closes the channel of any region file being opened, which would
+	 * then look empty), and we wait for them, so that nothing from this level is
+	 * still reading once the next one starts.
+	 */
+	public void stop()
+	{
+		this.stopped = true;
+		this.pool.shutdown();
+		try
+		{
+			this.pool.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		this.ready.clear();
+		this.pending.clear();
+	}
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The chunks a MinecraftLevel has loaded, keyed by their chunk coordinates.
+ * This is an open-addressing hash table (with linear probing) on keys packed
+ * by MinecraftLevel.chunkKey(), so lookups don't box anything, and unlike the
+ * old fixed-size ring buffer, chunks far apart never land in the same slot.
+ * 
+ * Only one thread (the render thread) should change the map, but any number of
+ * others can read it at the same time: removed entries just have their chunk
+ * cleared, rather than anything being moved about, and when the table needs
+ * to grow (or has collected too many removed entries) we build a new one and
+ * swap it in whole.  A reader might miss a chunk that's being added at that
+ * very moment, but will never see the wrong one.
+ * 
+ * Iterating visits only the chunks which are actually loaded, in no particular
+ * order.
+ */
+public class ChunkMap implements Iterable<Chunk>
+{
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int MIN_CAPACITY = 256;
+
+	private static class Table
+	{
+		public final AtomicLongArray keys;
+		public final AtomicReferenceArray<Chunk> chunks;
+		public final int mask;
+		public final int shift;
+
+		// Slots with a key in them, whether or not the chunk's still there
+		public int used;
+
+		public Table(int capacity)
+		{
+			this.keys = new AtomicLongArray(capacity);
+			this.chunks = new AtomicReferenceArray<Chunk>(capacity);
+			this.mask = capacity - 1;
+			this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+			for (int i = 0; i < capacity; i++)
+			{
+				this.keys.set(i, EMPTY);
+			}
+		}
+
+		public int capacity()
+		{
+			return this.mask + 1;
+		}
+
+		public int slot(long key)
+		{
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> this.shift);
+		}
+	}
+
+	private volatile Table table;
+	private int size;
+
+	public ChunkMap()
+	{
+		this.table = new Table(MIN_CAPACITY);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the chunk at the given chunk coordinates, or null if it's not loaded
+	 */
+	public Chunk get(int chunkX, int chunkZ)
+	{
+		Table t = this.table;
+		long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+		long found;
+		for (int i = t.slot(key); ; i = (i + 1) & t.mask)
+		{
+			found = t.keys.get(i);
+			if (found == key)
+			{
+				return t.chunks.get(i);
+			}
+			if (found == EMPTY)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Stores a chunk at the given chunk coordinates, replacing whatever was
+	 * there.  Storing null removes it.
+	 */
+	public void put(int chunkX, int chunkZ, Chunk chunk)
+	{
+		if (chunk == null)
+		{
+			this.remove(chunkX, chunkZ);
+			return;
+		}
+		Table t = this.table;
+		long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+		long found;
+		int i;
+		for (i = t.slot(key); ; i = (i + 1) & t.mask)
+		{
+			found = t.keys.get(i);
+			if (found == key)
+			{
+				if (t.chunks.getAndSet(i, chunk) == null)
+				{
+					this.size++;
+				}
+				return;
+			}
+			if (found == EMPTY)
+			{
+				break;
+			}
+		}
+
+		// A new key.  Keep the table no more than half full, counting removed
+		// entries, so that probes stay short.
+		if ((t.used + 1) * 2 > t.capacity())
+		{
+			this.rebuild();
+			this.put(chunkX, chunkZ, chunk);
+			return;
+		}
+		t.chunks.set(i, chunk);
+		t.keys.set(i, key);
+		t.used++;
+		this.size++;
+	}
+
+	/**
+	 * Removes the chunk at the given chunk coordinates, returning it (or null
+	 * if it wasn't loaded)
+	 */
+	public Chunk remove(int chunkX, int chunkZ)
+	{
+		Table t = this.table;
+		long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+		long found;
+		for (int i = t.slot(key); ; i = (i + 1) & t.mask)
+		{
+			found = t.keys.get(i);
+			if (found == key)
+			{
+				Chunk old = t.chunks.getAndSet(i, null);
+				if (old != null)
+				{
+					this.size--;
+				}
+				return old;
+			}
+			if (found == EMPTY)
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Copies everything into a fresh table, sized for what we've got, which
+	 * also throws away the keys of removed chunks.
+	 */
+	private void rebuild()
+	{
+		Table old = this.table;
+		int capacity = MIN_CAPACITY;
+		while (capacity < (this.size + 1) * 4)
+		{
+			capacity *= 2;
+		}
+		Table t = new Table(capacity);
+		long key;
+		Chunk chunk;
+		int j;
+		for (int i = 0; i < old.capacity(); i++)
+		{
+			chunk = old.chunks.get(i);
+			if (chunk == null)
+			{
+				continue;
+			}
+			key = old.keys.get(i);
+			for (j = t.slot(key); t.keys.get(j) != EMPTY; j = (j + 1) & t.mask)
+			{
+				// Just looking for an empty slot
+			}
+			t.chunks.set(j, chunk);
+			t.keys.set(j, key);
+			t.used++;
+		}
+		this.table = t;
+	}
+
+	/**
+	 * The number of chunks loaded
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	public void clear()
+	{
+		this.table = new Table(MIN_CAPACITY);
+		this.size = 0;
+	}
+
+	/**
+	 * Iterates over the loaded chunks, as of when we started.  Chunks removed
+	 * while we're iterating may or may not be included; remove() isn't supported.
+	 */
+	public Iterator<Chunk> iterator()
+	{
+		final Table t = this.table;
+		return new Iterator<Chunk>()
+		{
+			private int index = -1;
+			private Chunk next = this.advance();
+
+			private Chunk advance()
+			{
+				Chunk c;
+				while (++this.index < t.capacity())
+				{
+					c = t.chunks.get(this.index);
+					if (c != null)
+					{
+						return c;
+					}
+				}
+				return null;
+			}
+
+			public boolean hasNext()
+			{
+				return this.next != null;
+			}
+
+			public Chunk next()
+			{
+				if (this.next == null)
+				{
+					throw new NoSuchElementException();
+				}
+				Chunk c = this.next;
+				this.next = this.advance();
+				return c;
+			}
+
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
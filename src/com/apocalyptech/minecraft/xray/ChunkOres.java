@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.Arrays;
+
+import static com.apocalyptech.minecraft.xray.MinecraftConstants.*;
+
+/**
+ * Where a chunk's highlightable ores are, built once when it's loaded.  For
+ * each highlightable block ID actually present in the chunk we keep a list
+ * of its offsets (in the usual "Blocks" order), so that drawing the
+ * highlighted ores only has to visit the ores themselves, rather than the
+ * whole chunk.
+ */
+public class ChunkOres
+{
+	private static final short[] NO_TYPES = new short[0];
+	private static final char[][] NO_POSITIONS = new char[0][];
+
+	private final short[] types;
+	private final char[][] positions;
+
+	/**
+	 * @param blocks The chunk's block IDs
+	 * @param highlightOres The IDs which can be highlighted (may be null)
+	 */
+	public ChunkOres(short[] blocks, short[] highlightOres)
+	{
+		if (highlightOres == null || highlightOres.length == 0)
+		{
+			this.types = NO_TYPES;
+			this.positions = NO_POSITIONS;
+			return;
+		}
+
+		// Count each highlightable ID; the rest stay at -1
+		int max = 0;
+		for (short ore : highlightOres)
+		{
+			max = Math.max(max, ore);
+		}
+		int[] counts = new int[max + 1];
+		Arrays.fill(counts, -1);
+		for (short ore : highlightOres)
+		{
+			if (ore > 0)
+			{
+				counts[ore] = 0;
+			}
+		}
+		short t;
+		for (int i = 0; i < blocks.length; i++)
+		{
+			t = blocks[i];
+			if (t > 0 && t <= max && counts[t] >= 0)
+			{
+				counts[t]++;
+			}
+		}
+
+		int found = 0;
+		for (int id = 0; id <= max; id++)
+		{
+			if (counts[id] > 0)
+			{
+				found++;
+			}
+		}
+		this.types = new short[found];
+		this.positions = new char[found][];
+
+		// Then fill in their positions; slots maps an ID to its entry plus one
+		int[] slots = new int[max + 1];
+		int[] filled = new int[found];
+		found = 0;
+		for (int id = 0; id <= max; id++)
+		{
+			if (counts[id] > 0)
+			{
+				this.types[found] = (short) id;
+				this.positions[found] = new char[counts[id]];
+				slots[id] = ++found;
+			}
+		}
+		int slot;
+		for (int i = 0; i < blocks.length; i++)
+		{
+			t = blocks[i];
+			if (t > 0 && t <= max && slots[t] > 0)
+			{
+				slot = slots[t] - 1;
+				this.positions[slot][filled[slot]++] = (char) i;
+			}
+		}
+	}
+
+	/**
+	 * How many different highlightable IDs the chunk has
+	 */
+	public int getTypeCount()
+	{
+		return this.types.length;
+	}
+
+	/**
+	 * The block ID of the given entry
+	 */
+	public short getType(int i)
+	{
+		return this.types[i];
+	}
+
+	/**
+	 * Offsets of every block with the given entry's ID, in increasing order
+	 */
+	public char[] getPositions(int i)
+	{
+		return this.positions[i];
+	}
+
+	/**
+	 * How many blocks of the given ID the chunk has, if it's highlightable
+	 */
+	public int getCount(short id)
+	{
+		for (int i = 0; i < this.types.length; i++)
+		{
+			if (this.types[i] == id)
+			{
+				return this.positions[i].length;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Roughly how many bytes of heap we're using
+	 */
+	public long getByteSize()
+	{
+		long bytes = 32 + this.types.length * 2L;
+		for (char[] p : this.positions)
+		{
+			bytes += 16 + p.length * 2L;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Turns a set of ore toggles (one per entry in highlightOres) into a
+	 * table of which block IDs are selected.
+	 */
+	public static boolean[] getSelectedTable(boolean[] selectedMap, short[] highlightOres)
+	{
+		boolean[] table = new boolean[blockArray.length];
+		for (int i = 0; i < selectedMap.length && i < highlightOres.length; i++)
+		{
+			if (selectedMap[i] && highlightOres[i] >= 0 && highlightOres[i] < table.length)
+			{
+				table[highlightOres[i]] = true;
+			}
+		}
+		return table;
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ahead of the camera.  Each frame we're told where the camera is, and
+ * from how far it's moved we keep a running estimate of its velocity.  From
+ * that we work out which chunks will come into our load range over the next
+ * few seconds if it keeps going the way it's going, and read their compressed
+ * data into the level's CompressedChunkCache on a thread of our own (see
+ * MinecraftLevel.prefetchChunks()).  By the time triggerChunkLoads() asks for
+ * them, the ChunkLoader only has to inflate and parse them.
+ * 
+ * The compressed chunk cache is what bounds how much we hold on to; on top of
+ * that we only ever have one batch of reads going at once, and never ask for
+ * more than MAX_BATCH chunks in a batch.  Positions and velocities here are in
+ * world coordinates (so the negative of the camera's own position).
+ * 
+ * update() is called from the render thread, and that's where we decide which
+ * chunks exist and which are already loaded; our own thread only gets handed
+ * the finished list.
+ */
+public class ChunkPrefetcher
+{
+	// How far ahead (in seconds) we look, and in what steps
+	private static final float LOOKAHEAD = 3.0f;
+	private static final float LOOKAHEAD_STEP = 0.5f;
+
+	// Below this speed (blocks per second) we don't bother
+	private static final float MIN_SPEED = 2.0f;
+
+	// Anything further than this in a single frame is a jump, not movement
+	private static final float MAX_FRAME_DISTANCE = 64.0f;
+
+	// How quickly our velocity estimate follows the camera (per second); higher
+	// is twitchier
+	private static final float SMOOTHING = 4.0f;
+
+	private static final int MAX_BATCH = 256;
+
+	// We remember this many of the chunks we've asked for, so we don't keep
+	// asking for them again while we're heading the same way
+	private static final int MAX_REQUESTED = 4096;
+
+	// How long stop() will wait for a batch which is already being read
+	private static final int STOP_TIMEOUT_SECONDS = 30;
+
+	private MinecraftLevel level;
+	private ExecutorService thread;
+	private volatile boolean busy;
+	private volatile boolean stopped;
+	private volatile long prefetchedCount;
+
+	private boolean havePosition;
+	private float lastX;
+	private float lastZ;
+	private float velocityX;
+	private float velocityZ;
+
+	// The chunk we were in, and the chunk we predicted we'd get to, when we last
+	// asked for anything; we don't ask again until one of those changes.
+	private int lastChunkX;
+	private int lastChunkZ;
+	private int lastTargetX;
+	private int lastTargetZ;
+	private HashSet<Long> requested;
+
+	public ChunkPrefetcher(MinecraftLevel level)
+	{
+		this.level = level;
+		this.busy = false;
+		this.stopped = false;
+		this.prefetchedCount = 0;
+		this.requested = new HashSet<Long>();
+		this.thread = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "X-Ray chunk prefetcher");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+		this.reset();
+	}
+
+	/**
+	 * Forgets how we've been moving, after a jump.
+	 */
+	public void reset()
+	{
+		this.havePosition = false;
+		this.velocityX = 0;
+		this.velocityZ = 0;
+		this.lastChunkX = Integer.MIN_VALUE;
+		this.lastTargetX = Integer.MIN_VALUE;
+		this.requested.clear();
+	}
+
+	/**
+	 * Updates our idea of where the camera's heading, and queues up reads for
+	 * any chunks we think it's going to need.
+	 * 
+	 * @param x The camera's X position, in world coordinates
+	 * @param z The camera's Z position, in world coordinates
+	 * @param timeDelta Seconds since the last update
+	 * @param range Our load range, in chunks
+	 */
+	public void update(float x, float z, float timeDelta, int range)
+	{
+		if (!this.havePosition || timeDelta <= 0)
+		{
+			this.lastX = x;
+			this.lastZ = z;
+			this.havePosition = true;
+			return;
+		}
+		float dx = x - this.lastX;
+		float dz = z - this.lastZ;
+		this.lastX = x;
+		this.lastZ = z;
+		if (Math.abs(dx) > MAX_FRAME_DISTANCE || Math.abs(dz) > MAX_FRAME_DISTANCE)
+		{
+			this.reset();
+			return;
+		}
+		float weight = Math.min(1.0f, SMOOTHING * timeDelta);
+		this.velocityX += (dx / timeDelta - this.velocityX) * weight;
+		this.velocityZ += (dz / timeDelta - this.velocityZ) * weight;
+
+		if (this.busy || this.velocityX * this.velocityX + this.velocityZ * this.velocityZ < MIN_SPEED * MIN_SPEED)
+		{
+			return;
+		}
+
+		int chunkX = MinecraftLevel.getChunkX((int) x);
+		int chunkZ = MinecraftLevel.getChunkZ((int) z);
+		int targetX = MinecraftLevel.getChunkX((int) (x + this.velocityX * LOOKAHEAD));
+		int targetZ = MinecraftLevel.getChunkZ((int) (z + this.velocityZ * LOOKAHEAD));
+		if (chunkX == this.lastChunkX && chunkZ == this.lastChunkZ && targetX == this.lastTargetX && targetZ == this.lastTargetZ)
+		{
+			return;
+		}
+		this.lastChunkX = chunkX;
+		this.lastChunkZ = chunkZ;
+		this.lastTargetX = targetX;
+		this.lastTargetZ = targetZ;
+
+		// Walk along our predicted path, collecting whatever would be in range
+		// at each step which isn't already
+		final ArrayList<Block> wanted = new ArrayList<Block>();
+		if (this.requested.size() > MAX_REQUESTED)
+		{
+			this.requested.clear();
+		}
+		int px, pz;
+		for (float t = LOOKAHEAD_STEP; t <= LOOKAHEAD && wanted.size() < MAX_BATCH; t += LOOKAHEAD_STEP)
+		{
+			px = MinecraftLevel.getChunkX((int) (x + this.velocityX * t));
+			pz = MinecraftLevel.getChunkZ((int) (z + this.velocityZ * t));
+			for (int lx = px - range; lx <= px + range && wanted.size() < MAX_BATCH; lx++)
+			{
+				for (int lz = pz - range; lz <= pz + range && wanted.size() < MAX_BATCH; lz++)
+				{
+					if (Math.abs(lx - chunkX) <= range && Math.abs(lz - chunkZ) <= range)
+					{
+						continue;
+					}
+					if (!this.level.chunkExists(lx, lz) || !this.requested.add(MinecraftLevel.chunkKey(lx, lz)))
+					{
+						continue;
+					}
+					if (this.level.getChunk(lx, lz) != null)
+					{
+						continue;
+					}
+					wanted.add(new Block(lx, 0, lz));
+				}
+			}
+		}
+		if (wanted.isEmpty())
+		{
+			return;
+		}
+
+		this.busy = true;
+		this.thread.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					if (stopped)
+					{
+						return;
+					}
+					level.prefetchChunks(wanted);
+					prefetchedCount += wanted.size();
+				}
+				finally
+				{
+					busy = false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * How many chunks we've asked to have read ahead (including any which turned
+	 * out to be in the cache already, or were evicted before we got to them)
+	 */
+	public long getPrefetchedCount()
+	{
+		return this.prefetchedCount;
+	}
+
+	/**
+	 * Stops our thread.  As with ChunkLoader.stop(), a batch which is already
+	 * being read is left to finish rather than interrupted, and we wait for it.
+	 */
+	public void stop()
+	{
+		this.stopped = true;
+		this.thread.shutdown();
+		try
+		{
+			this.thread.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,432 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact record of which chunks exist in a world, built once when the world
+ * is opened.  For region-based worlds this only needs the 4KB offset table at
+ * the start of each .mcr file; for old Alpha-format worlds we walk the chunk
+ * directories instead.  With this around, we never have to queue up, or poke
+ * the filesystem about, chunks which aren't there.
+ * 
+ * Chunks are stored as one 1024-bit set per 32x32 region, so even a huge world
+ * only costs a couple hundred bytes per region.
+ * 
+ * Minecraft may well be creating chunks while we're running, so we don't take
+ * "not there" as final.  A region file which has changed since we read its
+ * header gets read again, and a missing Alpha chunk gets looked for again,
+ * though we only go back to the disk for any one of them every RECHECK_MILLIS.
+ * 
+ * isPresent() is safe to call from any thread.  Nothing changes a region's bits
+ * in place; a changed copy is put in their place, so readers always see a
+ * complete set.  Anything which changes them is synchronized.
+ */
+public class ChunkPresenceMap
+{
+	private static final int SECTOR_INTS = 1024;
+
+	// How long a "not there" answer is good for before we look at the disk again
+	private static final long RECHECK_MILLIS = 5000;
+
+	// We forget our Alpha probes once there are this many of them
+	private static final int MAX_ALPHA_PROBES = 65536;
+
+	private WorldInfo world;
+
+	// 16 longs (1024 bits) per region, keyed by MinecraftLevel.chunkKey(regionX, regionZ)
+	private ConcurrentHashMap<Long, long[]> regions;
+
+	private volatile int chunkCount;
+
+	/**
+	 * What a region file looked like when we last read its header, and when we
+	 * last checked whether it had changed since.
+	 */
+	private static class RegionStamp
+	{
+		final long modified;
+		final long length;
+		long checked;
+
+		RegionStamp(long modified, long length, long checked)
+		{
+			this.modified = modified;
+			this.length = length;
+			this.checked = checked;
+		}
+	}
+
+	// Keyed like regions, for every region we've looked for (including missing ones)
+	private HashMap<Long, RegionStamp> regionStamps;
+
+	// When we last looked for each missing Alpha chunk, keyed by MinecraftLevel.chunkKey()
+	private HashMap<Long, Long> alphaProbes;
+
+	private class RegionFileFilter implements FilenameFilter
+	{
+		public boolean accept(File directory, String filename)
+		{
+			return (filename.startsWith("r.") && filename.endsWith(".mcr"));
+		}
+	}
+
+	/**
+	 * Builds the presence map for the given world.  This should be called after
+	 * the world's has_region_data and is_beta_1_3_level flags are set.
+	 */
+	public ChunkPresenceMap(WorldInfo world)
+	{
+		this.world = world;
+		this.regions = new ConcurrentHashMap<Long, long[]>();
+		this.regionStamps = new HashMap<Long, RegionStamp>();
+		this.alphaProbes = new HashMap<Long, Long>();
+		this.chunkCount = 0;
+
+		File base = new File(world.getBasePath());
+		if (world.has_region_data)
+		{
+			this.scanRegions(new File(base, "region"));
+		}
+		if (!world.is_beta_1_3_level)
+		{
+			this.scanAlphaChunks(base);
+		}
+	}
+
+	/**
+	 * Returns whether the given chunk exists on disk.  If we don't think it does,
+	 * we may look again (see RECHECK_MILLIS), in case it's been created since.
+	 */
+	public boolean isPresent(int chunkX, int chunkZ)
+	{
+		if (this.isKnownPresent(chunkX, chunkZ))
+		{
+			return true;
+		}
+		if (this.world.has_region_data && this.recheckRegion(chunkX >> 5, chunkZ >> 5))
+		{
+			if (this.isKnownPresent(chunkX, chunkZ))
+			{
+				return true;
+			}
+		}
+		if (!this.world.is_beta_1_3_level)
+		{
+			return this.probeAlphaChunk(chunkX, chunkZ);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the given chunk existed when we last looked.
+	 */
+	private boolean isKnownPresent(int chunkX, int chunkZ)
+	{
+		long[] bits = this.regions.get(MinecraftLevel.chunkKey(chunkX >> 5, chunkZ >> 5));
+		if (bits == null)
+		{
+			return false;
+		}
+		int index = (chunkX & 31) + (chunkZ & 31) * 32;
+		return (bits[index >> 6] & (1L << (index & 63))) != 0;
+	}
+
+	/**
+	 * Re-reads the header of the given region if its file has changed since we
+	 * last did (or has turned up since we last looked for it).  Returns whether
+	 * we read it.
+	 */
+	private synchronized boolean recheckRegion(int regionX, int regionZ)
+	{
+		Long key = MinecraftLevel.chunkKey(regionX, regionZ);
+		long now = System.currentTimeMillis();
+		RegionStamp stamp = this.regionStamps.get(key);
+		if (stamp != null && now - stamp.checked < RECHECK_MILLIS)
+		{
+			return false;
+		}
+		File regionFile = new File(new File(this.world.getBasePath(), "region"), "r." + regionX + "." + regionZ + ".mcr");
+		long modified = regionFile.lastModified();
+		long length = regionFile.length();
+		if (stamp != null && stamp.modified == modified && stamp.length == length)
+		{
+			stamp.checked = now;
+			return false;
+		}
+		if (modified == 0)
+		{
+			// Still not there
+			this.regionStamps.put(key, new RegionStamp(0, 0, now));
+			return false;
+		}
+		this.readRegionHeader(regionFile, regionX, regionZ, new byte[SECTOR_INTS * 4]);
+		return true;
+	}
+
+	/**
+	 * Looks on disk for an Alpha-format chunk we don't know about.
+	 */
+	private synchronized boolean probeAlphaChunk(int chunkX, int chunkZ)
+	{
+		Long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+		long now = System.currentTimeMillis();
+		Long last = this.alphaProbes.get(key);
+		if (last != null && now - last.longValue() < RECHECK_MILLIS)
+		{
+			return false;
+		}
+		if (MinecraftEnvironment.getAlphaChunkFile(this.world, chunkX, chunkZ).exists())
+		{
+			this.alphaProbes.remove(key);
+			this.setPresent(chunkX, chunkZ, true);
+			return true;
+		}
+		if (this.alphaProbes.size() >= MAX_ALPHA_PROBES)
+		{
+			this.alphaProbes.clear();
+		}
+		this.alphaProbes.put(key, now);
+		return false;
+	}
+
+	/**
+	 * Marks a chunk as existing or not.
+	 */
+	public synchronized void setPresent(int chunkX, int chunkZ, boolean present)
+	{
+		Long key = MinecraftLevel.chunkKey(chunkX >> 5, chunkZ >> 5);
+		long[] bits = this.regions.get(key);
+		if (bits == null)
+		{
+			if (!present)
+			{
+				return;
+			}
+			bits = new long[SECTOR_INTS / 64];
+		}
+		int index = (chunkX & 31) + (chunkZ & 31) * 32;
+		long mask = 1L << (index & 63);
+		boolean was = (bits[index >> 6] & mask) != 0;
+		if (present == was)
+		{
+			return;
+		}
+		long[] changed = bits.clone();
+		if (present)
+		{
+			changed[index >> 6] |= mask;
+			this.chunkCount++;
+		}
+		else
+		{
+			changed[index >> 6] &= ~mask;
+			this.chunkCount--;
+		}
+		this.regions.put(key, changed);
+	}
+
+	/**
+	 * Returns the number of chunks we know about
+	 */
+	public int getChunkCount()
+	{
+		return this.chunkCount;
+	}
+
+	/**
+	 * Reads the offset table of every region file in the given directory.
+	 */
+	private void scanRegions(File regionDir)
+	{
+		if (!regionDir.isDirectory())
+		{
+			return;
+		}
+		File[] files = regionDir.listFiles(new RegionFileFilter());
+		if (files == null)
+		{
+			return;
+		}
+		byte[] header = new byte[SECTOR_INTS * 4];
+		for (File regionFile : files)
+		{
+			String[] parts = regionFile.getName().split("\\.");
+			int regionX, regionZ;
+			try
+			{
+				regionX = Integer.parseInt(parts[1]);
+				regionZ = Integer.parseInt(parts[2]);
+			}
+			catch (NumberFormatException e)
+			{
+				continue;
+			}
+			catch (ArrayIndexOutOfBoundsException e)
+			{
+				continue;
+			}
+			this.readRegionHeader(regionFile, regionX, regionZ, header);
+		}
+	}
+
+	/**
+	 * Reads the offset table of the given region file, replacing whatever we
+	 * knew about its chunks before.  header is scratch space for it.
+	 */
+	private synchronized void readRegionHeader(File regionFile, int regionX, int regionZ, byte[] header)
+	{
+		Long key = MinecraftLevel.chunkKey(regionX, regionZ);
+		long modified = regionFile.lastModified();
+		long length = regionFile.length();
+		this.regionStamps.put(key, new RegionStamp(modified, length, System.currentTimeMillis()));
+		try
+		{
+			RandomAccessFile raf = new RandomAccessFile(regionFile, "r");
+			try
+			{
+				if (raf.length() < header.length)
+				{
+					return;
+				}
+				raf.readFully(header);
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("Error reading region header from " + regionFile.getPath() + ": " + e.toString());
+			return;
+		}
+
+		// Built up in full before it goes in the map, rather than through
+		// setPresent(), which would copy it for every chunk
+		long[] bits = new long[SECTOR_INTS / 64];
+		int count = 0;
+		for (int i = 0; i < SECTOR_INTS; i++)
+		{
+			if (header[i*4] != 0 || header[i*4+1] != 0 || header[i*4+2] != 0 || header[i*4+3] != 0)
+			{
+				bits[i >> 6] |= 1L << (i & 63);
+				count++;
+			}
+		}
+		long[] old = this.regions.get(key);
+		if (old != null)
+		{
+			for (int i = 0; i < old.length; i++)
+			{
+				count -= Long.bitCount(old[i]);
+			}
+		}
+		this.regions.put(key, bits);
+		this.chunkCount += count;
+	}
+
+	/**
+	 * Walks the old Alpha-style chunk directories (two levels of base-36 named
+	 * directories, containing c.<x>.<z>.dat files) and records each chunk found.
+	 */
+	private void scanAlphaChunks(File base)
+	{
+		File[] firstLevel = base.listFiles();
+		if (firstLevel == null)
+		{
+			return;
+		}
+		for (File first : firstLevel)
+		{
+			if (!isAlphaDir(first))
+			{
+				continue;
+			}
+			File[] secondLevel = first.listFiles();
+			if (secondLevel == null)
+			{
+				continue;
+			}
+			for (File second : secondLevel)
+			{
+				if (!isAlphaDir(second))
+				{
+					continue;
+				}
+				String[] names = second.list();
+				if (names == null)
+				{
+					continue;
+				}
+				for (String name : names)
+				{
+					String[] parts = name.split("\\.");
+					if (parts.length != 4 || !parts[0].equals("c") || !parts[3].equals("dat"))
+					{
+						continue;
+					}
+					try
+					{
+						this.setPresent(Integer.parseInt(parts[1], 36), Integer.parseInt(parts[2], 36), true);
+					}
+					catch (NumberFormatException e)
+					{
+						// Not one of ours
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Alpha chunk directories are named with the chunk coordinate mod 64, in base 36.
+	 */
+	private static boolean isAlphaDir(File dir)
+	{
+		String name = dir.getName();
+		if (name.length() > 2 || !dir.isDirectory())
+		{
+			return false;
+		}
+		try
+		{
+			int val = Integer.parseInt(name, 36);
+			return (val >= 0 && val < 64);
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+}
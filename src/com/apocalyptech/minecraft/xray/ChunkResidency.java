@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import com.apocalyptech.minecraft.xray.dtf.ByteArrayTag;
+import com.apocalyptech.minecraft.xray.dtf.CompoundTag;
+import com.apocalyptech.minecraft.xray.dtf.ListTag;
+import com.apocalyptech.minecraft.xray.dtf.ShortArrayTag;
+import com.apocalyptech.minecraft.xray.dtf.StringTag;
+import com.apocalyptech.minecraft.xray.dtf.Tag;
+
+/**
+ * Keeps the chunks a MinecraftLevel has loaded within a memory budget.  Every
+ * so often (see check()) we add up roughly how much each loaded chunk is
+ * costing us, in three categories: its block arrays, the rest of its NBT
+ * data, and its compiled display lists (which live in the driver, but are
+ * often in system memory all the same).  If the total is over budget, we
+ * unload chunks furthest from the camera first until it isn't, though never
+ * ones within the range we're keeping loaded around the camera.
+ * 
+ * These are estimates, not measurements; they're meant to track how much we're
+ * holding on to as the camera travels, not to account for every byte.
+ */
+public class ChunkResidency
+{
+	// What a display list vertex costs: position, normal and texture coordinates
+	public static final int BYTES_PER_VERTEX = 32;
+
+	// What we figure each tag costs beyond its actual data: the object, its
+	// name, and its slot in its parent's list
+	private static final int TAG_OVERHEAD = 48;
+
+	// Don't add everything up more often than this (in ms)
+	private static final long CHECK_INTERVAL = 250;
+
+	private long budget;
+	private long lastCheck;
+
+	private int chunkCount;
+	private long blockBytes;
+	private long tagBytes;
+	private long displayListBytes;
+	private long evictedCount;
+
+	/**
+	 * @param budget How many bytes our loaded chunks may use between them
+	 */
+	public ChunkResidency(long budget)
+	{
+		this.budget = budget;
+		this.lastCheck = 0;
+		this.evictedCount = 0;
+	}
+
+	/**
+	 * Adds up what the given level's chunks are using, and unloads any we need
+	 * to in order to get back under budget.  Does nothing if we've done this
+	 * recently, unless force is set.
+	 * 
+	 * @param chunkX The chunk the camera is in
+	 * @param chunkZ The chunk the camera is in
+	 * @param keepRange Chunks this close to the camera (on both axes) are never unloaded
+	 * @return The chunks we unloaded, if any
+	 */
+	public ArrayList<Chunk> check(MinecraftLevel level, final int chunkX, final int chunkZ, int keepRange, boolean force)
+	{
+		ArrayList<Chunk> evicted = new ArrayList<Chunk>();
+		long now = System.currentTimeMillis();
+		if (!force && now - this.lastCheck < CHECK_INTERVAL)
+		{
+			return evicted;
+		}
+		this.lastCheck = now;
+
+		this.chunkCount = 0;
+		this.blockBytes = 0;
+		this.tagBytes = 0;
+		this.displayListBytes = 0;
+		ArrayList<Chunk> candidates = new ArrayList<Chunk>();
+		for (Chunk c : level.getLoadedChunks())
+		{
+			this.chunkCount++;
+			this.blockBytes += c.getBlockBytes();
+			this.tagBytes += c.getTagBytes();
+			this.displayListBytes += c.getDisplayListBytes();
+			if (Math.abs(c.x - chunkX) > keepRange || Math.abs(c.z - chunkZ) > keepRange)
+			{
+				candidates.add(c);
+			}
+		}
+		if (this.getTotalBytes() <= this.budget)
+		{
+			return evicted;
+		}
+
+		// Furthest first
+		Collections.sort(candidates, new Comparator<Chunk>()
+		{
+			public int compare(Chunk a, Chunk b)
+			{
+				long da = (long) (a.x - chunkX) * (a.x - chunkX) + (long) (a.z - chunkZ) * (a.z - chunkZ);
+				long db = (long) (b.x - chunkX) * (b.x - chunkX) + (long) (b.z - chunkZ) * (b.z - chunkZ);
+				return da < db ? 1 : (da > db ? -1 : 0);
+			}
+		});
+		for (Chunk c : candidates)
+		{
+			if (this.getTotalBytes() <= this.budget)
+			{
+				break;
+			}
+			this.chunkCount--;
+			this.blockBytes -= c.getBlockBytes();
+			this.tagBytes -= c.getTagBytes();
+			this.displayListBytes -= c.getDisplayListBytes();
+			level.clearChunk(c.x, c.z);
+			this.evictedCount++;
+			evicted.add(c);
+		}
+		return evicted;
+	}
+
+	/**
+	 * Roughly how much memory the given tag (and everything inside it) takes up
+	 */
+	public static long estimateTagBytes(Tag t)
+	{
+		long bytes = TAG_OVERHEAD;
+		if (t instanceof CompoundTag)
+		{
+			for (Tag child : ((CompoundTag) t).value)
+			{
+				bytes += estimateTagBytes(child);
+			}
+		}
+		else if (t instanceof ListTag)
+		{
+			ListTag list = (ListTag) t;
+			if (list.value != null)
+			{
+				for (Tag child : list.value)
+				{
+					bytes += estimateTagBytes(child);
+				}
+			}
+			else
+			{
+				// Lists of numbers are stored as arrays
+				switch (list.getElementType())
+				{
+					case 1:
+						bytes += list.size();
+						break;
+					case 4:
+					case 6:
+						bytes += list.size() * 8L;
+						break;
+					default:
+						bytes += list.size() * 4L;
+						break;
+				}
+			}
+		}
+		else if (t instanceof ByteArrayTag)
+		{
+			bytes += ((ByteArrayTag) t).value.length;
+		}
+		else if (t instanceof ShortArrayTag)
+		{
+			bytes += ((ShortArrayTag) t).value.length * 2L;
+		}
+		else if (t instanceof StringTag && ((StringTag) t).value != null)
+		{
+			bytes += ((StringTag) t).value.length() * 2L;
+		}
+		return bytes;
+	}
+
+	public long getBudget()
+	{
+		return this.budget;
+	}
+
+	/**
+	 * The number of chunks loaded, as of the last check()
+	 */
+	public int getChunkCount()
+	{
+		return this.chunkCount;
+	}
+
+	/**
+	 * Bytes used by block IDs and data values, as of the last check()
+	 */
+	public long getBlockBytes()
+	{
+		return this.blockBytes;
+	}
+
+	/**
+	 * Bytes used by the rest of our chunks' NBT data, as of the last check()
+	 */
+	public long getTagBytes()
+	{
+		return this.tagBytes;
+	}
+
+	/**
+	 * Bytes used by compiled display lists, as of the last check()
+	 */
+	public long getDisplayListBytes()
+	{
+		return this.displayListBytes;
+	}
+
+	public long getTotalBytes()
+	{
+		return this.blockBytes + this.tagBytes + this.displayListBytes;
+	}
+
+	/**
+	 * How many chunks we've unloaded to stay within budget
+	 */
+	public long getEvictedCount()
+	{
+		return this.evictedCount;
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import static com.apocalyptech.minecraft.xray.MinecraftConstants.*;
+
+/**
+ * A summary of what's in a chunk, worked out once when it's loaded so that
+ * rendering and the minimap can skip the parts with nothing to draw.  The
+ * chunk is split into eight 16x16x16 sections up the Y axis, each with
+ * flags for what it holds, and each 128-block column keeps the lowest and
+ * highest Y which isn't air.
+ * 
+ * "Solid" here means what renderWorld() means by it: a known block whose
+ * type is drawn as an ordinary cube.  An OPAQUE section is solid all the way
+ * through, so any block inside it which isn't on the outside of the chunk
+ * can't have a face showing.
+ */
+public class ChunkSections
+{
+	public static final int SECTION_HEIGHT = 16;
+	public static final int SECTIONS = BlockStorage.COLUMN_HEIGHT / SECTION_HEIGHT;
+	public static final int COLUMNS = 16 * 16;
+
+	// Nothing but air
+	public static final int EMPTY = 0x01;
+	// Every block is solid
+	public static final int OPAQUE = 0x04;
+	// At least one solid block, for the solid pass
+	public static final int HAS_SOLID = 0x08;
+	// At least one non-air block which isn't solid, for the transparent pass
+	public static final int HAS_NONSOLID = 0x10;
+	// At least one bedrock block, which renderWorld() may draw specially
+	public static final int HAS_BEDROCK = 0x40;
+
+	private final byte[] flags;
+	private final byte[] columnMin;
+	private final byte[] columnMax;
+
+	/**
+	 * @param blocks The chunk's block IDs, in the usual "Blocks" order
+	 */
+	public ChunkSections(short[] blocks)
+	{
+		this.flags = new byte[SECTIONS];
+		this.columnMin = new byte[COLUMNS];
+		this.columnMax = new byte[COLUMNS];
+
+		int[] sectionFlags = new int[SECTIONS];
+		for (int s = 0; s < SECTIONS; s++)
+		{
+			sectionFlags[s] = EMPTY | OPAQUE;
+		}
+
+		short t;
+		int s;
+		int offset = 0;
+		int min, max;
+		BlockType block;
+		for (int column = 0; column < COLUMNS; column++)
+		{
+			min = -1;
+			max = -1;
+			for (int y = 0; y < BlockStorage.COLUMN_HEIGHT; y++, offset++)
+			{
+				t = blocks[offset];
+				s = y / SECTION_HEIGHT;
+				if (t < 1)
+				{
+					sectionFlags[s] &= ~OPAQUE;
+					continue;
+				}
+				if (min < 0)
+				{
+					min = y;
+				}
+				max = y;
+				sectionFlags[s] &= ~EMPTY;
+
+				block = (t < blockArray.length ? blockArray[t] : null);
+				if (block == null)
+				{
+					// renderWorld() draws these as BLOCK_UNKNOWN, but doesn't hide
+					// anything behind them
+					block = BLOCK_UNKNOWN;
+					sectionFlags[s] &= ~OPAQUE;
+				}
+				if (block.isSolid())
+				{
+					sectionFlags[s] |= HAS_SOLID;
+				}
+				else
+				{
+					sectionFlags[s] |= HAS_NONSOLID;
+					sectionFlags[s] &= ~OPAQUE;
+				}
+				if (BLOCK_BEDROCK != null && t == BLOCK_BEDROCK.id)
+				{
+					sectionFlags[s] |= HAS_BEDROCK;
+				}
+			}
+			if (min < 0)
+			{
+				// An empty column; getColumnMax() of -1 means there's nothing to visit
+				this.columnMin[column] = 0;
+				this.columnMax[column] = -1;
+			}
+			else
+			{
+				this.columnMin[column] = (byte) min;
+				this.columnMax[column] = (byte) max;
+			}
+		}
+
+		for (s = 0; s < SECTIONS; s++)
+		{
+			this.flags[s] = (byte) sectionFlags[s];
+		}
+	}
+
+	/**
+	 * Returns true if the given section (0 is the bottom one) has any of the
+	 * given flags
+	 */
+	public boolean has(int section, int flags)
+	{
+		return (this.flags[section] & flags) != 0;
+	}
+
+	/**
+	 * Returns true if any section has any of the given flags
+	 */
+	public boolean any(int flags)
+	{
+		for (int s = 0; s < SECTIONS; s++)
+		{
+			if ((this.flags[s] & flags) != 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The lowest Y in the given column (x * 16 + z) which isn't air
+	 */
+	public int getColumnMin(int column)
+	{
+		return this.columnMin[column];
+	}
+
+	/**
+	 * The highest Y in the given column (x * 16 + z) which isn't air, or -1 if
+	 * the whole column is air
+	 */
+	public int getColumnMax(int column)
+	{
+		return this.columnMax[column];
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A second tier of chunk caching, behind MinecraftLevel's ChunkMap.  We keep
+ * the raw compressed data of every chunk we read from a region file (as
+ * returned by RegionFile.getChunkBuffer()), up to a fixed number of bytes, and
+ * throw out whichever was used longest ago once we're full.  When the camera
+ * comes back to an area it's already visited, its chunks only need to be
+ * decompressed and parsed, rather than read from disk again.  Compressed chunks
+ * are usually only a few KB, so even a modest budget covers a lot of ground.
+ * 
+ * Data is stored in plain heap arrays, copied before we take our lock, so
+ * threads putting chunks in never wait on each other's allocations, and an
+ * evicted chunk's memory goes back as soon as it's unreachable.  (Direct
+ * buffers would keep their native memory until a GC got round to freeing it,
+ * and once the JVM's direct memory limit is reached, each new one stalls for
+ * a GC before failing.)  Each entry remembers the region offset and
+ * timestamp it was read with, and is only handed back if those still match,
+ * so chunks which have changed on disk are never served stale.
+ */
+public class CompressedChunkCache
+{
+	private class Entry
+	{
+		public final ByteBuffer data;
+		public final int offset;
+		public final int timestamp;
+
+		public Entry(ByteBuffer data, int offset, int timestamp)
+		{
+			this.data = data;
+			this.offset = offset;
+			this.timestamp = timestamp;
+		}
+	}
+
+	// Keyed by MinecraftLevel.chunkKey(), in access order
+	private LinkedHashMap<Long, Entry> entries;
+
+	private final long budget;
+	private long usedBytes;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param budget The most bytes of compressed data we'll hold on to
+	 */
+	public CompressedChunkCache(long budget)
+	{
+		this.entries = new LinkedHashMap<Long, Entry>(256, 0.75f, true);
+		this.budget = budget;
+		this.usedBytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	/**
+	 * Returns the cached data for the given chunk, if we have it and it was read
+	 * with the given offset and timestamp (see RegionFile.getChunkOffset() and
+	 * RegionFile.getChunkTimestamp()).  The returned buffer is the caller's to
+	 * read from, and can be passed straight to ChunkInflater.inflateToBuffer().
+	 */
+	public synchronized ByteBuffer get(int chunkX, int chunkZ, int offset, int timestamp)
+	{
+		Long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+		Entry entry = this.entries.get(key);
+		if (entry == null)
+		{
+			this.misses++;
+			return null;
+		}
+		if (entry.offset != offset || entry.timestamp != timestamp)
+		{
+			// It's changed on disk since we read it
+			this.entries.remove(key);
+			this.usedBytes -= entry.data.capacity();
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		return entry.data.duplicate();
+	}
+
+	/**
+	 * Returns whether we have up-to-date data for the given chunk.  Unlike get(),
+	 * this doesn't count as a use of the chunk.
+	 */
+	public synchronized boolean contains(int chunkX, int chunkZ, int offset, int timestamp)
+	{
+		Entry entry = this.entries.get(MinecraftLevel.chunkKey(chunkX, chunkZ));
+		return (entry != null && entry.offset == offset && entry.timestamp == timestamp);
+	}
+
+	/**
+	 * Stores a copy of the remaining bytes of the given chunk data, evicting old
+	 * entries as necessary to stay within our budget.  The buffer's position
+	 * isn't changed.
+	 */
+	public void put(int chunkX, int chunkZ, int offset, int timestamp, ByteBuffer chunk)
+	{
+		int length = chunk.remaining();
+		if (length > this.budget)
+		{
+			return;
+		}
+		byte[] copy = new byte[length];
+		chunk.duplicate().get(copy);
+		Long key = MinecraftLevel.chunkKey(chunkX, chunkZ);
+
+		synchronized (this)
+		{
+			Entry old = this.entries.remove(key);
+			if (old != null)
+			{
+				this.usedBytes -= old.data.capacity();
+			}
+
+			Iterator<Map.Entry<Long, Entry>> i = this.entries.entrySet().iterator();
+			while (this.usedBytes + length > this.budget && i.hasNext())
+			{
+				this.usedBytes -= i.next().getValue().data.capacity();
+				i.remove();
+				this.evictions++;
+			}
+
+			this.entries.put(key, new Entry(ByteBuffer.wrap(copy), offset, timestamp));
+			this.usedBytes += length;
+		}
+	}
+
+	/**
+	 * Throws away everything we're holding.
+	 */
+	public synchronized void clear()
+	{
+		this.entries.clear();
+		this.usedBytes = 0;
+	}
+
+	public synchronized int getChunkCount()
+	{
+		return this.entries.size();
+	}
+
+	public synchronized long getUsedBytes()
+	{
+		return this.usedBytes;
+	}
+
+	public long getBudget()
+	{
+		return this.budget;
+	}
+
+	public synchronized long getHitCount()
+	{
+		return this.hits;
+	}
+
+	public synchronized long getMissCount()
+	{
+		return this.misses;
+	}
+
+	public synchronized long getEvictionCount()
+	{
+		return this.evictions;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.HashSet;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Hands out display lists for Chunks to compile their geometry into, and takes
+ * them back when a chunk is unloaded (see Chunk.releaseDisplayLists()), so that
+ * the driver memory behind them is actually given back rather than leaked.
+ * Released lists are emptied and kept around for the next chunk that needs
+ * one, since flying about means unloading and loading chunks all the time;
+ * once we've got more spare than MAX_FREE, we delete them instead.
+ * 
+ * All the GL work goes through ChunkGL, so in headless mode nothing touches GL,
+ * and ChunkGL's counts of generated and deleted lists, together with ours, show
+ * whether anything's leaking.  Like ChunkGL, this may only be used from the GL
+ * thread.
+ */
+public class DisplayListPool
+{
+	// How many spare lists we hang on to
+	private static final int MAX_FREE = 256;
+
+	private static int[] free = new int[MAX_FREE];
+	private static int freeCount = 0;
+
+	// Lists which have been handed out and not yet released
+	private static HashSet<Integer> inUse = new HashSet<Integer>();
+
+	private static long generated = 0;
+	private static long reused = 0;
+	private static long deleted = 0;
+
+	/**
+	 * Returns a display list to compile into, reusing a spare one if we have it
+	 */
+	public static int acquire()
+	{
+		int list;
+		if (freeCount > 0)
+		{
+			list = free[--freeCount];
+			reused++;
+		}
+		else
+		{
+			list = ChunkGL.glGenLists(1);
+			generated++;
+		}
+		inUse.add(list);
+		return list;
+	}
+
+	/**
+	 * Takes back a display list from acquire(), once whatever was using it is
+	 * finished with it.
+	 * 
+	 * @throws IllegalArgumentException If the list isn't one we handed out (or
+	 *         it's already been released)
+	 */
+	public static void release(int list)
+	{
+		if (!inUse.remove(list))
+		{
+			throw new IllegalArgumentException("Display list " + list + " was released but isn't in use");
+		}
+		if (freeCount < MAX_FREE)
+		{
+			// Compile it empty, so that it's not holding on to the old geometry
+			// while it waits to be reused
+			ChunkGL.glNewList(list, GL11.GL_COMPILE);
+			ChunkGL.glEndList();
+			free[freeCount++] = list;
+		}
+		else
+		{
+			ChunkGL.glDeleteLists(list, 1);
+			deleted++;
+		}
+	}
+
+	/**
+	 * Deletes all our spare lists
+	 */
+	public static void trim()
+	{
+		while (freeCount > 0)
+		{
+			ChunkGL.glDeleteLists(free[--freeCount], 1);
+			deleted++;
+		}
+	}
+
+	/**
+	 * The number of lists handed out and not yet released
+	 */
+	public static int getInUseCount()
+	{
+		return inUse.size();
+	}
+
+	/**
+	 * The number of spare lists we're holding
+	 */
+	public static int getFreeCount()
+	{
+		return freeCount;
+	}
+
+	public static long getGeneratedCount()
+	{
+		return generated;
+	}
+
+	public static long getReusedCount()
+	{
+		return reused;
+	}
+
+	public static long getDeletedCount()
+	{
+		return deleted;
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Collects timings for a headless benchmark run (see XRay's -headless
+ * option), and reports them at the end: chunk throughput, latency
+ * percentiles for each stage we time, and how much garbage we made.
+ */
+public class LoadStats
+{
+	/**
+	 * A set of timings, in nanoseconds
+	 */
+	public static class Samples
+	{
+		private String name;
+		private long[] samples = new long[1024];
+		private int count = 0;
+		private long total = 0;
+
+		public Samples(String name)
+		{
+			this.name = name;
+		}
+
+		public void add(long nanos)
+		{
+			if (count == samples.length)
+			{
+				samples = Arrays.copyOf(samples, count * 2);
+			}
+			samples[count++] = nanos;
+			total += nanos;
+		}
+
+		public int getCount()
+		{
+			return count;
+		}
+
+		public long getTotal()
+		{
+			return total;
+		}
+
+		public String toString()
+		{
+			if (count == 0)
+			{
+				return String.format("%-16s (none)", name + ":");
+			}
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			return String.format("%-16s n=%d  mean=%.3f  p50=%.3f  p90=%.3f  p99=%.3f  max=%.3f ms",
+					name + ":", count,
+					total / (double) count / 1e6,
+					pick(sorted, 50) / 1e6,
+					pick(sorted, 90) / 1e6,
+					pick(sorted, 99) / 1e6,
+					sorted[count - 1] / 1e6);
+		}
+
+		private static long pick(long[] sorted, double percentile)
+		{
+			int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+		}
+	}
+
+	// Reading a chunk happens on ChunkLoader's threads; adopting it (and drawing
+	// it to the minimap) on ours.  Latency is from asking for it to having it.
+	public final Samples chunkLoad = new Samples("Chunk load");
+	public final Samples chunkAdopt = new Samples("Chunk adopt");
+	public final Samples chunkLatency = new Samples("Chunk latency");
+	public final Samples chunkMesh = new Samples("Chunk mesh");
+	public final Samples minimap = new Samples("Minimap upload");
+	public final Samples frame = new Samples("Frame");
+
+	private long startTime;
+	private long endTime;
+	private long startGcCount;
+	private long startGcTime;
+	private long startAllocated;
+	private long endGcCount;
+	private long endGcTime;
+	private long endAllocated;
+
+	public void start()
+	{
+		startGcCount = getGcCount();
+		startGcTime = getGcTime();
+		startAllocated = getAllocatedBytes();
+		startTime = System.nanoTime();
+	}
+
+	public void stop()
+	{
+		endTime = System.nanoTime();
+		endGcCount = getGcCount();
+		endGcTime = getGcTime();
+		endAllocated = getAllocatedBytes();
+	}
+
+	private static long getGcCount()
+	{
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			total += Math.max(0, gc.getCollectionCount());
+		}
+		return total;
+	}
+
+	private static long getGcTime()
+	{
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			total += Math.max(0, gc.getCollectionTime());
+		}
+		return total;
+	}
+
+	/**
+	 * Bytes allocated so far by all live threads, or -1 if the JVM can't
+	 * tell us (it's a HotSpot extension).
+	 */
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+		{
+			return -1;
+		}
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled())
+		{
+			return -1;
+		}
+		long total = 0;
+		for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds()))
+		{
+			if (bytes > 0)
+			{
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	public void report()
+	{
+		double seconds = (endTime - startTime) / 1e9;
+		System.out.println(String.format("Elapsed:         %.2f s, %d frames (%.1f fps)",
+					seconds, frame.getCount(), frame.getCount() / seconds));
+		System.out.println(String.format("Chunks loaded:   %d (%.1f chunks/s)",
+					chunkLoad.getCount(), chunkLoad.getCount() / seconds));
+		System.out.println(String.format("Chunks meshed:   %d (%d display lists, %d primitives, %d vertices)",
+					chunkMesh.getCount(), ChunkGL.getListsCompiled(), ChunkGL.getPrimitiveCount(), ChunkGL.getVertexCount()));
+		System.out.println();
+		System.out.println(chunkLoad);
+		System.out.println(chunkAdopt);
+		System.out.println(chunkLatency);
+		System.out.println(chunkMesh);
+		System.out.println(minimap);
+		System.out.println(frame);
+		System.out.println();
+		System.out.println(String.format("GC:              %d collections, %d ms",
+					endGcCount - startGcCount, endGcTime - startGcTime));
+		if (startAllocated >= 0 && endAllocated >= 0)
+		{
+			long allocated = endAllocated - startAllocated;
+			System.out.println(String.format("Allocated:       %.1f MB (%.1f KB per chunk loaded)",
+						allocated / (1024.0 * 1024.0),
+						chunkLoad.getCount() == 0 ? 0.0 : allocated / 1024.0 / chunkLoad.getCount()));
+		}
+		else
+		{
+			System.out.println("Allocated:       (not supported by this JVM)");
+		}
+	}
+}
@@ -222,6 +222,7 @@ public class MinecraftConstants {
 		RELEASE_MOUSE (Keyboard.KEY_ESCAPE),
 		JUMP (Keyboard.KEY_J),
 		RELOAD (Keyboard.KEY_EQUALS),
+		TOGGLE_LIVE_FOLLOW (Keyboard.KEY_V),
 		QUIT (Keyboard.KEY_Q)
 		;
 		public final int def_key;
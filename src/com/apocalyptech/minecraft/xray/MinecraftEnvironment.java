@@ -226,6 +226,21 @@ public class MinecraftEnvironment {
 		return worlds;
 	}
 	
+	/**
+	 * Returns where the given chunk would be stored in an old Alpha-format world
+	 * (whether or not it's actually there).
+	 */
+	public static File getAlphaChunkFile(WorldInfo world, int x, int z) {
+		int xx = x % 64;
+		if(xx<0) xx = 64+xx;
+		int zz = z % 64;
+		if(zz<0) zz = 64+zz;
+		String firstFolder 		= Integer.toString(xx, 36);
+		String secondFolder 	= Integer.toString(zz, 36);
+		String filename 		= "c." + Integer.toString(x, 36) + "." + Integer.toString(z, 36) + ".dat";
+		return new File(world.getBasePath(), firstFolder + "/" + secondFolder + "/" + filename);
+	}
+
 	/***
 	 * Returns a file handle to a chunk file in a world.  Will attempt to load
 	 * from region data first, if it's present, and then from the old-style
@@ -241,7 +256,7 @@ public class MinecraftEnvironment {
 	public static DataInputStream getChunkInputStream(WorldInfo world, int x, int z) {
 		if (world.has_region_data)
 		{
-			RegionFile rf = RegionFileCache.getRegionFile(new File(world.getBasePath()), x, z);
+			RegionFile rf = RegionFileCache.getRegionFile(world.getBasePath(), x, z);
 			if (rf != null)
 			{
 				DataInputStream chunk = rf.getChunkDataInputStream(x & 31, z & 31);
@@ -253,14 +268,7 @@ public class MinecraftEnvironment {
 		}
 		if (!world.is_beta_1_3_level)
 		{
-			int xx = x % 64;
-			if(xx<0) xx = 64+xx;
-			int zz = z % 64;
-			if(zz<0) zz = 64+zz;
-			String firstFolder 		= Integer.toString(xx, 36);
-			String secondFolder 	= Integer.toString(zz, 36);
-			String filename 		= "c." + Integer.toString(x, 36) + "." + Integer.toString(z, 36) + ".dat";
-			File chunk = new File(world.getBasePath(), firstFolder + "/" + secondFolder + "/" + filename);
+			File chunk = getAlphaChunkFile(world, x, z);
 			if (chunk.exists())
 			{
 				//  There's some code duplication here from DTFReader.readDTFFile()
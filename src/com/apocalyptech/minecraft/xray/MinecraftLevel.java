@@ -30,12 +30,15 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 
 import com.apocalyptech.minecraft.xray.dtf.CompoundTag;
+import com.apocalyptech.minecraft.xray.dtf.DTFBufferReader;
 import com.apocalyptech.minecraft.xray.dtf.DTFReader;
-import com.apocalyptech.minecraft.xray.dtf.DoubleTag;
-import com.apocalyptech.minecraft.xray.dtf.FloatTag;
 import com.apocalyptech.minecraft.xray.dtf.IntTag;
 import com.apocalyptech.minecraft.xray.dtf.ListTag;
 import com.apocalyptech.minecraft.xray.dtf.StringTag;
@@ -47,10 +50,8 @@ import com.apocalyptech.minecraft.xray.dtf.Tag;
  */
 public class MinecraftLevel {
 
-	//public static int LEVELDATA_SIZE = 256;
-	public static int LEVELDATA_SIZE = 128;
-	public static int LEVELDATA_OFFSET = Integer.MAX_VALUE/2;
-	public Chunk[][] levelData;
+	// The chunks we've got loaded
+	private ChunkMap levelData;
 	
 	private WorldInfo world;
 	
@@ -59,11 +60,25 @@ public class MinecraftLevel {
 	private int playerPos_idx;
 	private int spawnPoint_idx;
 	public short[] HIGHLIGHT_ORES;
+
+	// How far a torch reaches for the "explored" highlighting; see Chunk.hasAdjacentTorch()
+	private int torchRadius = 3;
+
+	// See getSelectedOres()
+	private boolean[] selectedOres;
+	private boolean[] selectedOresMap;
 	
 	public Texture minecraftTexture;
 	public Texture paintingTexture;
 
 	public String levelName;
+
+	// Compressed data of chunks we've read from disk (including those read ahead
+	// of time by prefetchChunks()), so revisiting an area doesn't hit the disk
+	private CompressedChunkCache compressedChunks;
+
+	// Which chunks actually exist on disk
+	private volatile ChunkPresenceMap presentChunks;
 	
     private class RegionFileFilter implements FilenameFilter
     {
@@ -100,14 +115,16 @@ public class MinecraftLevel {
 	/***
 	 * Create a minecraftLevel from the given world
 	 * @param world
+	 * @param compressedCacheBytes How much compressed chunk data to keep in memory
 	 */
-	public MinecraftLevel(WorldInfo world, Texture minecraftTexture, Texture paintingTexture, short[] HIGHLIGHT_ORES) {
+	public MinecraftLevel(WorldInfo world, Texture minecraftTexture, Texture paintingTexture, short[] HIGHLIGHT_ORES, long compressedCacheBytes) {
 		this.world = world;
 		this.minecraftTexture = minecraftTexture;
 		this.paintingTexture = paintingTexture;
 		this.HIGHLIGHT_ORES = HIGHLIGHT_ORES;
 		
-		this.levelData = new Chunk[LEVELDATA_SIZE][LEVELDATA_SIZE];
+		this.levelData = new ChunkMap();
+		this.compressedChunks = new CompressedChunkCache(compressedCacheBytes);
 		
 		File levelFile = world.getLevelDatFile();
 		
@@ -129,16 +146,10 @@ public class MinecraftLevel {
 			{
 				ListTag playerPos = (ListTag) levelPlayerData .getTagWithName("Pos");
 				ListTag playerRotation = (ListTag) levelPlayerData .getTagWithName("Rotation");
-		
-				DoubleTag posX = (DoubleTag) playerPos.value.get(0);
-				DoubleTag posY = (DoubleTag) playerPos.value.get(1);
-				DoubleTag posZ = (DoubleTag) playerPos.value.get(2);
-				
-				FloatTag rotYaw = (FloatTag) playerRotation.value.get(0);
-				FloatTag rotPitch = (FloatTag) playerRotation.value.get(1);
 
-				this.playerPositions.add(new CameraPreset(0, "Singleplayer User", new Block((int) -posX.value, (int) -posY.value, (int) -posZ.value+1),
-						rotYaw.value, rotPitch.value));
+				this.playerPositions.add(new CameraPreset(0, "Singleplayer User",
+						new Block((int) -playerPos.getDouble(0), (int) -playerPos.getDouble(1), (int) -playerPos.getDouble(2)+1),
+						playerRotation.getFloat(0), playerRotation.getFloat(1)));
 				this.playerPos_idx = 0;
 			}
 		}
@@ -172,14 +183,9 @@ public class MinecraftLevel {
 				// Pull out the data
 				ListTag playerPos = (ListTag) mpuserData.getTagWithName("Pos");
 				ListTag playerRotation = (ListTag) mpuserData.getTagWithName("Rotation");	
-				DoubleTag posX = (DoubleTag) playerPos.value.get(0);
-				DoubleTag posY = (DoubleTag) playerPos.value.get(1);
-				DoubleTag posZ = (DoubleTag) playerPos.value.get(2);
-				FloatTag rotYaw = (FloatTag) playerRotation.value.get(0);
-				FloatTag rotPitch = (FloatTag) playerRotation.value.get(1);
 				this.playerPositions.add(new CameraPreset(this.playerPositions.size(),
-						mpusername, new Block((int) -posX.value, (int) -posY.value-1, (int) -posZ.value+1),
-						rotYaw.value, rotPitch.value));
+						mpusername, new Block((int) -playerPos.getDouble(0), (int) -playerPos.getDouble(1)-1, (int) -playerPos.getDouble(2)+1),
+						playerRotation.getFloat(0), playerRotation.getFloat(1)));
 			}
 			catch (Exception e)
 			{
@@ -236,6 +242,27 @@ public class MinecraftLevel {
 			}
 			this.levelName = null;
 		}
+
+		// Now that we know what format we're in, find out which chunks exist
+		this.presentChunks = new ChunkPresenceMap(world);
+	}
+
+	/**
+	 * Throws away what we know about which chunks exist and scans the world
+	 * again, for a full reload from disk.
+	 */
+	public void rescanChunks()
+	{
+		this.presentChunks = new ChunkPresenceMap(world);
+	}
+
+	/**
+	 * Returns whether the given chunk exists on disk.  Chunks which don't exist
+	 * don't need to be queued up for loading.
+	 */
+	public boolean chunkExists(int chunkX, int chunkZ)
+	{
+		return this.presentChunks.isPresent(chunkX, chunkZ);
 	}
 	
 	/***
@@ -341,7 +368,7 @@ public class MinecraftLevel {
 		int blockOffset = y + (blockZ * 128) + (blockX * 128 * 16);
 		
 		try {
-			return chunk.getMapData().value[blockOffset];
+			return chunk.getBlocks().get(blockOffset);
 		} catch(Exception e) {
 			// dirty, but there was an error with out of range blockvalues O_o
 			System.out.println(blockOffset);
@@ -353,23 +380,30 @@ public class MinecraftLevel {
 	}
 	
 
+	/**
+	 * Turns the user's ore toggles (one per HIGHLIGHT_ORES entry) into a table
+	 * of which block IDs are selected, for Chunk.renderSelected().  The table
+	 * is only rebuilt when the toggles change.
+	 */
+	public boolean[] getSelectedOres(boolean[] selectedMap) {
+		if (this.selectedOres == null || !Arrays.equals(selectedMap, this.selectedOresMap)) {
+			this.selectedOres = ChunkOres.getSelectedTable(selectedMap, this.HIGHLIGHT_ORES);
+			this.selectedOresMap = selectedMap.clone();
+		}
+		return this.selectedOres;
+	}
+
 	public void invalidateSelected() {
 		this.invalidateSelected(false);
 	}
 
 	public void invalidateSelected(boolean main_dirty) {
-		for (Chunk[] chunkrow : this.levelData)
+		for (Chunk chunk : this.levelData)
 		{
-			for (Chunk chunk : chunkrow)
+			chunk.isSelectedDirty = true;
+			if (main_dirty)
 			{
-				if (chunk != null)
-				{
-					chunk.isSelectedDirty = true;
-					if (main_dirty)
-					{
-						chunk.isDirty = true;
-					}
-				}
+				chunk.isDirty = true;
 			}
 		}
 	}
@@ -382,46 +416,393 @@ public class MinecraftLevel {
 		}
 	}
 	
+	/**
+	 * Returns whether we can reload just the chunks which have changed on disk,
+	 * with refreshRegion().  That needs the per-chunk timestamps which only the
+	 * Beta 1.3 region format has.
+	 */
+	public boolean supportsIncrementalReload()
+	{
+		return world.is_beta_1_3_level && world.has_region_data;
+	}
+
+	/**
+	 * Re-reads the header of the given region if the file has changed on disk,
+	 * and finds the chunks in it which we need to (re)load: those we've loaded
+	 * whose offset or timestamp no longer matches, those which have been removed,
+	 * and any which exist but aren't loaded.  It's up to the caller to decide
+	 * which of those are close enough to bother with.  Our presence map is kept
+	 * up to date along the way.
+	 *
+	 * @param regionX
+	 * @param regionZ
+	 * @return A list of chunks (x and z are chunk coordinates) to reload
+	 */
+	public ArrayList<Block> refreshRegion(int regionX, int regionZ)
+	{
+		ArrayList<Block> changed = new ArrayList<Block>();
+		RegionFile rf = RegionFileCache.refreshRegionFile(world.getBasePath(), regionX << 5, regionZ << 5);
+		for (int lz = 0; lz < 32; lz++)
+		{
+			for (int lx = 0; lx < 32; lx++)
+			{
+				int x = (regionX << 5) + lx;
+				int z = (regionZ << 5) + lz;
+				int offset = 0;
+				int timestamp = 0;
+				if (rf != null)
+				{
+					offset = rf.getChunkOffset(lx, lz);
+					timestamp = rf.getChunkTimestamp(lx, lz);
+				}
+				this.presentChunks.setPresent(x, z, offset != 0);
+
+				Chunk c = this.getChunk(x, z);
+				if (c != null && c.x == x && c.z == z)
+				{
+					if (offset == c.storedOffset && timestamp == c.storedTimestamp)
+					{
+						continue;
+					}
+				}
+				else if (offset == 0)
+				{
+					continue;
+				}
+				changed.add(new Block(x, 0, z));
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Packs chunk coordinates into a single long, for use as a map key.
+	 */
+	public static long chunkKey(int chunkX, int chunkZ)
+	{
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Reads the raw data for the given chunks into our compressed chunk cache ahead
+	 * of loadChunk(), using RegionFile.getStoredChunks() so that each region is read
+	 * in sector order with a few large reads, rather than seeking around for every
+	 * chunk in x/z order.  This is a big win on spinning disks and network mounts
+	 * when we're loading the whole area around the camera at once.  Chunks which
+	 * are already cached aren't read again.
+	 * 
+	 * @param chunks The chunks we're about to load (x and z are chunk coordinates)
+	 */
+	public void prefetchChunks(Iterable<Block> chunks)
+	{
+		if (!world.has_region_data)
+		{
+			return;
+		}
+
+		// Group the chunks up by region
+		HashMap<Long, BitSet> regions = new HashMap<Long, BitSet>();
+		for (Block b : chunks)
+		{
+			Long regionKey = chunkKey(b.x >> 5, b.z >> 5);
+			BitSet wanted = regions.get(regionKey);
+			if (wanted == null)
+			{
+				wanted = new BitSet(1024);
+				regions.put(regionKey, wanted);
+			}
+			wanted.set((b.x & 31) + (b.z & 31) * 32);
+		}
+
+		for (Long regionKey : regions.keySet())
+		{
+			int regionX = (int) (regionKey >> 32);
+			int regionZ = (int) regionKey.longValue();
+			RegionFile rf = RegionFileCache.getRegionFile(world.getBasePath(), regionX << 5, regionZ << 5);
+			if (rf == null)
+			{
+				continue;
+			}
+			BitSet wanted = regions.get(regionKey);
+			for (int i = wanted.nextSetBit(0); i >= 0; i = wanted.nextSetBit(i + 1))
+			{
+				if (this.compressedChunks.contains((regionX << 5) + (i & 31), (regionZ << 5) + (i >> 5),
+							rf.getChunkOffset(i & 31, i >> 5), rf.getChunkTimestamp(i & 31, i >> 5)))
+				{
+					wanted.clear(i);
+				}
+			}
+			for (RegionFile.StoredChunk stored : rf.getStoredChunks(wanted))
+			{
+				this.compressedChunks.put((regionX << 5) + stored.x, (regionZ << 5) + stored.z,
+						rf.getChunkOffset(stored.x, stored.z), stored.timestamp, stored.data);
+			}
+		}
+	}
+
+	/**
+	 * Returns our cache of compressed chunk data
+	 */
+	public CompressedChunkCache getCompressedChunkCache()
+	{
+		return this.compressedChunks;
+	}
+
+	/**
+	 * Loads the given chunk from disk and stores it in our level data, returning
+	 * its data (or null if it couldn't be read).
+	 */
 	public Tag loadChunk(int x, int z) {
-		DataInputStream chunkInputStream = MinecraftEnvironment.getChunkInputStream(world, x,z);
-		if(chunkInputStream == null) {
+		if (!this.presentChunks.isPresent(x, z))
+		{
+			return null;
+		}
+		Chunk chunk = this.readChunk(x, z);
+		if (chunk == null)
+		{
 			return null;
 		}
+		this.adoptChunk(x, z, chunk);
+		return chunk.getChunkData();
+	}
+
+	/**
+	 * Reads the given chunk from disk (or our compressed chunk cache) and builds
+	 * a Chunk for it, without storing it in our level data; that's left for
+	 * adoptChunk().  This doesn't touch GL or any of our own state besides the
+	 * (synchronized) compressed chunk cache, so it's safe to call from
+	 * ChunkLoader's background threads.  Unlike loadChunk(), this doesn't check
+	 * whether the chunk exists first, so callers should do that themselves.
+	 *
+	 * @return The new Chunk, or null if it couldn't be read
+	 */
+	public Chunk readChunk(int x, int z) {
+		ByteBuffer inflated = null;
+		int offset = 0;
+		int timestamp = 0;
+		if (world.has_region_data)
+		{
+			// Check our cache first, and remember whatever we have to read from disk
+			RegionFile rf = RegionFileCache.getRegionFile(world.getBasePath(), x, z);
+			if (rf != null)
+			{
+				offset = rf.getChunkOffset(x & 31, z & 31);
+				timestamp = rf.getChunkTimestamp(x & 31, z & 31);
+				ByteBuffer data = this.compressedChunks.get(x, z, offset, timestamp);
+				if (data == null && offset != 0)
+				{
+					data = rf.getChunkBuffer(x & 31, z & 31);
+					if (data != null)
+					{
+						this.compressedChunks.put(x, z, offset, timestamp, data);
+					}
+				}
+				if (data != null)
+				{
+					inflated = ChunkInflater.get().inflateToBuffer(data);
+				}
+			}
+		}
 		try
 		{
-			Tag t = DTFReader.readTagData(chunkInputStream);
-			if (t != null)
+			Tag t;
+			if (inflated != null)
+			{
+				t = DTFBufferReader.readTagData(inflated, Chunk.STORED_TAGS);
+			}
+			else
 			{
-				levelData[(x+LEVELDATA_OFFSET)%LEVELDATA_SIZE][(z+LEVELDATA_OFFSET)%LEVELDATA_SIZE] = new Chunk(this, t);
-			}	
-			return t;
+				// Alpha-format chunk files are read as a stream
+				if (world.is_beta_1_3_level)
+				{
+					return null;
+				}
+				DataInputStream chunkInputStream = MinecraftEnvironment.getChunkInputStream(world, x,z);
+				if(chunkInputStream == null) {
+					return null;
+				}
+				t = DTFReader.readTagData(chunkInputStream, Chunk.STORED_TAGS);
+			}
+			if (t == null)
+			{
+				return null;
+			}
+			Chunk chunk = new Chunk(this, t);
+			chunk.storedOffset = offset;
+			chunk.storedTimestamp = timestamp;
+			return chunk;
 		}
 		catch (IOException e)
 		{
 			return null;
 		}
 	}
+
+	/**
+	 * Stores a Chunk we've read with readChunk(x, z) in our level data, replacing
+	 * (and releasing the display lists of) whatever was in its slot before.  The
+	 * chunks around it are linked up to it, and will re-render.
+	 */
+	public void adoptChunk(int x, int z, Chunk chunk) {
+		Chunk old = this.levelData.get(x, z);
+		if (old != null && old != chunk)
+		{
+			old.releaseDisplayLists();
+		}
+		this.levelData.put(x, z, chunk);
+		this.linkNeighbours(x, z, chunk);
+		if (chunk.hasTorches() || (old != null && old.hasTorches()))
+		{
+			this.torchesChanged(x, z);
+		}
+	}
+
+	/**
+	 * Points the chunks on either side of the given position at the chunk now
+	 * there (or null, if it's been unloaded), and that chunk at them.
+	 */
+	private void linkNeighbours(int chunkX, int chunkZ, Chunk chunk)
+	{
+		this.linkNeighbour(chunk, Chunk.NORTH, chunkX - 1, chunkZ);
+		this.linkNeighbour(chunk, Chunk.SOUTH, chunkX + 1, chunkZ);
+		this.linkNeighbour(chunk, Chunk.EAST, chunkX, chunkZ - 1);
+		this.linkNeighbour(chunk, Chunk.WEST, chunkX, chunkZ + 1);
+	}
+
+	private void linkNeighbour(Chunk chunk, int side, int otherX, int otherZ)
+	{
+		Chunk other = this.levelData.get(otherX, otherZ);
+		if (chunk != null)
+		{
+			chunk.setNeighbour(side, other);
+		}
+		if (other != null)
+		{
+			other.setNeighbour(Chunk.opposite(side), chunk);
+		}
+	}
+
+	/**
+	 * Lets the chunks around the given one know that its torches have come or
+	 * gone, so that they rebuild their torch fields.
+	 */
+	private void torchesChanged(int chunkX, int chunkZ)
+	{
+		Chunk c;
+		for (int dx = -1; dx <= 1; dx++)
+		{
+			for (int dz = -1; dz <= 1; dz++)
+			{
+				if (dx == 0 && dz == 0)
+				{
+					continue;
+				}
+				c = this.levelData.get(chunkX + dx, chunkZ + dz);
+				if (c != null)
+				{
+					c.invalidateTorchField();
+				}
+			}
+		}
+	}
+
+	public int getTorchRadius()
+	{
+		return this.torchRadius;
+	}
+
+	/**
+	 * Sets how far (in blocks) a torch reaches for the "explored" highlighting,
+	 * from 1 to TorchField.MAX_RADIUS.
+	 */
+	public void setTorchRadius(int torchRadius)
+	{
+		this.torchRadius = Math.max(1, Math.min(TorchField.MAX_RADIUS, torchRadius));
+	}
 	
 	/**
-	 * Gets the specified Chunk object
+	 * Gets the specified Chunk object, or null if it's not loaded.  Safe to
+	 * call from any thread.
 	 *
 	 * @param chunkX
 	 * @param chunkZ
 	 * @return
 	 */
 	public Chunk getChunk(int chunkX, int chunkZ) {
-		return this.levelData[(chunkX+LEVELDATA_OFFSET)%LEVELDATA_SIZE][(chunkZ+LEVELDATA_OFFSET)%LEVELDATA_SIZE];
+		return this.levelData.get(chunkX, chunkZ);
+	}
+
+	/**
+	 * Returns all the chunks we've got loaded, in no particular order
+	 */
+	public Iterable<Chunk> getLoadedChunks()
+	{
+		return this.levelData;
+	}
+
+	/**
+	 * The number of chunks we've got loaded
+	 */
+	public int getLoadedChunkCount()
+	{
+		return this.levelData.size();
 	}
 
 	/**
-	 * Sets a chunk to null
+	 * Unloads a chunk, releasing its display lists.  The chunks around it don't
+	 * re-render, so callers should mark them dirty if that's wanted.
 	 * 
 	 * @param chunkX
 	 * @param chunkZ
 	 */
 	public void clearChunk(int chunkX, int chunkZ)
 	{
-		this.levelData[(chunkX+LEVELDATA_OFFSET)%LEVELDATA_SIZE][(chunkZ+LEVELDATA_OFFSET)%LEVELDATA_SIZE] = null;
+		Chunk c = this.levelData.remove(chunkX, chunkZ);
+		if (c != null)
+		{
+			c.releaseDisplayLists();
+			this.linkNeighbours(chunkX, chunkZ, null);
+			if (c.hasTorches())
+			{
+				this.torchesChanged(chunkX, chunkZ);
+			}
+		}
+	}
+
+	/**
+	 * Unloads every chunk, releasing their display lists.  Should be called
+	 * when we're done with a level.
+	 */
+	public void clearAllChunks()
+	{
+		for (Chunk c : this.levelData)
+		{
+			c.releaseDisplayLists();
+		}
+		this.levelData.clear();
+	}
+
+	/**
+	 * Unloads every chunk which is more than range chunks away from the given
+	 * chunk (on either axis), releasing their display lists.
+	 * 
+	 * @return The chunks we unloaded
+	 */
+	public ArrayList<Chunk> clearChunksOutside(int chunkX, int chunkZ, int range)
+	{
+		ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+		for (Chunk c : this.levelData)
+		{
+			if (Math.abs(c.x - chunkX) > range || Math.abs(c.z - chunkZ) > range)
+			{
+				chunks.add(c);
+			}
+		}
+		for (Chunk c : chunks)
+		{
+			this.clearChunk(c.x, c.z);
+		}
+		return chunks;
 	}
 	
 	/**
@@ -432,14 +813,12 @@ public class MinecraftLevel {
 	public ArrayList<Chunk> removeChunkRowXFromMinimap(int chunkX)
 	{
 		ArrayList<Chunk> chunks = new ArrayList<Chunk>();
-		int xval = (chunkX+LEVELDATA_OFFSET)%LEVELDATA_SIZE;
-		for (int i=0; i<LEVELDATA_SIZE; i++)
+		for (Chunk c : this.levelData)
 		{
-			if (this.levelData[xval][i] != null && this.levelData[xval][i].isOnMinimap)
+			if (c.x == chunkX && c.isOnMinimap)
 			{
-				//System.out.println("(" + chunkX + ") Removing from minimap on " + xval + ", " + i);
-				this.levelData[xval][i].isOnMinimap = false;
-				chunks.add(this.levelData[xval][i]);
+				c.isOnMinimap = false;
+				chunks.add(c);
 			}
 		}
 		return chunks;
@@ -453,14 +832,12 @@ public class MinecraftLevel {
 	public ArrayList<Chunk> removeChunkRowZFromMinimap(int chunkZ)
 	{
 		ArrayList<Chunk> chunks = new ArrayList<Chunk>();
-		int zval = (chunkZ+LEVELDATA_OFFSET)%LEVELDATA_SIZE;
-		for (int i=0; i<LEVELDATA_SIZE; i++)
+		for (Chunk c : this.levelData)
 		{
-			if (this.levelData[i][zval] != null && this.levelData[i][zval].isOnMinimap)
+			if (c.z == chunkZ && c.isOnMinimap)
 			{
-				//System.out.println("Removing from minimap on " + i + ", " + zval);
-				this.levelData[i][zval].isOnMinimap = false;
-				chunks.add(this.levelData[i][zval]);
+				c.isOnMinimap = false;
+				chunks.add(c);
 			}
 		}
 		return chunks;
@@ -473,33 +850,29 @@ public class MinecraftLevel {
 	public ArrayList<Chunk> removeAllChunksFromMinimap()
 	{
 		ArrayList<Chunk> chunks = new ArrayList<Chunk>();	
-		for (int z=0; z<LEVELDATA_SIZE; z++)
+		for (Chunk c : this.levelData)
 		{
-			for (int x=0; x<LEVELDATA_SIZE; x++)
+			if (c.isOnMinimap)
 			{
-				if (this.levelData[x][z] != null && this.levelData[x][z].isOnMinimap)
-				{
-					//System.out.println("(" + chunkX + ") Removing from minimap on " + xval + ", " + i);
-					this.levelData[x][z].isOnMinimap = false;
-					chunks.add(this.levelData[x][z]);
-				}
+				c.isOnMinimap = false;
+				chunks.add(c);
 			}
 		}
 		return chunks;
 	}
 	
 	/***
-	 * gets the data for a given chunk (coordinates are CHUNK coordinates, not world coordinates!)
+	 * gets the block IDs for a given chunk (coordinates are CHUNK coordinates, not world coordinates!)
 	 * @param chunkX
 	 * @param chunkZ
-	 * @return
+	 * @return The chunk's blocks, or null if it's not loaded
 	 */
-	public short[] getChunkData(int chunkX, int chunkZ) {
+	public BlockStorage getChunkData(int chunkX, int chunkZ) {
 		Chunk c = this.getChunk(chunkX, chunkZ);
 		if(c == null) {
-			return new short[32768];
+			return null;
 		} else {
-			return c.getMapData().value;
+			return c.getBlocks();
 		}
 	}
 		
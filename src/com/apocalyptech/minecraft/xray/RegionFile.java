@@ -65,7 +65,13 @@
 package com.apocalyptech.minecraft.xray;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.zip.*;
 
 public class RegionFile {
@@ -76,18 +82,41 @@ public class RegionFile {
     private static final int SECTOR_BYTES = 4096;
     private static final int SECTOR_INTS = SECTOR_BYTES / 4;
 
+    /* how far apart chunks can be and still get pulled in by the same bulk read */
+    private static final int BULK_MAX_GAP_SECTORS = 16;
+    private static final int BULK_MAX_READ_BYTES = 4 * 1024 * 1024;
+
     static final int CHUNK_HEADER_SIZE = 5;
-    //private static final byte emptySector[] = new byte[4096];
 
     private final File fileName;
     private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer mappedData;
     private final int offsets[];
     private final int chunkTimestamps[];
     private ArrayList<Boolean> sectorFree;
     private int sizeDelta;
     private long lastModified = 0;
+    private long openedLength = 0;
+    private boolean openedOk = false;
+
+    /* positional reads in progress, and whether close() is waiting on them */
+    private int readers = 0;
+    private boolean closeRequested = false;
 
     public RegionFile(File path) {
+        this(path, true);
+    }
+
+    /*
+     * X-Ray only ever reads region files, so they're opened read-only.  If
+     * mapped is true we try to map the whole file into memory, and fall back
+     * to positional FileChannel reads if the map fails (on a 32-bit JVM with
+     * a lot of regions open, for instance).  Neither path touches the shared
+     * file pointer, so chunk reads don't need to lock and any number of
+     * threads can pull chunks out of the same region at once.
+     */
+    public RegionFile(File path, boolean mapped) {
         offsets = new int[SECTOR_INTS];
         chunkTimestamps = new int[SECTOR_INTS];
 
@@ -102,9 +131,14 @@ public class RegionFile {
             }
 
             file = new RandomAccessFile(path, "r");
+            channel = file.getChannel();
+            long fileLength = channel.size();
+            openedLength = fileLength;
 
+            /* Commented for X-Ray, since we open read-only.  A region file without
+             * a full header just means a region with no chunks in it.
             if (file.length() < SECTOR_BYTES) {
-                /* we need to write the chunk offset table */
+                // we need to write the chunk offset table
                 for (int i = 0; i < SECTOR_INTS; ++i) {
                     file.writeInt(0);
                 }
@@ -117,26 +151,42 @@ public class RegionFile {
             }
 
             if ((file.length() & 0xfff) != 0) {
-                /* the file size is not a multiple of 4KB, grow it */
+                // the file size is not a multiple of 4KB, grow it
                 for (int i = 0; i < (file.length() & 0xfff); ++i) {
                     file.write((byte) 0);
                 }
             }
+            */
+
+            if (mapped && fileLength > 0 && fileLength <= Integer.MAX_VALUE) {
+                try {
+                    mappedData = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+                } catch (IOException e) {
+                    debugln("REGION MAP FAILED " + fileName + ", using positional reads");
+                    mappedData = null;
+                }
+            }
 
             /* set up the available sector map */
-            int nSectors = (int) file.length() / SECTOR_BYTES;
+            int nSectors = (int) (fileLength / SECTOR_BYTES);
             sectorFree = new ArrayList<Boolean>(nSectors);
 
             for (int i = 0; i < nSectors; ++i) {
                 sectorFree.add(true);
             }
 
+            if (nSectors < 2) {
+                // no room for the offset and timestamp tables, so no chunks either
+                openedOk = true;
+                return;
+            }
+
             sectorFree.set(0, false); // chunk offset table
             sectorFree.set(1, false); // for the last modified info
 
-            file.seek(0);
+            ByteBuffer header = readBytes(0, SECTOR_BYTES * 2, null);
             for (int i = 0; i < SECTOR_INTS; ++i) {
-                int offset = file.readInt();
+                int offset = header.getInt();
                 offsets[i] = offset;
                 if (offset != 0 && (offset >> 8) + (offset & 0xFF) <= sectorFree.size()) {
                     for (int sectorNum = 0; sectorNum < (offset & 0xFF); ++sectorNum) {
@@ -145,19 +195,48 @@ public class RegionFile {
                 }
             }
             for (int i = 0; i < SECTOR_INTS; ++i) {
-                int lastModValue = file.readInt();
+                int lastModValue = header.getInt();
                 chunkTimestamps[i] = lastModValue;
             }
+            openedOk = true;
         } catch (IOException e) {
             e.printStackTrace();
+            try {
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e2) {
+                // nothing more we can do
+            }
         }
     }
 
+    /*
+     * did we manage to read the header?  If not, our offset table is all
+     * zeroes and we'll look empty, so we shouldn't be kept around.
+     */
+    public boolean isOpenedOk() {
+        return openedOk;
+    }
+
+    /* is this region being read through a memory map? */
+    public boolean isMapped() {
+        return mappedData != null;
+    }
+
     /* the modification date of the region file when it was first opened */
     public long lastModified() {
         return lastModified;
     }
 
+    /*
+     * has the file on disk been modified (or grown) since we opened it?  If so,
+     * our copy of the header may no longer match what's on disk.
+     */
+    public boolean isStale() {
+        return fileName.lastModified() != lastModified || fileName.length() != openedLength;
+    }
+
     /* gets how much the region file has grown since it was last checked */
     public synchronized int getSizeDelta() {
         int ret = sizeDelta;
@@ -189,10 +268,20 @@ public class RegionFile {
     }
 
     /*
-     * gets an (uncompressed) stream representing the chunk data returns null if
-     * the chunk is not found or an error occurs
+     * gets the raw stored data for a chunk: a buffer holding the version byte
+     * followed by the compressed chunk data.  When the region is mapped this
+     * is a slice of the map and doesn't copy anything.  returns null if the
+     * chunk is not found or an error occurs.  Safe to call from any thread.
      */
-    public synchronized DataInputStream getChunkDataInputStream(int x, int z) {
+    public ByteBuffer getChunkBuffer(int x, int z) {
+        return getChunkBuffer(x, z, null);
+    }
+
+    /*
+     * as above, but unmapped regions will read into the given inflater's input
+     * buffer (if not null) rather than a freshly-allocated one
+     */
+    private ByteBuffer getChunkBuffer(int x, int z, ChunkInflater scratch) {
         if (outOfBounds(x, z)) {
             debugln("READ", x, z, "out of bounds");
             return null;
@@ -213,150 +302,216 @@ public class RegionFile {
                 return null;
             }
 
-            file.seek(sectorNumber * SECTOR_BYTES);
-            int length = file.readInt();
+            // Grab every sector the chunk occupies at once; that's a single read
+            // (or no read at all, if we're mapped) instead of seek + readInt + read.
+            ByteBuffer sectors = readBytes((long) sectorNumber * SECTOR_BYTES, numSectors * SECTOR_BYTES, scratch);
+            int length = sectors.getInt();
 
-            if (length > SECTOR_BYTES * numSectors) {
+            if (length > SECTOR_BYTES * numSectors - 4 || length < 1) {
                 debugln("READ", x, z, "invalid length: " + length + " > 4096 * " + numSectors);
                 return null;
             }
 
-            byte version = file.readByte();
-            if (version == VERSION_GZIP) {
-                byte[] data = new byte[length - 1];
-                file.read(data);
-                DataInputStream ret = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
-                // debug("READ", x, z, " = found");
-                return ret;
-            } else if (version == VERSION_DEFLATE) {
-                byte[] data = new byte[length - 1];
-                file.read(data);
-                DataInputStream ret = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
-                // debug("READ", x, z, " = found");
-                return ret;
-            }
-
-            debugln("READ", x, z, "unknown version " + version);
-            return null;
+            sectors.limit(4 + length);
+            return sectors.slice();
         } catch (IOException e) {
             debugln("READ", x, z, "exception");
             return null;
         }
     }
 
-    /* Commented for X-Ray because we shouldn't be writing anything
-    public DataOutputStream getChunkDataOutputStream(int x, int z) {
-        if (outOfBounds(x, z)) return null;
+    /*
+     * gets an (uncompressed) stream representing the chunk data returns null if
+     * the chunk is not found or an error occurs.  The stream belongs to this
+     * thread's ChunkInflater, so it's only good until the thread reads another
+     * chunk.
+     */
+    public DataInputStream getChunkDataInputStream(int x, int z) {
+        ChunkInflater inflater = ChunkInflater.get();
+        ByteBuffer chunk = getChunkBuffer(x, z, inflater);
+        if (chunk == null) {
+            return null;
+        }
 
-        return new DataOutputStream(new DeflaterOutputStream(new ChunkBuffer(x, z)));
+        DataInputStream ret = inflater.inflate(chunk);
+        if (ret == null) {
+            debugln("READ", x, z, "unknown version or bad data");
+        }
+        return ret;
     }
-    */
 
     /*
-     * lets chunk writing be multithreaded by not locking the whole file as a
-     * chunk is serializing -- only writes when serialization is over
+     * A chunk's raw stored data (version byte plus compressed payload), along
+     * with where it lives in the region file.  x and z are local to the region.
      */
-    /* Commented for X-Ray since we don't have any business writing things
-    class ChunkBuffer extends ByteArrayOutputStream {
-        private int x, z;
-
-        public ChunkBuffer(int x, int z) {
-            super(8096); // initialize to 8KB
+    public static class StoredChunk {
+        public final int x;
+        public final int z;
+        public final int sectorNumber;
+        public final int timestamp;
+        public final ByteBuffer data;
+
+        StoredChunk(int x, int z, int sectorNumber, int timestamp, ByteBuffer data) {
             this.x = x;
             this.z = z;
-        }
-
-        public void close() {
-            RegionFile.this.write(x, z, buf, count);
+            this.sectorNumber = sectorNumber;
+            this.timestamp = timestamp;
+            this.data = data;
         }
     }
-    */
 
-    /* write a chunk at (x,z) with length bytes of data to disk */
-    /* Commented for X-Ray because we don't have any business writing things out
-    protected synchronized void write(int x, int z, byte[] data, int length) {
-        try {
-            int offset = getOffset(x, z);
-            int sectorNumber = offset >> 8;
-            int sectorsAllocated = offset & 0xFF;
-            int sectorsNeeded = (length + CHUNK_HEADER_SIZE) / SECTOR_BYTES + 1;
+    /* gets the raw data of every chunk in the region, in on-disk order */
+    public List<StoredChunk> getStoredChunks() {
+        return getStoredChunks(null);
+    }
 
-            // maximum chunk size is 1MB
-            if (sectorsNeeded >= 256) {
-                return;
+    /*
+     * gets the raw data of the requested chunks (bit x + z * 32 set in wanted;
+     * null means all of them), sorted by sector offset.  Chunks which are
+     * close together on disk are read in one go, so the whole lot usually
+     * costs a handful of large sequential reads rather than a seek per chunk.
+     * Chunks which aren't present or can't be read are left out.
+     */
+    public List<StoredChunk> getStoredChunks(BitSet wanted) {
+        // Sort the chunks we want by where they are in the file.  The sector
+        // number goes in the high bits and the chunk index in the low ten.
+        long[] order = new long[SECTOR_INTS];
+        int count = 0;
+        for (int i = 0; i < SECTOR_INTS; ++i) {
+            int offset = offsets[i];
+            if (offset == 0 || (wanted != null && !wanted.get(i))) {
+                continue;
+            }
+            if ((offset >> 8) + (offset & 0xFF) > sectorFree.size()) {
+                continue;
+            }
+            order[count++] = ((long) (offset >> 8) << 10) | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        ArrayList<StoredChunk> chunks = new ArrayList<StoredChunk>(count);
+        int runStart = 0;
+        while (runStart < count) {
+            // Extend this run for as long as the next chunk starts close to
+            // where the last one ended
+            int firstSector = (int) (order[runStart] >> 10);
+            int endSector = firstSector + (offsets[(int) (order[runStart] & 0x3FF)] & 0xFF);
+            int runEnd = runStart + 1;
+            while (runEnd < count) {
+                int index = (int) (order[runEnd] & 0x3FF);
+                int sector = offsets[index] >> 8;
+                int nextEnd = Math.max(endSector, sector + (offsets[index] & 0xFF));
+                if (sector - endSector > BULK_MAX_GAP_SECTORS
+                        || (long) (nextEnd - firstSector) * SECTOR_BYTES > BULK_MAX_READ_BYTES) {
+                    break;
+                }
+                endSector = nextEnd;
+                runEnd++;
             }
 
-            if (sectorNumber != 0 && sectorsAllocated == sectorsNeeded) {
-                // we can simply overwrite the old sectors
-                debug("SAVE", x, z, length, "rewrite");
-                write(sectorNumber, data, length);
-            } else {
-                // we need to allocate new sectors
+            ByteBuffer run;
+            try {
+                run = readBytes((long) firstSector * SECTOR_BYTES, (endSector - firstSector) * SECTOR_BYTES, null);
+            } catch (IOException e) {
+                debugln("BULK READ " + fileName.getName() + " exception at sector " + firstSector);
+                runStart = runEnd;
+                continue;
+            }
 
-                // mark the sectors previously used for this chunk as free
-                for (int i = 0; i < sectorsAllocated; ++i) {
-                    sectorFree.set(sectorNumber + i, true);
+            for (int i = runStart; i < runEnd; ++i) {
+                int index = (int) (order[i] & 0x3FF);
+                int sector = (int) (order[i] >> 10);
+                int numSectors = offsets[index] & 0xFF;
+                int start = (sector - firstSector) * SECTOR_BYTES;
+                int length = run.getInt(start);
+                if (length > SECTOR_BYTES * numSectors - 4 || length < 1) {
+                    debugln("READ", index & 31, index >> 5, "invalid length: " + length + " > 4096 * " + numSectors);
+                    continue;
                 }
+                ByteBuffer data = run.duplicate();
+                data.position(start + 4);
+                data.limit(start + 4 + length);
+                chunks.add(new StoredChunk(index & 31, index >> 5, sector, chunkTimestamps[index], data.slice()));
+            }
+            runStart = runEnd;
+        }
+        return chunks;
+    }
 
-                // scan for a free space large enough to store this chunk
-                int runStart = sectorFree.indexOf(true);
-                int runLength = 0;
-                if (runStart != -1) {
-                    for (int i = runStart; i < sectorFree.size(); ++i) {
-                        if (runLength != 0) {
-                            if (sectorFree.get(i)) runLength++;
-                            else runLength = 0;
-                        } else if (sectorFree.get(i)) {
-                            runStart = i;
-                            runLength = 1;
-                        }
-                        if (runLength >= sectorsNeeded) {
-                            break;
-                        }
-                    }
-                }
+    /*
+     * reads length bytes starting at position.  Mapped regions hand back a
+     * slice of the map; otherwise we do a positional read, which doesn't move
+     * the channel's file pointer and so can run concurrently with other reads.
+     * That read goes into the scratch inflater's input buffer if we're given
+     * one, or a new buffer if not.
+     *
+     * A close() which comes along while positional reads are going on leaves
+     * the channel open until they've finished.  If we've already been
+     * closed (a reader got hold of us just before we were evicted or
+     * refreshed), the read goes through a channel of its own instead.
+     */
+    private ByteBuffer readBytes(long position, int length, ChunkInflater scratch) throws IOException {
+        if (mappedData != null) {
+            if (position + length > mappedData.capacity()) {
+                throw new EOFException("read past end of " + fileName);
+            }
+            ByteBuffer slice = mappedData.duplicate();
+            slice.position((int) position);
+            slice.limit((int) position + length);
+            return slice.slice();
+        }
 
-                if (runLength >= sectorsNeeded) {
-                    // we found a free space large enough
-                    debug("SAVE", x, z, length, "reuse");
-                    sectorNumber = runStart;
-                    setOffset(x, z, (sectorNumber << 8) | sectorsNeeded);
-                    for (int i = 0; i < sectorsNeeded; ++i) {
-                        sectorFree.set(sectorNumber + i, false);
-                    }
-                    write(sectorNumber, data, length);
-                } else {
-                     // no free space large enough found -- we need to grow the file
-                    debug("SAVE", x, z, length, "grow");
-                    file.seek(file.length());
-                    sectorNumber = sectorFree.size();
-                    for (int i = 0; i < sectorsNeeded; ++i) {
-                        file.write(emptySector);
-                        sectorFree.add(false);
-                    }
-                    sizeDelta += SECTOR_BYTES * sectorsNeeded;
+        ByteBuffer buf = (scratch == null) ? ByteBuffer.allocate(length) : scratch.getInputBuffer(length);
+        if (!beginRead()) {
+            RandomAccessFile own = new RandomAccessFile(fileName, "r");
+            try {
+                readFully(own.getChannel(), position, buf);
+            } finally {
+                own.close();
+            }
+            return buf;
+        }
+        try {
+            readFully(channel, position, buf);
+        } finally {
+            endRead();
+        }
+        return buf;
+    }
 
-                    write(sectorNumber, data, length);
-                    setOffset(x, z, (sectorNumber << 8) | sectorsNeeded);
-                }
+    private void readFully(FileChannel from, long position, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (from.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("read past end of " + fileName);
             }
-            setTimestamp(x, z, (int) (System.currentTimeMillis() / 1000L));
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        buf.flip();
     }
-    */
 
-    /* write a chunk data to the region file at specified sector number */
-    /* Commented for X-Ray because we don't have any business writing things
-    private void write(int sectorNumber, byte[] data, int length) throws IOException {
-        debugln(" " + sectorNumber);
-        file.seek(sectorNumber * SECTOR_BYTES);
-        file.writeInt(length + 1); // chunk length
-        file.writeByte(VERSION_DEFLATE); // chunk version number
-        file.write(data, 0, length); // chunk data
+    /* registers a positional read, unless we've been closed */
+    private synchronized boolean beginRead() {
+        if (closeRequested) {
+            return false;
+        }
+        readers++;
+        return true;
     }
-    */
+
+    private void endRead() throws IOException {
+        synchronized (this) {
+            readers--;
+            if (readers > 0 || !closeRequested) {
+                return;
+            }
+        }
+        closeChannel();
+    }
+
+    /*
+     * The write path (getChunkDataOutputStream() and friends) used to sit here,
+     * commented out, since X-Ray never writes to a world.  It now lives in
+     * bench/src as RegionFileWriter, for generating test worlds.
+     */
 
     /* is this an invalid chunk coordinate? */
     private boolean outOfBounds(int x, int z) {
@@ -371,23 +526,48 @@ public class RegionFile {
         return getOffset(x, z) != 0;
     }
 
-    /* Commented for X-Ray
-    private void setOffset(int x, int z, int offset) throws IOException {
-        offsets[x + z * 32] = offset;
-        file.seek((x + z * 32) * 4);
-        file.writeInt(offset);
+    /*
+     * The raw offset table entry for a chunk (sector << 8 | sector count).
+     * Along with getChunkTimestamp() this identifies one stored version of a
+     * chunk: Minecraft bumps the timestamp whenever it saves a chunk, and a
+     * chunk which grows past its sectors gets moved.
+     */
+    public int getChunkOffset(int x, int z) {
+        if (outOfBounds(x, z)) {
+            return 0;
+        }
+        return getOffset(x, z);
     }
-    */
 
-    /* Commented for X-Ray
-    private void setTimestamp(int x, int z, int value) throws IOException {
-        chunkTimestamps[x + z * 32] = value;
-        file.seek(SECTOR_BYTES + (x + z * 32) * 4);
-        file.writeInt(value);
+    /* the time (in seconds) Minecraft last saved the given chunk */
+    public int getChunkTimestamp(int x, int z) {
+        if (outOfBounds(x, z)) {
+            return 0;
+        }
+        return chunkTimestamps[x + z * 32];
     }
-    */
 
+    /*
+     * A mapped buffer stays valid until it's garbage collected, so a mapped
+     * region can still be read by a thread which grabbed it just before it
+     * was closed (evicted from RegionFileCache, say).  Unmapped regions close
+     * their channel once any reads in progress are done; see readBytes().
+     */
     public void close() throws IOException {
+        synchronized (this) {
+            if (closeRequested) {
+                return;
+            }
+            closeRequested = true;
+            if (readers > 0) {
+                return;
+            }
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() throws IOException {
+        channel.close();
         file.close();
     }
 }
\ No newline at end of file
@@ -32,63 +32,225 @@
 package com.apocalyptech.minecraft.xray;
 
 import java.io.*;
-import java.lang.ref.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RegionFileCache {
 
     private static final int MAX_CACHE_SIZE = 256;
 
+    /*
+     * Modified for X-Ray: the cache used to be a synchronized map of
+     * SoftReferences keyed by File, which threw every region away (and closed
+     * it) once it filled up, and could let the GC drop a region without ever
+     * closing its file handle.  Now regions are keyed by their region
+     * coordinates and held strongly; once we're full, only the least-recently
+     * used region is closed.  Lookups of regions we already have open don't
+     * take any lock, so chunk loading threads don't queue up behind each other.
+     *
+     * Since the key is just the region coordinate, the cache only ever holds
+     * regions from a single world directory; asking for a region from a
+     * different directory (switching worlds or dimensions) flushes it.
+     */
+    private static final ConcurrentHashMap<Long, CachedRegion> cache = new ConcurrentHashMap<Long, CachedRegion>();
 
-    private static final Map<File, Reference<RegionFile>> cache = new HashMap<File, Reference<RegionFile>>();
+    /* the world directory the currently-cached regions belong to */
+    private static volatile String cachedBasePath = null;
+
+    /* only taken when we need to open, evict or flush regions */
+    private static final Object openLock = new Object();
+
+    private static final AtomicLong accessClock = new AtomicLong();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /*
+     * A cache entry.  region is null for regions which don't exist on disk,
+     * so that we don't keep asking the filesystem about them.
+     */
+    private static class CachedRegion {
+        final RegionFile region;
+        volatile long lastAccess;
+
+        CachedRegion(RegionFile region) {
+            this.region = region;
+            this.lastAccess = accessClock.incrementAndGet();
+        }
+    }
 
     private RegionFileCache() {
     }
 
-    public static synchronized RegionFile getRegionFile(File basePath, int chunkX, int chunkZ) {
-        File regionDir = new File(basePath, "region");
-        File file = new File(regionDir, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mcr");
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    public static RegionFile getRegionFile(File basePath, int chunkX, int chunkZ) {
+        return getRegionFile(basePath.getPath(), chunkX, chunkZ);
+    }
 
-        Reference<RegionFile> ref = cache.get(file);
+    public static RegionFile getRegionFile(String basePath, int chunkX, int chunkZ) {
+        if (!basePath.equals(cachedBasePath)) {
+            switchBasePath(basePath);
+        }
+
+        int regionX = chunkX >> 5;
+        int regionZ = chunkZ >> 5;
+        CachedRegion entry = cache.get(regionKey(regionX, regionZ));
+        if (entry != null) {
+            hits.incrementAndGet();
+            entry.lastAccess = accessClock.incrementAndGet();
+            return entry.region;
+        }
+
+        return openRegionFile(basePath, regionX, regionZ);
+    }
+
+    private static RegionFile openRegionFile(String basePath, int regionX, int regionZ) {
+        long key = regionKey(regionX, regionZ);
+        synchronized (openLock) {
+            // If the cache has been switched to another world directory while we
+            // were waiting, this is a leftover request for the old one; don't let
+            // its region in under a key the new world will look up.
+            if (!basePath.equals(cachedBasePath)) {
+                return null;
+            }
+
+            // Another thread may have opened it while we were waiting
+            CachedRegion entry = cache.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                entry.lastAccess = accessClock.incrementAndGet();
+                return entry.region;
+            }
+            misses.incrementAndGet();
+
+            File regionDir = new File(basePath, "region");
+            File file = new File(regionDir, "r." + regionX + "." + regionZ + ".mcr");
+
+            /* Commented for X-Ray because I'd rather not modify anything, even if it's just a
+             * directory.  We should never get here unless stuff exists, anyway.
+            if (!regionDir.exists()) {
+                regionDir.mkdirs();
+            }
+            */
+
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                evictLeastRecentlyUsed();
+            }
 
-        if (ref != null && ref.get() != null) {
-            return ref.get();
+            RegionFile reg = null;
+            if (file.exists()) {
+                reg = new RegionFile(file);
+                if (!reg.isOpenedOk()) {
+                    // Don't remember a region we couldn't read as being empty;
+                    // we'll try again next time we're asked for it.
+                    return null;
+                }
+            }
+            cache.put(key, new CachedRegion(reg));
+            return reg;
         }
+    }
 
-        /* Commented for X-Ray because I'd rather not modify anything, even if it's just a
-         * directory.  We should never get here unless stuff exists, anyway.
-        if (!regionDir.exists()) {
-            regionDir.mkdirs();
+    /*
+     * Like getRegionFile(), but first checks whether the region file on disk
+     * has changed since we opened it, and if so reopens it so that its header
+     * (chunk offsets and timestamps) is current.  Also picks up region files
+     * which have been created since we last looked for them.
+     */
+    public static RegionFile refreshRegionFile(String basePath, int chunkX, int chunkZ) {
+        if (!basePath.equals(cachedBasePath)) {
+            switchBasePath(basePath);
         }
-        */
 
-        if (cache.size() >= MAX_CACHE_SIZE) {
-            RegionFileCache.clear();
+        int regionX = chunkX >> 5;
+        int regionZ = chunkZ >> 5;
+        long key = regionKey(regionX, regionZ);
+        synchronized (openLock) {
+            CachedRegion entry = cache.get(key);
+            if (entry != null) {
+                if (entry.region == null) {
+                    File file = new File(new File(basePath, "region"), "r." + regionX + "." + regionZ + ".mcr");
+                    if (!file.exists()) {
+                        entry.lastAccess = accessClock.incrementAndGet();
+                        return null;
+                    }
+                } else if (!entry.region.isStale()) {
+                    entry.lastAccess = accessClock.incrementAndGet();
+                    return entry.region;
+                }
+                cache.remove(key);
+                closeRegion(entry);
+            }
         }
+        return openRegionFile(basePath, regionX, regionZ);
+    }
 
-        if (file.exists())
-        {
-	        RegionFile reg = new RegionFile(file);
-	        cache.put(file, new SoftReference<RegionFile>(reg));
-	        return reg;
+    /*
+     * Closes and drops the region which was used longest ago.  Only called with
+     * openLock held.  This is a linear scan, but it only happens when we open a
+     * new region with the cache already full.
+     */
+    private static void evictLeastRecentlyUsed() {
+        Long oldestKey = null;
+        long oldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<Long, CachedRegion> e : cache.entrySet()) {
+            if (e.getValue().lastAccess < oldestAccess) {
+                oldestAccess = e.getValue().lastAccess;
+                oldestKey = e.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            CachedRegion evicted = cache.remove(oldestKey);
+            evictions.incrementAndGet();
+            closeRegion(evicted);
         }
-        else
-        {
-        	return null;
+    }
+
+    private static void switchBasePath(String basePath) {
+        synchronized (openLock) {
+            if (!basePath.equals(cachedBasePath)) {
+                clear();
+                cachedBasePath = basePath;
+            }
         }
     }
 
-    public static synchronized void clear() {
-        for (Reference<RegionFile> ref : cache.values()) {
+    private static void closeRegion(CachedRegion entry) {
+        if (entry != null && entry.region != null) {
             try {
-                if (ref.get() != null) {
-                    ref.get().close();
-                }
+                entry.region.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
-        cache.clear();
+    }
+
+    public static void clear() {
+        synchronized (openLock) {
+            for (CachedRegion entry : cache.values()) {
+                closeRegion(entry);
+            }
+            cache.clear();
+        }
+    }
+
+    /* the number of lookups answered from the cache, including for missing regions */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /* the number of lookups which had to go to the filesystem */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /* the number of regions closed to make room for others */
+    public static long getEvictionCount() {
+        return evictions.get();
     }
 
     public static int getSizeDelta(File basePath, int chunkX, int chunkZ) {
@@ -98,6 +260,9 @@ public class RegionFileCache {
 
     public static DataInputStream getChunkDataInputStream(File basePath, int chunkX, int chunkZ) {
         RegionFile r = getRegionFile(basePath, chunkX, chunkZ);
+        if (r == null) {
+            return null;
+        }
         return r.getChunkDataInputStream(chunkX & 31, chunkZ & 31);
     }
     
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Watches a world's region directory for changes, so that we can follow a
+ * world which is being played (or served) while X-Ray has it open.  This runs
+ * in its own thread and just collects the coordinates of region files which
+ * have been written to; the main loop picks those up with drainChangedRegions()
+ * and asks MinecraftLevel to reload whichever chunks actually changed.
+ * 
+ * Minecraft tends to write a region file many times in a row while saving, so
+ * callers should wait for things to settle down (see getLastEventTime()) before
+ * acting on the changes.
+ */
+public class RegionWatcher implements Runnable
+{
+	private WatchService watcher;
+	private Thread thread;
+
+	// Region keys, as from MinecraftLevel.chunkKey(regionX, regionZ)
+	private ConcurrentLinkedQueue<Long> changedRegions;
+
+	private volatile long lastEventTime;
+
+	// Set if the OS dropped events on us, so we don't know what changed
+	private volatile boolean overflowed;
+
+	private RegionWatcher(WatchService watcher)
+	{
+		this.watcher = watcher;
+		this.changedRegions = new ConcurrentLinkedQueue<Long>();
+		this.lastEventTime = 0;
+		this.overflowed = false;
+	}
+
+	/**
+	 * Starts watching the region directory of the given world.  Returns null if
+	 * the world has no region directory or the platform can't watch it.
+	 */
+	public static RegionWatcher start(WorldInfo world)
+	{
+		File regionDir = new File(world.getBasePath(), "region");
+		if (!regionDir.isDirectory())
+		{
+			return null;
+		}
+		try
+		{
+			WatchService service = FileSystems.getDefault().newWatchService();
+			regionDir.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			RegionWatcher rw = new RegionWatcher(service);
+			rw.thread = new Thread(rw, "X-Ray region watcher");
+			rw.thread.setDaemon(true);
+			rw.thread.start();
+			return rw;
+		}
+		catch (IOException e)
+		{
+			System.out.println("Unable to watch " + regionDir.getPath() + " for changes: " + e.toString());
+			return null;
+		}
+		catch (UnsupportedOperationException e)
+		{
+			System.out.println("Unable to watch " + regionDir.getPath() + " for changes: " + e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Stops watching.  The watcher thread exits on its own shortly afterwards.
+	 */
+	public void stop()
+	{
+		try
+		{
+			this.watcher.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing we can do about it
+		}
+	}
+
+	/**
+	 * Moves the keys of all regions which have changed since the last call into
+	 * the given collection.  Returns true if there were any.
+	 */
+	public boolean drainChangedRegions(Collection<Long> regions)
+	{
+		boolean found = false;
+		Long key;
+		while ((key = this.changedRegions.poll()) != null)
+		{
+			regions.add(key);
+			found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns true if we've missed some events since the last call, in which
+	 * case any region might have changed.
+	 */
+	public boolean checkOverflow()
+	{
+		boolean ret = this.overflowed;
+		this.overflowed = false;
+		return ret;
+	}
+
+	/**
+	 * The time (from System.currentTimeMillis()) we last saw a region change
+	 */
+	public long getLastEventTime()
+	{
+		return this.lastEventTime;
+	}
+
+	public void run()
+	{
+		while (true)
+		{
+			WatchKey key;
+			try
+			{
+				key = this.watcher.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			catch (ClosedWatchServiceException e)
+			{
+				return;
+			}
+
+			for (WatchEvent<?> event : key.pollEvents())
+			{
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+				{
+					this.overflowed = true;
+					this.lastEventTime = System.currentTimeMillis();
+					continue;
+				}
+				String filename = ((Path) event.context()).getFileName().toString();
+				if (!filename.startsWith("r.") || !filename.endsWith(".mcr"))
+				{
+					continue;
+				}
+				String[] parts = filename.split("\\.");
+				if (parts.length != 4)
+				{
+					continue;
+				}
+				try
+				{
+					this.changedRegions.add(MinecraftLevel.chunkKey(Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+					this.lastEventTime = System.currentTimeMillis();
+				}
+				catch (NumberFormatException e)
+				{
+					// Not a region file after all
+				}
+			}
+
+			if (!key.reset())
+			{
+				// The directory went away
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers and Christopher J. Kucera
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS OR CJ KUCERA BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray;
+
+import java.util.Arrays;
+
+import static com.apocalyptech.minecraft.xray.MinecraftConstants.*;
+
+/**
+ * Works out which blocks of a chunk are near a torch, for the "explored"
+ * highlighting.  A block counts as near if there's a torch within the given
+ * radius along each of X, Y and Z (so, inside a cube around it), including
+ * torches in the surrounding chunks.
+ * 
+ * Rather than look around every block for torches, we mark where the torches
+ * are on a grid covering the chunk plus the radius on each side, then spread
+ * them out along Y, then X, then Z.  Each of those is a pair of straight
+ * scans along each line, so the work doesn't depend on the radius beyond the
+ * grid getting a little bigger.  The result is a bitmask with one bit per
+ * block, in the usual "Blocks" order.
+ * 
+ * Only the render thread builds these, so the grids are shared.
+ */
+public class TorchField
+{
+	// Torches further out than this would be past our neighbouring chunks
+	public static final int MAX_RADIUS = 16;
+
+	private static final char[] NO_TORCHES = new char[0];
+
+	private static boolean[] grid = new boolean[0];
+	private static boolean[] spread = new boolean[0];
+	private static boolean[] line = new boolean[128];
+
+	/**
+	 * Returns the offsets of every torch in the given block IDs
+	 */
+	public static char[] findTorches(short[] blocks)
+	{
+		if (BLOCK_TORCH == null)
+		{
+			return NO_TORCHES;
+		}
+		short torch = BLOCK_TORCH.id;
+		int count = 0;
+		for (int i = 0; i < blocks.length; i++)
+		{
+			if (blocks[i] == torch)
+			{
+				count++;
+			}
+		}
+		if (count == 0)
+		{
+			return NO_TORCHES;
+		}
+		char[] torches = new char[count];
+		count = 0;
+		for (int i = 0; i < blocks.length; i++)
+		{
+			if (blocks[i] == torch)
+			{
+				torches[count++] = (char) i;
+			}
+		}
+		return torches;
+	}
+
+	/**
+	 * Builds the field for the middle of a 3x3 block of chunks.
+	 *
+	 * @param chunks The chunks, indexed by (dx+1)*3 + (dz+1); any may be null
+	 * @param radius How far a torch reaches, from 1 to MAX_RADIUS
+	 * @return One bit per block, or null if no torch reaches the middle chunk
+	 */
+	public static long[] build(Chunk[] chunks, int radius)
+	{
+		int width = 16 + radius * 2;
+		int column = BlockStorage.COLUMN_HEIGHT;
+		int size = width * width * column;
+		if (grid.length < size)
+		{
+			grid = new boolean[size];
+			spread = new boolean[size];
+		}
+		else
+		{
+			Arrays.fill(grid, 0, size, false);
+		}
+
+		// Mark every torch that lands on our grid
+		boolean any = false;
+		char[] torches;
+		int tx, tz;
+		for (int dx = -1; dx <= 1; dx++)
+		{
+			for (int dz = -1; dz <= 1; dz++)
+			{
+				Chunk c = chunks[(dx + 1) * 3 + (dz + 1)];
+				if (c == null)
+				{
+					continue;
+				}
+				torches = c.getTorches();
+				for (int i = 0; i < torches.length; i++)
+				{
+					tx = torches[i] / BLOCKSPERCOLUMN + dx * 16 + radius;
+					tz = (torches[i] / BLOCKSPERROW) % 16 + dz * 16 + radius;
+					if (tx >= 0 && tx < width && tz >= 0 && tz < width)
+					{
+						grid[(tx * width + tz) * column + torches[i] % BLOCKSPERROW] = true;
+						any = true;
+					}
+				}
+			}
+		}
+		if (!any)
+		{
+			return null;
+		}
+
+		// Along Y, in place, for each column of the grid
+		for (int base = 0; base < size; base += column)
+		{
+			dilate(grid, base, 1, column, radius, line);
+			System.arraycopy(line, 0, grid, base, column);
+		}
+
+		// Along X, into spread, only for the rows over the middle chunk
+		boolean[] row = new boolean[width];
+		for (int z = 0; z < width; z++)
+		{
+			for (int y = 0; y < column; y++)
+			{
+				dilate(grid, z * column + y, width * column, width, radius, row);
+				for (int x = 0; x < 16; x++)
+				{
+					spread[((x + radius) * width + z) * column + y] = row[x + radius];
+				}
+			}
+		}
+
+		// And along Z, into the bits themselves
+		long[] bits = new long[16 * 16 * column / 64];
+		int offset;
+		for (int x = 0; x < 16; x++)
+		{
+			for (int y = 0; y < column; y++)
+			{
+				dilate(spread, (x + radius) * width * column + y, column, width, radius, row);
+				for (int z = 0; z < 16; z++)
+				{
+					if (row[z + radius])
+					{
+						offset = y + z * BLOCKSPERROW + x * BLOCKSPERCOLUMN;
+						bits[offset >> 6] |= 1L << offset;
+					}
+				}
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Sets out[i] for each of the count cells in a line (starting at start,
+	 * stride apart) if any cell within radius of it is set.  That's a scan
+	 * in each direction, tracking how far back the last set cell was.
+	 */
+	private static void dilate(boolean[] in, int start, int stride, int count, int radius, boolean[] out)
+	{
+		int since = radius + 1;
+		int i;
+		for (i = 0; i < count; i++)
+		{
+			since = (in[start + i * stride] ? 0 : since + 1);
+			out[i] = (since <= radius);
+		}
+		since = radius + 1;
+		for (i = count - 1; i >= 0; i--)
+		{
+			since = (in[start + i * stride] ? 0 : since + 1);
+			if (since <= radius)
+			{
+				out[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given block's bit is set in a field from build()
+	 */
+	public static boolean isSet(long[] bits, int offset)
+	{
+		return bits != null && (bits[offset >> 6] & (1L << offset)) != 0;
+	}
+}
@@ -45,8 +45,9 @@ import java.nio.FloatBuffer;
 import java.util.Map;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Collection;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.Enumeration;
 import java.util.Vector;
 import java.util.Collections;
@@ -121,6 +122,23 @@ public class XRay
 	private FirstPersonCameraController camera;
 	private boolean camera_lock = false;
 
+	// Live-follow mode: watch our region directory, and reload chunks as they're
+	// saved.  We wait for liveFollowSettleTime ms after the last change before
+	// doing anything, since Minecraft writes each region many times per save.
+	private boolean liveFollow = false;
+	private RegionWatcher regionWatcher = null;
+	private HashSet<Long> liveFollowRegions = new HashSet<Long>();
+	private final long liveFollowSettleTime = 1000;
+
+	// Reads chunks for us in the background; see loadPendingChunks()
+	private ChunkLoader chunkLoader = null;
+
+	// Reads ahead of the camera while we're moving
+	private ChunkPrefetcher chunkPrefetcher = null;
+
+	// Keeps our loaded chunks within chunk_memory_mb
+	private ChunkResidency chunkResidency = null;
+
 	// the current mouseX and mouseY on the screen
 	private int mouseX;
 	private int mouseY;
@@ -135,6 +153,9 @@ public class XRay
 	private Texture minimapArrowTexture;
 	private Graphics2D minimapGraphics;
 
+	// drawChunkToMap() decodes each chunk's blocks into here
+	private short[] minimapChunkData = new short[BLOCKSPERCOLUMN * 16];
+
 	// Whether or not we're showing bedrock/water/explored areas
 	private boolean render_bedrock = false;
 	private boolean render_water = true;
@@ -176,7 +197,7 @@ public class XRay
 	private int selectedWorld;
 
 	// the world chunks we still need to load
-	private LinkedList<Block> mapChunksToLoad;
+	private ChunkLoadQueue mapChunksToLoad;
 
 	// the current (selected) world number
 	private WorldInfo world = null;
@@ -215,7 +236,7 @@ public class XRay
 	private Texture renderDetailsTexture;
 	private int renderDetails_w = 160;
 	private int cur_renderDetails_h;
-	private int levelInfoTexture_h = 144;
+	private int levelInfoTexture_h = 228;
 
 	// light level
 	private int[] lightLevelEnd = new int[] { 30, 50, 70, 100, 130 };
@@ -238,8 +259,29 @@ public class XRay
 	private int minimap_trim_chunks = 10;
 	private int minimap_trim_chunk_distance = 64;
 
-	// How long are we allowed to spend loading chunks before we update?
-	private long max_chunkload_time = Sys.getTimerResolution() / 10; // a tenth of a second
+	// How long are we allowed to spend adopting loaded chunks before we update?
+	// The actual reading happens on chunkLoader's threads, so this only has to
+	// cover storing them and drawing them to the minimap.
+	private long max_chunkload_time = 5000000L; // five milliseconds, in nanoseconds
+
+	// Set when we're running a headless benchmark (see runHeadless()), in which
+	// case we never touch the display or GL, and time what we do in loadStats.
+	private boolean headless = false;
+	private LoadStats loadStats = null;
+
+	// How much compressed chunk data (in MB) we keep in memory, so that flying back
+	// over somewhere we've already been doesn't have to go to disk.  Can be set
+	// with COMPRESSED_CACHE_MB in the properties file.
+	private int compressed_cache_mb = 64;
+
+	// How much memory (in MB) our loaded chunks may use, including their display
+	// lists, before we start unloading the ones furthest away.  Can be set with
+	// CHUNK_MEMORY_MB in the properties file.
+	private int chunk_memory_mb = 256;
+
+	// How far (in blocks) from a torch the "explored" highlighting reaches.  Can
+	// be set with EXPLORED_RADIUS in the properties file.
+	private int explored_radius = 3;
 
 	// The current camera position that we're at
 	private CameraPreset currentPosition;
@@ -267,6 +309,12 @@ public class XRay
 	// lets start with the program
 	public static void main(String args[])
 	{
+		if (args.length > 0 && args[0].equals("-headless"))
+		{
+			runHeadless(args);
+			return;
+		}
+
 		Date now = new Date();
 		System.out.println("Starting " + windowTitle + " at " + now.toString());
 		System.out.println("LWJGL version " + Sys.getVersion());
@@ -342,11 +390,21 @@ public class XRay
 				// handle input given the timedelta (for mouse control)
 				handleInput(timeDelta);
 
+				// Read ahead of wherever we're heading
+				chunkPrefetcher.update(-camera.getPosition().x, -camera.getPosition().z, timeDelta, loadChunkRange);
+
+				// Pick up any changes to the world on disk
+				if (regionWatcher != null && initial_load_done)
+				{
+					checkLiveFollow();
+				}
+
 				// Load chunks if needed
 				if (mapChunksToLoad != null)
 				{
 					loadPendingChunks();
 				}
+				checkChunkResidency(false);
 
 				// render whatever we need to render
 				render(timeDelta);
@@ -354,7 +412,7 @@ public class XRay
 				// update our minimap if we need to (new chunks loaded, etc)
 				if (minimap_needs_updating)
 				{
-					minimapTexture.update();
+					updateMinimapTexture();
 					minimap_needs_updating = false;
 				}
 
@@ -388,6 +446,239 @@ public class XRay
 		}
 	}
 
+	/**
+	 * Runs a headless benchmark: opens a world without creating a display,
+	 * flies the camera along a scripted path (see CameraPath), and then
+	 * reports how well we kept up (see LoadStats).  Each frame goes through
+	 * the same chunk loading, meshing and minimap steps as the main loop,
+	 * except that Chunk's GL calls just get counted (see ChunkGL).  Usage:
+	 *
+	 *   XRay -headless <world dir> [-path line|spiral|teleport] [-frames n]
+	 *        [-speed blocks-per-sec] [-seed n]
+	 *
+	 * No Minecraft install is needed; without one, decorations get rendered
+	 * using blank textures.
+	 */
+	public static void runHeadless(String args[])
+	{
+		System.setProperty("java.awt.headless", "true");
+
+		String worldPath = null;
+		CameraPath.TYPE pathType = CameraPath.TYPE.LINE;
+		int frames = 1800;
+		float speed = 30.0f;
+		long seed = 0;
+		try
+		{
+			for (int i = 1; i < args.length; i++)
+			{
+				if (args[i].equals("-path") && i + 1 < args.length)
+				{
+					pathType = CameraPath.TYPE.valueOf(args[++i].toUpperCase());
+				}
+				else if (args[i].equals("-frames") && i + 1 < args.length)
+				{
+					frames = Integer.parseInt(args[++i]);
+				}
+				else if (args[i].equals("-speed") && i + 1 < args.length)
+				{
+					speed = Float.parseFloat(args[++i]);
+				}
+				else if (args[i].equals("-seed") && i + 1 < args.length)
+				{
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (worldPath == null && !args[i].startsWith("-"))
+				{
+					worldPath = args[i];
+				}
+				else
+				{
+					worldPath = null;
+					break;
+				}
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			worldPath = null;
+		}
+		if (worldPath == null)
+		{
+			System.err.println("Usage: XRay -headless <world dir> [-path line|spiral|teleport] [-frames n] [-speed blocks-per-sec] [-seed n]");
+			System.exit(1);
+		}
+
+		try
+		{
+			MinecraftConstants.initialize();
+		}
+		catch (BlockTypeLoadException e)
+		{
+			System.err.println("Error reading Minecraft block data: " + e.toString());
+			System.exit(1);
+		}
+
+		WorldInfo world = new WorldInfo();
+		try
+		{
+			world.finalizeWorldLocation(new File(worldPath));
+		}
+		catch (Exception e)
+		{
+			System.err.println("Unable to open world " + worldPath + ": " + e.toString());
+			System.exit(1);
+		}
+		if (!world.getLevelDatFile().exists())
+		{
+			System.err.println("No level.dat found in " + worldPath);
+			System.exit(1);
+		}
+
+		System.out.println("Headless run of " + world.getBasePath() + ": " + pathType.toString().toLowerCase() +
+				" path, " + frames + " frames at " + speed + " blocks/sec");
+		new XRay().runHeadless(world, new CameraPath(pathType, speed, seed), frames);
+	}
+
+	/**
+	 * The guts of runHeadless(), once we know what we're doing.
+	 */
+	private void runHeadless(WorldInfo world, CameraPath path, int frames)
+	{
+		headless = true;
+		ChunkGL.setHeadless(true);
+		loadStats = new LoadStats();
+
+		setPreferenceDefaults();
+		mineralToggle = new boolean[HIGHLIGHT_ORES.length];
+		for (int i = 0; i < mineralToggle.length; i++)
+		{
+			mineralToggle[i] = true;
+		}
+
+		camera = new FirstPersonCameraController(0, 0, 0);
+		minimapTexture = new Texture(new BufferedImage(minimap_dim, minimap_dim, TextureTool.TEXTURETYPE));
+		minimapTexture.initializeTextureCompatibleBuffer();
+		minimapGraphics = minimapTexture.getImage().createGraphics();
+		try
+		{
+			minecraftTexture = new Texture(MinecraftEnvironment.getMinecraftTexture());
+		}
+		catch (Exception e)
+		{
+			System.out.println("Minecraft textures not found, using blank ones");
+			minecraftTexture = new Texture(new BufferedImage(256, 256, TextureTool.TEXTURETYPE));
+		}
+		computeDecorationStats();
+		levelBlockX = Integer.MIN_VALUE;
+		levelBlockZ = Integer.MIN_VALUE;
+
+		// This queues up the initial load, which happens on our first frame
+		setMinecraftWorld(world);
+		path.start(camera);
+
+		// Frames are a fixed length, so that runs are comparable no matter
+		// how fast we manage to go.  Once the path is done we keep going until
+		// everything it asked for has loaded.
+		float timeDelta = 1.0f / 60.0f;
+		long frameStart;
+		loadStats.start();
+		for (int frame = 0; frame < frames || !mapChunksToLoad.isEmpty() || chunkLoader.getPendingCount() > 0; frame++)
+		{
+			frameStart = System.nanoTime();
+			if (frame < frames)
+			{
+				if (path.step(camera, timeDelta))
+				{
+					// Same as moveCameraToPosition()
+					initial_load_queued = false;
+					initial_load_done = false;
+					this.removeChunklistFromMap(level.removeAllChunksFromMinimap());
+				}
+				chunkPrefetcher.update(-camera.getPosition().x, -camera.getPosition().z, timeDelta, loadChunkRange);
+				triggerChunkLoads();
+			}
+			loadPendingChunks();
+			checkChunkResidency(false);
+			meshVisibleChunks();
+			if (minimap_needs_updating)
+			{
+				updateMinimapTexture();
+				minimap_needs_updating = false;
+			}
+			loadStats.frame.add(System.nanoTime() - frameStart);
+		}
+		loadStats.stop();
+		chunkLoader.stop();
+		chunkPrefetcher.stop();
+		loadStats.report();
+		System.out.println(String.format("Chunk cache:     %d hits, %d misses, %d chunks prefetched",
+					level.getCompressedChunkCache().getHitCount(), level.getCompressedChunkCache().getMissCount(),
+					chunkPrefetcher.getPrefetchedCount()));
+		checkChunkResidency(true);
+		System.out.println(String.format("Chunk memory:    %d chunks, %.1f MB blocks, %.1f MB NBT, %.1f MB lists (budget %d MB, %d unloaded)",
+					chunkResidency.getChunkCount(), chunkResidency.getBlockBytes() / 1048576.0,
+					chunkResidency.getTagBytes() / 1048576.0, chunkResidency.getDisplayListBytes() / 1048576.0,
+					chunk_memory_mb, chunkResidency.getEvictedCount()));
+		int[] encodings = new int[4];
+		String[] encodingNames = { "uniform", "byte", "palette", "runs" };
+		int loadedChunks = 0;
+		for (Chunk c : level.getLoadedChunks())
+		{
+			for (int i = 0; i < encodingNames.length; i++)
+			{
+				if (encodingNames[i].equals(c.getBlocks().getEncoding()))
+				{
+					encodings[i]++;
+				}
+			}
+			loadedChunks++;
+		}
+		System.out.println(String.format("Block storage:   %d uniform, %d byte, %d palette, %d runs (%.1f KB per chunk)",
+					encodings[0], encodings[1], encodings[2], encodings[3],
+					loadedChunks == 0 ? 0.0 : chunkResidency.getBlockBytes() / 1024.0 / loadedChunks));
+		System.out.println(String.format("Display lists:   %d in use, %d spare (%d generated, %d reused, %d deleted)",
+					DisplayListPool.getInUseCount(), DisplayListPool.getFreeCount(), DisplayListPool.getGeneratedCount(),
+					DisplayListPool.getReusedCount(), DisplayListPool.getDeletedCount()));
+
+		// Anything still in use once we've unloaded everything has leaked
+		level.clearAllChunks();
+		DisplayListPool.trim();
+		System.out.println(String.format("After unloading: %d display lists in use, %d live in GL",
+					DisplayListPool.getInUseCount(), ChunkGL.getListsGenerated() - ChunkGL.getListsDeleted()));
+	}
+
+	/**
+	 * Headless stand-in for the chunk-drawing part of render(): builds the
+	 * display lists of every visible chunk which needs it, and times each one.
+	 */
+	private void meshVisibleChunks()
+	{
+		currentLevelX = MinecraftLevel.getChunkX((int) -camera.getPosition().x);
+		currentLevelZ = MinecraftLevel.getChunkZ((int) -camera.getPosition().z);
+		long start;
+		boolean dirty;
+		for (int lx = currentLevelX - visible_chunk_range; lx < currentLevelX + visible_chunk_range; lx++)
+		{
+			for (int lz = currentLevelZ - visible_chunk_range; lz < currentLevelZ + visible_chunk_range; lz++)
+			{
+				Chunk k = level.getChunk(lx, lz);
+				if (k != null)
+				{
+					dirty = k.isDirty || k.isSelectedDirty;
+					start = System.nanoTime();
+					k.renderSolid(render_bedrock, render_water, highlight_explored);
+					k.renderSelected(this.mineralToggle);
+					k.renderPaintings();
+					if (dirty)
+					{
+						loadStats.chunkMesh.add(System.nanoTime() - start);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Loads our preferences. This also sets our default keybindings if they're
 	 * not overridden somewhere.
@@ -478,6 +769,14 @@ public class XRay
 		// Read in our saved option states, if we have 'em
 		this.loadOptionStates();
 
+		// Memory limits
+		compressed_cache_mb = Math.max(0, xray_properties.getIntProperty("COMPRESSED_CACHE_MB", compressed_cache_mb));
+		xray_properties.setIntProperty("COMPRESSED_CACHE_MB", compressed_cache_mb);
+		chunk_memory_mb = Math.max(1, xray_properties.getIntProperty("CHUNK_MEMORY_MB", chunk_memory_mb));
+		xray_properties.setIntProperty("CHUNK_MEMORY_MB", chunk_memory_mb);
+		explored_radius = Math.max(1, Math.min(TorchField.MAX_RADIUS, xray_properties.getIntProperty("EXPLORED_RADIUS", explored_radius)));
+		xray_properties.setIntProperty("EXPLORED_RADIUS", explored_radius);
+
 		// Save the file immediately, in case we picked up new defaults which weren't present previously
 		this.savePreferences();
 	}
@@ -520,18 +819,50 @@ public class XRay
 	}
 
 	/**
-	 * Loads any pending chunks, but won't exceed max_chunkload_time timer ticks
-	 * (unless we're doing the initial load).
+	 * Hands the chunks we most want next over to our ChunkLoader, as long as it
+	 * has room for them.
 	 */
-	public void loadPendingChunks()
+	private void submitQueuedChunks()
 	{
 		Block b;
-		long time = Sys.getTime();
+		while (chunkLoader.hasCapacity() && !mapChunksToLoad.isEmpty())
+		{
+			b = mapChunksToLoad.poll();
+			// System.out.println("Loading chunk " + b.x + "," + b.z);
+
+			// There may be some circumstances where a chunk we're going to load is already loaded.
+			// Mostly while moving diagonally, I think. I'm actually not convinced that it's worth
+			// checking for, as it doesn't happen TOO often.
+			if (level.getChunk(b.x, b.z) != null)
+			{
+				continue;
+			}
+			chunkLoader.submit(b.x, b.z);
+		}
+	}
+
+	/**
+	 * Adopts whichever chunks our ChunkLoader has finished reading, drawing them
+	 * to the minimap, and keeps it supplied with chunks from mapChunksToLoad,
+	 * nearest and most in view first.  The reading itself happens on the loader's
+	 * threads; we won't spend more than max_chunkload_time adopting them, unless
+	 * we're doing the initial load, in which case we wait for all of them.
+	 */
+	public void loadPendingChunks()
+	{
+		long time = System.nanoTime();
+		long chunkStart;
 		int total = 0;
 		int counter = 0;
-		if (!initial_load_done)
+
+		// Forget about anything we've left behind, and put the rest in order
+		mapChunksToLoad.update(cur_chunk_x, cur_chunk_z, camera.getYaw(), loadChunkRange);
+		chunkLoader.cancelOutside(cur_chunk_x, cur_chunk_z, loadChunkRange);
+
+		boolean show_progress = !initial_load_done && !headless;
+		if (show_progress)
 		{
-			total = mapChunksToLoad.size();
+			total = mapChunksToLoad.size() + chunkLoader.getPendingCount();
 			setOrthoOn();
 
 			GL11.glDisable(GL11.GL_BLEND);
@@ -568,31 +899,55 @@ public class XRay
 		boolean got_playerpos_chunk = false;
 		CameraPreset spawn = level.getSpawnPoint();
 		CameraPreset playerpos = level.getPlayerPosition();
-		Chunk c;
-		while (!mapChunksToLoad.isEmpty())
+		ChunkLoader.LoadedChunk loaded;
+		while (true)
 		{
-			// Load and draw the chunk
-			b = (Block) mapChunksToLoad.removeFirst();
-			// System.out.println("Loading chunk " + b.x + "," + b.z);
+			submitQueuedChunks();
 
-			// There may be some circumstances where a chunk we're going to load is already loaded.
-			// Mostly while moving diagonally, I think. I'm actually not convinced that it's worth
-			// checking for, as it doesn't happen TOO often.
-			c = level.getChunk(b.x, b.z);
-			if (c != null)
+			// Pick up the next chunk our loader threads have finished with.  During
+			// the initial load we wait for them, since there's nothing to show yet.
+			if (initial_load_done)
 			{
-				if (c.x == b.x && c.z == b.z)
-				{
-					continue;
-				}
+				loaded = chunkLoader.poll();
+			}
+			else
+			{
+				loaded = chunkLoader.take();
+			}
+			if (loaded == null)
+			{
+				break;
 			}
-			level.loadChunk(b.x, b.z);
-			drawChunkToMap(b.x, b.z);
-			if (spawn.block.cx == b.x && spawn.block.cz == b.z)
+			if (loaded.error != null)
+			{
+				throw loaded.error;
+			}
+
+			// If we've moved on (or jumped elsewhere) since this was asked for, it's
+			// no longer any use to us.
+			if (loaded.cancelled || Math.abs(loaded.x - cur_chunk_x) > loadChunkRange || Math.abs(loaded.z - cur_chunk_z) > loadChunkRange)
+			{
+				continue;
+			}
+
+			// Adopt and draw the chunk
+			chunkStart = System.nanoTime();
+			if (loaded.chunk != null)
+			{
+				level.adoptChunk(loaded.x, loaded.z, loaded.chunk);
+			}
+			drawChunkToMap(loaded.x, loaded.z);
+			if (loadStats != null)
+			{
+				loadStats.chunkLoad.add(loaded.loadTime);
+				loadStats.chunkAdopt.add(System.nanoTime() - chunkStart);
+				loadStats.chunkLatency.add(System.nanoTime() - loaded.submitTime);
+			}
+			if (spawn.block.cx == loaded.x && spawn.block.cz == loaded.z)
 			{
 				got_spawn_chunk = true;
 			}
-			if (playerpos.block.cx == b.x && playerpos.block.cz == b.z)
+			if (playerpos.block.cx == loaded.x && playerpos.block.cz == loaded.z)
 			{
 				got_playerpos_chunk = true;
 			}
@@ -604,7 +959,7 @@ public class XRay
 			if (!initial_load_done)
 			{
 				counter++;
-				if (counter % 5 == 0)
+				if (show_progress && counter % 5 == 0)
 				{
 					float progress = ((float) counter / (float) total);
 
@@ -640,19 +995,9 @@ public class XRay
 					Display.update();
 				}
 			}
-			else
-			{
-				// Otherwise (if our initial load is done), mark any existing adjacent chunks
-				// as dirty so that they re-render. This is needed so that we don't get gaps
-				// in our terrain because the adjacent chunks weren't ready yet.
-				level.markChunkAsDirty(b.x + 1, b.z);
-				level.markChunkAsDirty(b.x - 1, b.z);
-				level.markChunkAsDirty(b.x, b.z + 1);
-				level.markChunkAsDirty(b.x, b.z - 1);
-			}
 
 			// If we've taken too long, break out so the GUI can update
-			if (initial_load_done && Sys.getTime() - time > max_chunkload_time)
+			if (initial_load_done && System.nanoTime() - time > max_chunkload_time)
 			{
 				break;
 			}
@@ -665,7 +1010,7 @@ public class XRay
 		{
 			drawPlayerposMarkerToMinimap();
 		}
-		if (!initial_load_done)
+		if (show_progress)
 		{
 			GL11.glEnable(GL11.GL_BLEND);
 			GL11.glEnable(GL11.GL_TEXTURE_2D);
@@ -820,37 +1165,8 @@ public class XRay
 			minecraftTexture = TextureTool.allocateTexture(minecraftTextureImage, GL11.GL_NEAREST);
 			minecraftTexture.update();
 
-			// Get a list of block types organized by type
-			HashMap<BLOCK_TYPE, ArrayList<BlockType>> reverse_block_type_map = new HashMap<BLOCK_TYPE, ArrayList<BlockType>>();
-			for (BlockType block : blockCollection.getBlocksFull())
-			{
-				if (!reverse_block_type_map.containsKey(block.type))
-				{
-					reverse_block_type_map.put(block.type, new ArrayList<BlockType>());
-				}
-				reverse_block_type_map.get(block.type).add(block);
-			}
-
 			// Compute some information about some decorative textures
-			decorationStats = new HashMap<Integer, TextureDecorationStats>();
-			for (BLOCK_TYPE decBlockType : DECORATION_BLOCKS)
-			{
-				for (BlockType decBlock : reverse_block_type_map.get(decBlockType))
-				{
-					if (decBlock.texture_data_map != null)
-					{
-						for (int textureId : decBlock.texture_data_map.values())
-						{
-							decorationStats.put(textureId, new TextureDecorationStats(minecraftTexture, textureId));
-						}
-					}
-					else
-					{
-						int textureId = decBlock.tex_idx;
-						decorationStats.put(textureId, new TextureDecorationStats(minecraftTexture, textureId));
-					}
-				}
-			}
+			computeDecorationStats();
 
 			// painting textures
 			BufferedImage minecraftPaintingImage = MinecraftEnvironment.getMinecraftPaintings();
@@ -886,6 +1202,44 @@ public class XRay
 		Keyboard.enableRepeatEvents(false);
 	}
 
+	/**
+	 * Works out the bounds of our decorative textures (torches, flowers and
+	 * the like) from minecraftTexture, for Chunk to use while rendering.
+	 */
+	private void computeDecorationStats()
+	{
+		// Get a list of block types organized by type
+		HashMap<BLOCK_TYPE, ArrayList<BlockType>> reverse_block_type_map = new HashMap<BLOCK_TYPE, ArrayList<BlockType>>();
+		for (BlockType block : blockCollection.getBlocksFull())
+		{
+			if (!reverse_block_type_map.containsKey(block.type))
+			{
+				reverse_block_type_map.put(block.type, new ArrayList<BlockType>());
+			}
+			reverse_block_type_map.get(block.type).add(block);
+		}
+
+		decorationStats = new HashMap<Integer, TextureDecorationStats>();
+		for (BLOCK_TYPE decBlockType : DECORATION_BLOCKS)
+		{
+			for (BlockType decBlock : reverse_block_type_map.get(decBlockType))
+			{
+				if (decBlock.texture_data_map != null)
+				{
+					for (int textureId : decBlock.texture_data_map.values())
+					{
+						decorationStats.put(textureId, new TextureDecorationStats(minecraftTexture, textureId));
+					}
+				}
+				else
+				{
+					int textureId = decBlock.tex_idx;
+					decorationStats.put(textureId, new TextureDecorationStats(minecraftTexture, textureId));
+				}
+			}
+		}
+	}
+
 	private BufferedImage resizeImage(Image baseImage, int newWidth, int newHeight)
 	{
 		BufferedImage newImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_4BYTE_ABGR);
@@ -1126,10 +1480,17 @@ public class XRay
 	private void setMinecraftWorld(WorldInfo world)
 	{
 		this.world = world;
-		this.level = new MinecraftLevel(world, minecraftTexture, paintingTexture, HIGHLIGHT_ORES);
+		if (this.level != null)
+		{
+			this.level.clearAllChunks();
+		}
+		this.level = new MinecraftLevel(world, minecraftTexture, paintingTexture, HIGHLIGHT_ORES, compressed_cache_mb * 1024L * 1024L);
+		this.level.setTorchRadius(explored_radius);
+		this.updateRegionWatcher();
+		this.startChunkLoader();
 
 		// determine which chunks are available in this world
-		mapChunksToLoad = new LinkedList<Block>();
+		mapChunksToLoad = new ChunkLoadQueue();
 
 		moveCameraToPlayerPos();
 	}
@@ -1146,10 +1507,17 @@ public class XRay
 	private void setMinecraftWorld(WorldInfo world, FirstPersonCameraController camera)
 	{
 		this.world = world;
-		this.level = new MinecraftLevel(world, minecraftTexture, paintingTexture, HIGHLIGHT_ORES);
+		if (this.level != null)
+		{
+			this.level.clearAllChunks();
+		}
+		this.level = new MinecraftLevel(world, minecraftTexture, paintingTexture, HIGHLIGHT_ORES, compressed_cache_mb * 1024L * 1024L);
+		this.level.setTorchRadius(explored_radius);
+		this.updateRegionWatcher();
+		this.startChunkLoader();
 
 		// determine which chunks are available in this world
-		mapChunksToLoad = new LinkedList<Block>();
+		mapChunksToLoad = new ChunkLoadQueue();
 
 		this.camera = camera;
 		initial_load_queued = false;
@@ -1177,15 +1545,148 @@ public class XRay
 	}
 
 	/**
-	 * Calls moveCameraToPosition() with our current camera position, to invalidate
-	 * our chunk cache and trigger reloads from disk.
+	 * Reloads the world from disk.  For Beta 1.3 worlds this just re-reads the
+	 * chunks around us which have changed since we loaded them; otherwise it
+	 * rescans which chunks exist, and calls moveCameraToPosition() with our
+	 * current camera position, to invalidate our chunk cache and trigger reloads
+	 * from disk.
 	 */
 	private void reloadFromDisk()
 	{
+		if (level.supportsIncrementalReload() && initial_load_done)
+		{
+			HashSet<Long> regions = new HashSet<Long>();
+			addLoadedRegions(regions);
+			reloadChangedRegions(regions);
+			return;
+		}
+		level.rescanChunks();
 		Block block = new Block((int)camera.getPosition().x, (int)camera.getPosition().y, (int)camera.getPosition().z);
 		this.moveCameraToPosition(new CameraPreset(-1, "current location", block, camera.getYaw()-180, camera.getPitch()));
 	}
 
+	/**
+	 * Adds the keys of all regions which overlap our loaded area to the given
+	 * collection.
+	 */
+	private void addLoadedRegions(Collection<Long> regions)
+	{
+		for (int rx = (cur_chunk_x - loadChunkRange) >> 5; rx <= (cur_chunk_x + loadChunkRange) >> 5; rx++)
+		{
+			for (int rz = (cur_chunk_z - loadChunkRange) >> 5; rz <= (cur_chunk_z + loadChunkRange) >> 5; rz++)
+			{
+				regions.add(MinecraftLevel.chunkKey(rx, rz));
+			}
+		}
+	}
+
+	/**
+	 * Reloads any chunks within our loaded area which have changed on disk, in
+	 * the given regions.  Chunks are replaced in place, and only they and their
+	 * neighbors get re-rendered.  If a chunk fails to load (because we caught
+	 * Minecraft halfway through writing it, say) we keep the old copy, and will
+	 * try again the next time its region changes.
+	 *
+	 * @param regions Region keys, from MinecraftLevel.chunkKey(regionX, regionZ)
+	 */
+	private void reloadChangedRegions(Collection<Long> regions)
+	{
+		ArrayList<Chunk> removed = new ArrayList<Chunk>();
+		for (Long regionKey : regions)
+		{
+			for (Block b : level.refreshRegion((int) (regionKey >> 32), (int) regionKey.longValue()))
+			{
+				if (Math.abs(b.x - cur_chunk_x) > loadChunkRange || Math.abs(b.z - cur_chunk_z) > loadChunkRange)
+				{
+					continue;
+				}
+				if (level.loadChunk(b.x, b.z) != null)
+				{
+					drawChunkToMap(b.x, b.z);
+				}
+				else if (!level.chunkExists(b.x, b.z))
+				{
+					Chunk c = level.getChunk(b.x, b.z);
+					if (c != null)
+					{
+						removed.add(c);
+						level.clearChunk(b.x, b.z);
+					}
+					// The chunks around this one have lost their neighbour for good,
+					// so they need re-rendering too.  (When a chunk's been replaced
+					// instead, loadChunk() sees to that.)
+					level.markChunkAsDirty(b.x + 1, b.z);
+					level.markChunkAsDirty(b.x - 1, b.z);
+					level.markChunkAsDirty(b.x, b.z + 1);
+					level.markChunkAsDirty(b.x, b.z - 1);
+				}
+				else
+				{
+					continue;
+				}
+				minimap_needs_updating = true;
+			}
+		}
+		removeChunklistFromMap(removed);
+	}
+
+	/**
+	 * Starts (or stops) watching our world's region directory, depending on
+	 * whether live-follow is turned on.
+	 */
+	private void updateRegionWatcher()
+	{
+		if (regionWatcher != null)
+		{
+			regionWatcher.stop();
+			regionWatcher = null;
+		}
+		liveFollowRegions.clear();
+		if (liveFollow && level != null && level.supportsIncrementalReload())
+		{
+			regionWatcher = RegionWatcher.start(world);
+		}
+	}
+
+	/**
+	 * Starts a ChunkLoader and ChunkPrefetcher for our current level, stopping
+	 * the old ones (and dropping anything they were still reading) if there were
+	 * any.
+	 */
+	private void startChunkLoader()
+	{
+		if (chunkLoader != null)
+		{
+			chunkLoader.stop();
+		}
+		if (chunkPrefetcher != null)
+		{
+			chunkPrefetcher.stop();
+		}
+		chunkLoader = new ChunkLoader(level, 0);
+		chunkPrefetcher = new ChunkPrefetcher(level);
+		chunkResidency = new ChunkResidency(chunk_memory_mb * 1024L * 1024L);
+	}
+
+	/**
+	 * Collects any regions our RegionWatcher has seen change, and once things
+	 * have settled down, reloads the chunks in them which changed.
+	 */
+	private void checkLiveFollow()
+	{
+		regionWatcher.drainChangedRegions(liveFollowRegions);
+		if (regionWatcher.checkOverflow())
+		{
+			addLoadedRegions(liveFollowRegions);
+		}
+		if (liveFollowRegions.isEmpty() || System.currentTimeMillis() - regionWatcher.getLastEventTime() < liveFollowSettleTime)
+		{
+			return;
+		}
+		reloadChangedRegions(liveFollowRegions);
+		liveFollowRegions.clear();
+	}
+
 	/**
 	 * Moves the camera to the position specified by the JumpDialog.
 	 */
@@ -1275,18 +1776,17 @@ public class XRay
 						tempchunk = level.getChunk(lx, lz);
 						if (tempchunk != null)
 						{
-							if (tempchunk.x == lx && tempchunk.z == lz)
+							if (!tempchunk.isOnMinimap)
 							{
-								if (!tempchunk.isOnMinimap)
-								{
-									drawChunkToMap(tempchunk.x, tempchunk.z);
-									// minimap_changed = true;
-								}
-								continue;
+								drawChunkToMap(tempchunk.x, tempchunk.z);
+								// minimap_changed = true;
 							}
-							level.clearChunk(lx, lz);
+							continue;
+						}
+						if (level.chunkExists(lx, lz))
+						{
+							mapChunksToLoad.add(new Block(lx, 0, lz));
 						}
-						mapChunksToLoad.add(new Block(lx, 0, lz));
 					}
 				}
 			}
@@ -1313,18 +1813,17 @@ public class XRay
 						tempchunk = level.getChunk(lx, lz);
 						if (tempchunk != null)
 						{
-							if (tempchunk.x == lx && tempchunk.z == lz)
+							if (!tempchunk.isOnMinimap)
 							{
-								if (!tempchunk.isOnMinimap)
-								{
-									drawChunkToMap(tempchunk.x, tempchunk.z);
-									// minimap_changed = true;
-								}
-								continue;
+								drawChunkToMap(tempchunk.x, tempchunk.z);
+								// minimap_changed = true;
 							}
-							level.clearChunk(lx, lz);
+							continue;
+						}
+						if (level.chunkExists(lx, lz))
+						{
+							mapChunksToLoad.add(new Block(lx, 0, lz));
 						}
-						mapChunksToLoad.add(new Block(lx, 0, lz));
 					}
 				}
 			}
@@ -1334,8 +1833,10 @@ public class XRay
 			total_dZ += dz;
 			ArrayList<Chunk> trimList = new ArrayList<Chunk>();
 			int i;
+			boolean trimmed = false;
 			if (Math.abs(total_dX) >= minimap_trim_chunks)
 			{
+				trimmed = true;
 				if (total_dX < 0)
 				{
 					// System.out.println("Clearing X from " + (chunkX-minimap_trim_chunk_distance+minimap_trim_chunks) + " to " + (chunkX-minimap_trim_chunk_distance));
@@ -1357,6 +1858,7 @@ public class XRay
 			}
 			if (Math.abs(total_dZ) >= minimap_trim_chunks)
 			{
+				trimmed = true;
 				if (total_dZ < 0)
 				{
 					// System.out.println("Clearing Z from " + (chunkZ-minimap_trim_chunk_distance+minimap_trim_chunks) + " to " + (chunkZ-minimap_trim_chunk_distance));
@@ -1377,25 +1879,76 @@ public class XRay
 				}
 			}
 
+			// While we're at it, unload any chunks we've left that far behind
+			if (trimmed)
+			{
+				unloadDistantChunks(chunkX, chunkZ, trimList);
+			}
+
 			removeChunklistFromMap(trimList);
 		}
 		else
 		{
+			ArrayList<Chunk> trimList = new ArrayList<Chunk>();
+			unloadDistantChunks(chunkX, chunkZ, trimList);
+			removeChunklistFromMap(trimList);
+
 			// System.out.println("Loading world from X: " + (chunkX-loadChunkRange) + " - " + (chunkX+loadChunkRange) + ", Z: " + (chunkZ-loadChunkRange) + " - " + (chunkZ+loadChunkRange));
 			for (int lx = chunkX - loadChunkRange; lx <= chunkX + loadChunkRange; lx++)
 			{
 				for (int lz = chunkZ - loadChunkRange; lz <= chunkZ + loadChunkRange; lz++)
 				{
 					level.clearChunk(lx, lz);
-					mapChunksToLoad.add(new Block(lx, 0, lz));
+					if (level.chunkExists(lx, lz))
+					{
+						mapChunksToLoad.add(new Block(lx, 0, lz));
+					}
 				}
 			}
+			level.prefetchChunks(mapChunksToLoad);
 			initial_load_queued = true;
 		}
 		cur_chunk_x = chunkX;
 		cur_chunk_z = chunkZ;
 	}
 
+	/**
+	 * Unloads any chunks further than minimap_trim_chunk_distance from the given
+	 * chunk, adding any which were still on the minimap to trimList, so that they
+	 * can be cleared off it.
+	 */
+	private void unloadDistantChunks(int chunkX, int chunkZ, ArrayList<Chunk> trimList)
+	{
+		addUnloadedToTrimList(level.clearChunksOutside(chunkX, chunkZ, minimap_trim_chunk_distance), trimList);
+	}
+
+	/**
+	 * Adds whichever of the given (unloaded) chunks are still on the minimap to
+	 * trimList, so that they can be cleared off it.
+	 */
+	private void addUnloadedToTrimList(ArrayList<Chunk> unloaded, ArrayList<Chunk> trimList)
+	{
+		for (Chunk c : unloaded)
+		{
+			if (c.isOnMinimap)
+			{
+				c.isOnMinimap = false;
+				trimList.add(c);
+			}
+		}
+	}
+
+	/**
+	 * Has our ChunkResidency unload chunks if we're over our memory budget (which
+	 * it only actually checks every so often, unless force is set).
+	 */
+	private void checkChunkResidency(boolean force)
+	{
+		ArrayList<Chunk> trimList = new ArrayList<Chunk>();
+		addUnloadedToTrimList(chunkResidency.check(level, cur_chunk_x, cur_chunk_z, loadChunkRange, force), trimList);
+		removeChunklistFromMap(trimList);
+	}
+
 	/***
 	 * handles all input on all screens
 	 * 
@@ -1550,6 +2103,13 @@ public class XRay
 					// Reload from disk
 					reloadFromDisk();
 				}
+				else if (key == key_mapping.get(KEY_ACTIONS.TOGGLE_LIVE_FOLLOW))
+				{
+					// Toggle following changes to the world on disk
+					liveFollow = !liveFollow;
+					updateRegionWatcher();
+					updateRenderDetails();
+				}
 				else if (key == key_mapping.get(KEY_ACTIONS.LIGHT_INCREASE))
 				{
 					// Increase light level
@@ -1863,7 +2423,7 @@ public class XRay
 		g.drawOval(sx - 6, sy - 6, 11, 11);
 		g.drawLine(sx - 8, sy, sx + 8, sy);
 		g.drawLine(sx, sy - 8, sx, sy + 8);
-		minimapTexture.update();
+		updateMinimapTexture();
 	}
 
 	/***
@@ -1882,7 +2442,7 @@ public class XRay
 		g.drawOval(px - 6, py - 6, 11, 11);
 		g.drawLine(px - 8, py, px + 8, py);
 		g.drawLine(px, py - 8, px, py + 8);
-		minimapTexture.update();
+		updateMinimapTexture();
 	}
 
 	/***
@@ -2063,6 +2623,33 @@ public class XRay
 		g.setColor(Color.RED.darker());
 		g.drawString(Integer.toString((int) (heapSize / 1024 / 1024)) + " MB", 20, 22 + 16 + 32 + 16 + 25 + 20);
 
+		// What our loaded chunks are costing us, as of ChunkResidency's last check
+		int memoryY = 22 + 16 + 32 + 16 + 25 + 20 + 20;
+		g.setColor(Color.BLACK);
+		g.drawString("Chunks:", labelX, memoryY);
+		g.setColor(Color.RED.darker());
+		g.drawString(Integer.toString(chunkResidency.getChunkCount()), valueX, memoryY);
+
+		g.setColor(Color.BLACK);
+		g.drawString("Blocks:", labelX, memoryY + 16);
+		g.setColor(Color.RED.darker());
+		g.drawString(Long.toString(chunkResidency.getBlockBytes() / 1024 / 1024) + " MB", valueX, memoryY + 16);
+
+		g.setColor(Color.BLACK);
+		g.drawString("NBT:", labelX, memoryY + 32);
+		g.setColor(Color.RED.darker());
+		g.drawString(Long.toString(chunkResidency.getTagBytes() / 1024 / 1024) + " MB", valueX, memoryY + 32);
+
+		g.setColor(Color.BLACK);
+		g.drawString("Lists:", labelX, memoryY + 48);
+		g.setColor(Color.RED.darker());
+		g.drawString(Long.toString(chunkResidency.getDisplayListBytes() / 1024 / 1024) + " MB", valueX, memoryY + 48);
+
+		g.setColor(Color.BLACK);
+		g.drawString("Budget:", labelX, memoryY + 64);
+		g.setColor(Color.RED.darker());
+		g.drawString(Long.toString(chunkResidency.getTotalBytes() / 1024 / 1024) + "/" + chunk_memory_mb + " MB", valueX, memoryY + 64);
+
 		levelInfoTexture.update();
 	}
 
@@ -2202,6 +2789,18 @@ public class XRay
 			line_count++;
 			infoboxTextLabel(g, x_off, line_count * line_h, "Vertical Lock: ", Color.BLACK, DETAILFONT, "On", Color.green.darker(), DETAILVALUEFONT);
 		}
+		if (liveFollow)
+		{
+			line_count++;
+			if (regionWatcher != null)
+			{
+				infoboxTextLabel(g, x_off, line_count * line_h, "Live Follow: ", Color.BLACK, DETAILFONT, "On", Color.green.darker(), DETAILVALUEFONT);
+			}
+			else
+			{
+				infoboxTextLabel(g, x_off, line_count * line_h, "Live Follow: ", Color.BLACK, DETAILFONT, "Unavailable", Color.RED.darker(), DETAILVALUEFONT);
+			}
+		}
 		cur_renderDetails_h = (line_count + 1) * line_h - 8;
 		g.setColor(Color.BLUE);
 		g.setStroke(new BasicStroke(2));
@@ -2511,7 +3110,11 @@ public class XRay
 		// minimapGraphics.setColor(new Color(0f, 0f, 0f, 1f));
 		// minimapGraphics.setComposite(AlphaComposite.Src);
 		minimapGraphics.fillRect(getMinimapBaseX(z) - 15, getMinimapBaseY(x), 16, 16);
-		level.getChunk(x, z).isOnMinimap = false;
+		Chunk c = level.getChunk(x, z);
+		if (c != null)
+		{
+			c.isOnMinimap = false;
+		}
 	}
 
 	/**
@@ -2530,6 +3133,24 @@ public class XRay
 			minimap_changed = true;
 		}
 		if (minimap_changed)
+		{
+			updateMinimapTexture();
+		}
+	}
+
+	/**
+	 * Pushes our minimap image out to its texture.  In headless mode there's
+	 * no texture, but we still do the conversion, since it's part of the cost.
+	 */
+	private void updateMinimapTexture()
+	{
+		if (headless)
+		{
+			long start = System.nanoTime();
+			minimapTexture.updateTextureCompatibleBuffer();
+			loadStats.minimap.add(System.nanoTime() - start);
+		}
+		else
 		{
 			minimapTexture.update();
 		}
@@ -2549,15 +3170,19 @@ public class XRay
 		{
 			c.isOnMinimap = true;
 		}
-		short[] chunkData = level.getChunkData(x, z);
+		if (c == null)
+		{
+			// Nothing to draw; an empty chunk wouldn't have colored anything in
+			return;
+		}
+		ChunkSections sections = c.getSections();
+		short[] chunkData = minimapChunkData;
+		c.getBlocks().decode(chunkData);
 
 		int base_x = getMinimapBaseX(z);
 		int base_y = getMinimapBaseY(x);
 
 		boolean in_nether = world.isDimension(-1);
-		boolean found_air;
-		boolean found_solid;
-		boolean drew_block;
 
 		Color blockColor;
 
@@ -2566,60 +3191,83 @@ public class XRay
 		{
 			for (int xx = 0; xx < 16; xx++)
 			{
-				// determine the top most visible block
-				found_air = !in_nether;
-				drew_block = false;
-				found_solid = false;
-				for (int yy = 127; yy >= 0; yy--)
+				blockColor = getMinimapColumnColor(chunkData, xx, zz, sections.getColumnMax((xx * 16) + zz), in_nether);
+				if (blockColor != null)
 				{
-					int blockOffset = yy + (zz * 128) + (xx * 128 * 16);
-					short blockData = chunkData[blockOffset];
+					// Previously we were using g.drawLine() here, but a minute-or-so's worth of investigating
+					// didn't uncover a way to force that to be pixel-precise (the color would often bleed over
+					// into adjoining pixels), so we're using g.fillRect() instead, which actually looks like it
+					// is probably a faster operation anyway. I'm sure there'd have been a way to get drawLine
+					// to behave, but c'est la vie!
+					g.setColor(blockColor);
+					g.fillRect(base_x - zz, base_y + xx, 1, 1);
+				}
+			}
+		}
+	}
 
-					if (blockData > 0)
+	/***
+	 * Finds the color that a single column of a chunk should have on the
+	 * minimap: the top-most block which has air above it.  In the Nether
+	 * we skip past the ceiling first, and fall back to bedrock so that we
+	 * don't leave holes in the map.
+	 *
+	 * @param chunkData The chunk's block data
+	 * @param xx The column's X position inside the chunk
+	 * @param zz The column's Z position inside the chunk
+	 * @param in_nether Whether we're drawing a Nether map
+	 * @return The color to draw, or null if nothing should be drawn
+	 */
+	public static Color getMinimapColumnColor(short[] chunkData, int xx, int zz, boolean in_nether)
+	{
+		return getMinimapColumnColor(chunkData, xx, zz, 127, in_nether);
+	}
+
+	/***
+	 * As above, but starting from the given height, above which the column
+	 * is known to be all air (see ChunkSections.getColumnMax()).
+	 */
+	public static Color getMinimapColumnColor(short[] chunkData, int xx, int zz, int top, boolean in_nether)
+	{
+		// determine the top most visible block
+		boolean found_air = !in_nether;
+		boolean found_solid = false;
+		int base = (zz * 128) + (xx * 128 * 16);
+		for (int yy = top; yy >= 0; yy--)
+		{
+			short blockData = chunkData[base + yy];
+
+			if (blockData > 0)
+			{
+				if (in_nether && !found_solid)
+				{
+					found_air = false;
+				}
+				found_solid = true;
+				if (found_air)
+				{
+					if (MinecraftConstants.blockArray[blockData] == null)
 					{
-						if (in_nether && !found_solid)
-						{
-							found_air = false;
-						}
-						found_solid = true;
-						if (found_air)
-						{
-							if (MinecraftConstants.blockArray[blockData] == null)
-							{
-								blockColor = BLOCK_UNKNOWN.color;
-							}
-							else
-							{
-								blockColor = MinecraftConstants.blockArray[blockData].color;
-							}
-							if (blockColor != null)
-							{
-								// Previously we were using g.drawLine() here, but a minute-or-so's worth of investigating
-								// didn't uncover a way to force that to be pixel-precise (the color would often bleed over
-								// into adjoining pixels), so we're using g.fillRect() instead, which actually looks like it
-								// is probably a faster operation anyway. I'm sure there'd have been a way to get drawLine
-								// to behave, but c'est la vie!
-								g.setColor(blockColor);
-								g.fillRect(base_x - zz, base_y + xx, 1, 1);
-							}
-							drew_block = true;
-							break;
-						}
+						return BLOCK_UNKNOWN.color;
 					}
 					else
 					{
-						found_air = true;
+						return MinecraftConstants.blockArray[blockData].color;
 					}
 				}
-
-				// Make sure we don't have holes in our Nether minimap
-				if (in_nether && found_solid && !drew_block)
-				{
-					g.setColor(MinecraftConstants.BLOCK_BEDROCK.color);
-					g.fillRect(base_x - zz, base_y + xx, 1, 1);
-				}
 			}
+			else
+			{
+				found_air = true;
+			}
+		}
+
+		// Make sure we don't have holes in our Nether minimap
+		if (in_nether && found_solid)
+		{
+			return MinecraftConstants.BLOCK_BEDROCK.color;
 		}
+		return null;
 	}
 
 	/***
@@ -2655,6 +3303,7 @@ public class XRay
 		xray_properties.setBooleanProperty("STATE_BEDROCK", render_bedrock);
 		xray_properties.setBooleanProperty("STATE_WATER", render_water);
 		xray_properties.setBooleanProperty("STATE_CAMERA_LOCK", camera_lock);
+		xray_properties.setBooleanProperty("STATE_LIVE_FOLLOW", liveFollow);
 		xray_properties.setBooleanProperty("STATE_EXPLORED", highlight_explored);
 		xray_properties.setBooleanProperty("STATE_LIGHTING", lightMode);
 		xray_properties.setBooleanProperty("STATE_HIGHLIGHT_ORES", highlightOres);
@@ -2679,6 +3328,7 @@ public class XRay
 		render_bedrock = xray_properties.getBooleanProperty("STATE_BEDROCK", render_bedrock);
 		render_water = xray_properties.getBooleanProperty("STATE_WATER", render_water);
 		camera_lock = xray_properties.getBooleanProperty("STATE_CAMERA_LOCK", camera_lock);
+		liveFollow = xray_properties.getBooleanProperty("STATE_LIVE_FOLLOW", liveFollow);
 		highlight_explored = xray_properties.getBooleanProperty("STATE_EXPLORED", highlight_explored);
 		lightMode = xray_properties.getBooleanProperty("STATE_LIGHTING", lightMode);
 		highlightOres = xray_properties.getBooleanProperty("STATE_HIGHLIGHT_ORES", highlightOres);
@@ -2703,6 +3353,18 @@ public class XRay
 	private void cleanup()
 	{
 		JumpDialog.closeDialog();
+		if (regionWatcher != null)
+		{
+			regionWatcher.stop();
+		}
+		if (chunkLoader != null)
+		{
+			chunkLoader.stop();
+		}
+		if (chunkPrefetcher != null)
+		{
+			chunkPrefetcher.stop();
+		}
 		Display.destroy();
 	}
 
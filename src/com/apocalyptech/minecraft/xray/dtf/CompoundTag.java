@@ -27,21 +27,66 @@
 package com.apocalyptech.minecraft.xray.dtf;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 public class CompoundTag extends Tag {
+	// Compounds bigger than this get a name index the first time they're searched;
+	// for smaller ones a straight scan is just as quick.
+	private static final int INDEX_THRESHOLD = 8;
+
 	public ArrayList<Tag> value;
+
+	// Built lazily by getTagWithName(), and rebuilt if value changes size
+	private HashMap<String, Tag> index;
+	private int indexedSize;
+
 	public CompoundTag(String name, ArrayList<Tag> value) {
 		this.name = name;
 		this.value = value;
 	}
 	public Tag getTagWithName(String name) {
-		for(Tag t : value) {
+		int size = value.size();
+		if (size > INDEX_THRESHOLD) {
+			if (index == null || indexedSize != size) {
+				buildIndex();
+			}
+			return index.get(name);
+		}
+		// Tag names read by DTFReader are interned, so identity usually matches
+		for(int i=0; i<size; i++) {
+			Tag t = value.get(i);
+			if(t.name == name) {
+				return t;
+			}
+		}
+		for(int i=0; i<size; i++) {
+			Tag t = value.get(i);
 			if(t.name != null && t.name.equals(name)) {
 				return t;
 			}
 		}
 		return null;
 	}
+	// Removes (and returns) the first tag with the given name
+	public Tag removeTagWithName(String name) {
+		Tag t = getTagWithName(name);
+		if (t != null) {
+			value.remove(t);
+			index = null;
+		}
+		return t;
+	}
+	private void buildIndex() {
+		index = new HashMap<String, Tag>(value.size() * 2);
+		// Iterate backwards so that the first of any duplicated names wins, as with the scan
+		for(int i=value.size()-1; i>=0; i--) {
+			Tag t = value.get(i);
+			if(t.name != null) {
+				index.put(t.name, t);
+			}
+		}
+		indexedSize = value.size();
+	}
 	public String toString(int tab) {
 		String f = tab(tab);
 		f += "TAG_Compound(\"" + name + "\")\n";
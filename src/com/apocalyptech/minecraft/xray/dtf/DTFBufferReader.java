@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.dtf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Reads DTF data straight out of a ByteBuffer (such as the already-inflated
+ * chunk data from ChunkInflater.inflateToBuffer()), rather than through a
+ * DataInputStream.  Produces exactly the same tags as DTFReader, including
+ * the Blocks-as-shorts special case, but primitives are plain buffer reads
+ * instead of a chain of stream calls each, and array tags are copied out of
+ * the buffer just once: Blocks gets widened straight into its short[], with
+ * no intermediate byte[].
+ * 
+ * Array tags can't just be views into the buffer, since the buffers we're
+ * handed are generally reused for the next chunk.
+ */
+public class DTFBufferReader {
+	public static Tag readTagData(ByteBuffer data) throws IOException {
+		return readTagData(data, null);
+	}
+
+	/**
+	 * Reads a tag from the given buffer, keeping only those tags which match the
+	 * given projection (or everything, if it's null).  The buffer's own position
+	 * isn't changed.
+	 */
+	public static Tag readTagData(ByteBuffer data, TagProjection projection) throws IOException {
+		ByteBuffer buf = data.duplicate();
+		buf.order(ByteOrder.BIG_ENDIAN);
+		try {
+			if(buf.hasRemaining()) {
+				byte type = buf.get();
+				if(type != 0) {
+					String name = DTFReader.internName(readString(buf));
+					return readTag(type, name, buf, projection);
+				}
+			}
+			return null;
+		} catch (BufferUnderflowException e) {
+			throw new EOFException();
+		} catch (IllegalArgumentException e) {
+			// Thrown by position() if a length field sends us off the end
+			throw new EOFException();
+		}
+	}
+
+	public static Tag readTag(byte tagType, String name, ByteBuffer buf, TagProjection projection) throws IOException {
+		if (projection != null && projection.keepsAll()) {
+			projection = null;
+		}
+		switch(tagType) {
+			case 0: // end
+				return new EndTag();
+			case 1:
+				return new ByteTag(name, buf.get());
+			case 2:
+				return new ShortTag(name, buf.getShort());
+			case 3:
+				return new IntTag(name, buf.getInt());
+			case 4:
+				return new LongTag(name, buf.getLong());
+			case 5:
+				return new FloatTag(name, buf.getFloat());
+			case 6:
+				return new DoubleTag(name, buf.getDouble());
+			case 7:
+				int len = buf.getInt();
+				if (len < 0 || len > buf.remaining()) {
+					throw new EOFException();
+				}
+				// See DTFReader for why Blocks are stored as shorts
+				if (name.equals("Blocks")) {
+					short[] data = new short[len];
+					if (buf.hasArray()) {
+						byte[] array = buf.array();
+						int start = buf.arrayOffset() + buf.position();
+						for (int i=0; i<len; i++) {
+							data[i] = (short)(array[start+i] & 0xFF);
+						}
+						buf.position(buf.position() + len);
+					} else {
+						for (int i=0; i<len; i++) {
+							data[i] = (short)(buf.get() & 0xFF);
+						}
+					}
+					return new ShortArrayTag(name, data);
+				} else {
+					byte[] data = new byte[len];
+					buf.get(data);
+					return new ByteArrayTag(name, data);
+				}
+			case 8:
+				return new StringTag(name, readString(buf));
+			case 9:
+				byte type = buf.get();
+				int listLength = buf.getInt();
+				if (listLength < 0) {
+					throw new IOException("Negative list length " + listLength);
+				}
+
+				// Lists of numbers get stored as plain arrays; see ListTag.  Empty
+				// lists (which Minecraft usually writes as byte lists, whatever they're
+				// meant to hold) stay as an empty ArrayList so that value still works.
+				if (listLength > 0) {
+					switch(type) {
+						case 1:
+							byte[] bytes = new byte[checkLength(buf, listLength, 1)];
+							buf.get(bytes);
+							return new ListTag(name, bytes);
+						case 3:
+							int[] ints = new int[checkLength(buf, listLength, 4)];
+							buf.asIntBuffer().get(ints);
+							buf.position(buf.position() + listLength * 4);
+							return new ListTag(name, ints);
+						case 5:
+							float[] floats = new float[checkLength(buf, listLength, 4)];
+							buf.asFloatBuffer().get(floats);
+							buf.position(buf.position() + listLength * 4);
+							return new ListTag(name, floats);
+						case 6:
+							double[] doubles = new double[checkLength(buf, listLength, 8)];
+							buf.asDoubleBuffer().get(doubles);
+							buf.position(buf.position() + listLength * 8);
+							return new ListTag(name, doubles);
+					}
+				}
+
+				ArrayList<Tag> list = new ArrayList<Tag>(Math.min(listLength, buf.remaining()));
+				for(int i=0; i<listLength; i++) {
+					list.add(readTag(type, "", buf, projection));
+				}
+				return new ListTag(name, list);
+			case 10:
+				ArrayList<Tag> compound = new ArrayList<Tag>();
+				while((type = buf.get()) != 0) {
+					String tagName = DTFReader.internName(readString(buf));
+					if (projection == null) {
+						compound.add(readTag(type, tagName, buf, null));
+					} else {
+						TagProjection childProjection = projection.child(tagName);
+						if (childProjection == null) {
+							skipTag(type, buf);
+						} else {
+							compound.add(readTag(type, tagName, buf, childProjection));
+						}
+					}
+				}
+				return new CompoundTag(name, compound);
+		}
+		return null;
+	}
+
+	/**
+	 * Moves past the payload of a tag of the given type.
+	 */
+	public static void skipTag(byte tagType, ByteBuffer buf) throws IOException {
+		switch(tagType) {
+			case 0:
+				return;
+			case 1:
+				skip(buf, 1);
+				return;
+			case 2:
+				skip(buf, 2);
+				return;
+			case 3:
+			case 5:
+				skip(buf, 4);
+				return;
+			case 4:
+			case 6:
+				skip(buf, 8);
+				return;
+			case 7:
+				skip(buf, buf.getInt());
+				return;
+			case 8:
+				skip(buf, buf.getShort() & 0xFFFF);
+				return;
+			case 9:
+				byte type = buf.get();
+				int listLength = buf.getInt();
+				for (int i=0; i<listLength; i++) {
+					skipTag(type, buf);
+				}
+				return;
+			case 10:
+				while((type = buf.get()) != 0) {
+					skip(buf, buf.getShort() & 0xFFFF);
+					skipTag(type, buf);
+				}
+				return;
+		}
+		throw new IOException("Unknown tag type " + tagType);
+	}
+
+	/**
+	 * Makes sure there's room in the buffer for count elements of the given size,
+	 * so that a corrupt length can't have us allocating some enormous array.
+	 */
+	private static int checkLength(ByteBuffer buf, int count, int size) throws IOException {
+		if ((long) count * size > buf.remaining()) {
+			throw new EOFException();
+		}
+		return count;
+	}
+
+	private static void skip(ByteBuffer buf, int count) throws IOException {
+		if (count < 0 || count > buf.remaining()) {
+			throw new EOFException();
+		}
+		buf.position(buf.position() + count);
+	}
+
+	/**
+	 * Decodes a string in Java's "modified UTF-8", as written by
+	 * DataOutputStream.writeUTF().
+	 */
+	private static String readString(ByteBuffer buf) throws IOException {
+		int len = buf.getShort() & 0xFFFF;
+		if (len > buf.remaining()) {
+			throw new EOFException();
+		}
+		char[] chars = new char[len];
+		int count = 0;
+		int end = buf.position() + len;
+		while (buf.position() < end) {
+			int b = buf.get() & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				int b2 = buf.get();
+				chars[count++] = (char) (((b & 0x1F) << 6) | (b2 & 0x3F));
+			} else if ((b & 0xF0) == 0xE0) {
+				int b2 = buf.get();
+				int b3 = buf.get();
+				chars[count++] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+			} else {
+				throw new UTFDataFormatException("Malformed string data");
+			}
+		}
+		if (buf.position() != end) {
+			throw new UTFDataFormatException("Malformed string data");
+		}
+		return new String(chars, 0, count);
+	}
+}
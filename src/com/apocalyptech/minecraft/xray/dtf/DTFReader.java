@@ -27,15 +27,60 @@
 package com.apocalyptech.minecraft.xray.dtf;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.zip.GZIPInputStream;
 
 public class DTFReader {
+	// The tag names we look up all the time.  Names read from files get swapped for
+	// these instances, which (being literals) are the same objects the rest of X-Ray
+	// passes to CompoundTag.getTagWithName(), so most lookups match on identity.  It
+	// also means we're not holding thousands of copies of "id" in memory.
+	private static final HashMap<String, String> KNOWN_NAMES = new HashMap<String, String>();
+	static {
+		String[] names = new String[] {
+			"", "Level", "xPos", "zPos", "Blocks", "Data", "SkyLight", "BlockLight",
+			"HeightMap", "Entities", "TileEntities", "LastUpdate", "TerrainPopulated",
+			"id", "x", "y", "z", "Pos", "Motion", "Rotation", "FallDistance", "Fire",
+			"Air", "OnGround", "Health", "HurtTime", "DeathTime", "AttackTime",
+			"Motive", "Dir", "TileX", "TileY", "TileZ", "Items", "Count", "Slot", "Damage",
+			"Player", "Dimension", "Inventory", "SpawnX", "SpawnY", "SpawnZ",
+			"LevelName", "version", "Time", "RandomSeed", "SizeOnDisk"
+		};
+		for (String name : names) {
+			KNOWN_NAMES.put(name, name);
+		}
+	}
+
+	/**
+	 * Returns our canonical copy of the given tag name, if it's one we know about.
+	 */
+	public static String internName(String name) {
+		String known = KNOWN_NAMES.get(name);
+		if (known == null) {
+			return name;
+		}
+		return known;
+	}
+
 	public static Tag readTag(byte tagType, String name, DataInputStream stream) throws IOException {
+		return readTag(tagType, name, stream, null);
+	}
+
+	/**
+	 * Reads a tag, keeping only the parts of it which match the given projection.
+	 * Anything else is skipped over without being parsed.  A null projection keeps
+	 * everything.
+	 */
+	public static Tag readTag(byte tagType, String name, DataInputStream stream, TagProjection projection) throws IOException {
+		if (projection != null && projection.keepsAll()) {
+			projection = null;
+		}
 		short twofiftysix = 256;
 		switch(tagType) {
 			case 0: // end
@@ -67,6 +112,9 @@ public class DTFReader {
 				// quite noticeably slower than just using readFully(), whereas using
 				// readFully() and then doing the conversion ourself seems to be not really
 				// noticeable.
+				//
+				// (Chunk repacks these into a BlockStorage, which usually takes far less
+				// than even the original bytes, so the shorts only live while it's built.)
 				if (name.equals("Blocks"))
 				{
 					short[] data = new short[len];
@@ -98,9 +146,40 @@ public class DTFReader {
 			case 9:
 				byte type 		= stream.readByte();
 				int listLength 	= stream.readInt();
+
+				// Lists of numbers get stored as plain arrays; see ListTag.  Empty
+				// lists (which Minecraft usually writes as byte lists, whatever they're
+				// meant to hold) stay as an empty ArrayList so that value still works.
+				if (listLength > 0) {
+					switch(type) {
+						case 1:
+							byte[] bytes = new byte[listLength];
+							stream.readFully(bytes);
+							return new ListTag(name, bytes);
+						case 3:
+							int[] ints = new int[listLength];
+							for(int i=0;i<listLength;i++) {
+								ints[i] = stream.readInt();
+							}
+							return new ListTag(name, ints);
+						case 5:
+							float[] floats = new float[listLength];
+							for(int i=0;i<listLength;i++) {
+								floats[i] = stream.readFloat();
+							}
+							return new ListTag(name, floats);
+						case 6:
+							double[] doubles = new double[listLength];
+							for(int i=0;i<listLength;i++) {
+								doubles[i] = stream.readDouble();
+							}
+							return new ListTag(name, doubles);
+					}
+				}
+
 				ArrayList<Tag> list = new ArrayList<Tag>();
 				for(int i=0;i<listLength;i++) {
-					Tag t = readTag(type, "", stream);
+					Tag t = readTag(type, "", stream, projection);
 					//System.out.println(t.toString());
 					list.add(t);
 				}
@@ -113,15 +192,104 @@ public class DTFReader {
 					//System.out.println(type + ", " + l);
 					//stream.skip(l);
 					//String tagName = "errorTest";
-					String tagName = stream.readUTF();
-					Tag tag = readTag(type, tagName, stream);
-					//System.out.println(tag.toString());
-					compound.add(tag);
+					String tagName = internName(stream.readUTF());
+					if (projection == null) {
+						compound.add(readTag(type, tagName, stream, null));
+					} else {
+						TagProjection childProjection = projection.child(tagName);
+						if (childProjection == null) {
+							skipTag(type, stream);
+						} else {
+							compound.add(readTag(type, tagName, stream, childProjection));
+						}
+					}
 				}
 				return new CompoundTag(name, compound);
 		}
 		return null;
 	}
+
+	/**
+	 * Skips over the payload of a tag of the given type, without creating
+	 * anything.  Lists of fixed-size values get skipped in one go; compounds
+	 * and other lists are walked a tag at a time.
+	 */
+	public static void skipTag(byte tagType, DataInputStream stream) throws IOException {
+		switch(tagType) {
+			case 0:
+				return;
+			case 7:
+				skipFully(stream, stream.readInt());
+				return;
+			case 8:
+				skipFully(stream, stream.readUnsignedShort());
+				return;
+			case 9:
+				byte type = stream.readByte();
+				int listLength = stream.readInt();
+				int size = fixedSize(type);
+				if (size >= 0) {
+					skipFully(stream, (long) size * listLength);
+				} else {
+					for (int i=0; i<listLength; i++) {
+						skipTag(type, stream);
+					}
+				}
+				return;
+			case 10:
+				while((type = stream.readByte()) != 0) {
+					skipFully(stream, stream.readUnsignedShort());
+					skipTag(type, stream);
+				}
+				return;
+			default:
+				size = fixedSize(tagType);
+				if (size < 0) {
+					throw new IOException("Unknown tag type " + tagType);
+				}
+				skipFully(stream, size);
+		}
+	}
+
+	/**
+	 * The size of the payload for tag types which are always the same size,
+	 * or -1 for everything else.
+	 */
+	private static int fixedSize(byte tagType) {
+		switch(tagType) {
+			case 0:
+				return 0;
+			case 1:
+				return 1;
+			case 2:
+				return 2;
+			case 3:
+			case 5:
+				return 4;
+			case 4:
+			case 6:
+				return 8;
+		}
+		return -1;
+	}
+
+	/**
+	 * DataInputStream.skipBytes() is allowed to skip less than we ask for, so
+	 * keep at it until we've skipped the lot (or run out of data).
+	 */
+	private static void skipFully(DataInputStream stream, long count) throws IOException {
+		while (count > 0) {
+			long skipped = stream.skip(count);
+			if (skipped <= 0) {
+				// skip() doesn't tell us about EOF, so check for ourselves
+				if (stream.read() < 0) {
+					throw new EOFException();
+				}
+				skipped = 1;
+			}
+			count -= skipped;
+		}
+	}
 	
 	/**
 	 * Reads tag data from the given inputstream.  Note that right now we close the stream
@@ -135,11 +303,24 @@ public class DTFReader {
 	 * @throws IOException
 	 */
 	public static Tag readTagData(DataInputStream stream) throws IOException {
+		return readTagData(stream, null);
+	}
+
+	/**
+	 * Reads tag data from the given inputstream, keeping only those tags which match
+	 * the given projection (or everything, if it's null).
+	 * 
+	 * @param stream
+	 * @param projection
+	 * @return
+	 * @throws IOException
+	 */
+	public static Tag readTagData(DataInputStream stream, TagProjection projection) throws IOException {
 		if(stream.available() > 0) {
 			byte type = stream.readByte();
 			if(type != 0){
-				String name = stream.readUTF();
-				Tag t = readTag(type, name, stream);
+				String name = internName(stream.readUTF());
+				Tag t = readTag(type, name, stream, projection);
 				//System.out.println(t);
 				stream.close();
 				return t;
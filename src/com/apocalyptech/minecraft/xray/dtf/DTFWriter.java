@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.dtf;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tags back out in the same format DTFReader reads.  X-Ray itself
+ * never writes anything to a world; this is here so that test worlds can be
+ * generated (see bench/src).
+ *
+ * ShortArrayTags are written as byte arrays, which undoes the widening that
+ * DTFReader does on "Blocks".  Block IDs over 255 can't be stored in this
+ * format, and get truncated.
+ */
+public class DTFWriter {
+
+	/**
+	 * Returns the tag type which the given tag is stored as.
+	 */
+	public static byte getTagType(Tag tag) {
+		if (tag instanceof ByteTag) {
+			return 1;
+		} else if (tag instanceof ShortTag) {
+			return 2;
+		} else if (tag instanceof IntTag) {
+			return 3;
+		} else if (tag instanceof LongTag) {
+			return 4;
+		} else if (tag instanceof FloatTag) {
+			return 5;
+		} else if (tag instanceof DoubleTag) {
+			return 6;
+		} else if (tag instanceof ByteArrayTag || tag instanceof ShortArrayTag) {
+			return 7;
+		} else if (tag instanceof StringTag) {
+			return 8;
+		} else if (tag instanceof ListTag) {
+			return 9;
+		} else if (tag instanceof CompoundTag) {
+			return 10;
+		}
+		return 0;
+	}
+
+	/**
+	 * Writes a complete named tag: its type, its name, and then its payload.
+	 * This is the counterpart to DTFReader.readTagData().
+	 */
+	public static void writeTagData(Tag tag, DataOutputStream stream) throws IOException {
+		byte type = getTagType(tag);
+		if (type == 0) {
+			throw new IOException("Can't write tag of type " + tag.getClass().getName());
+		}
+		stream.writeByte(type);
+		stream.writeUTF(tag.name == null ? "" : tag.name);
+		writeTag(tag, stream);
+	}
+
+	/**
+	 * Writes just the payload of a tag.
+	 */
+	public static void writeTag(Tag tag, DataOutputStream stream) throws IOException {
+		switch(getTagType(tag)) {
+			case 1:
+				stream.writeByte(((ByteTag) tag).value);
+				break;
+			case 2:
+				stream.writeShort(((ShortTag) tag).value);
+				break;
+			case 3:
+				stream.writeInt(((IntTag) tag).value);
+				break;
+			case 4:
+				stream.writeLong(((LongTag) tag).value);
+				break;
+			case 5:
+				stream.writeFloat(((FloatTag) tag).value);
+				break;
+			case 6:
+				stream.writeDouble(((DoubleTag) tag).value);
+				break;
+			case 7:
+				if (tag instanceof ShortArrayTag) {
+					short[] shorts = ((ShortArrayTag) tag).value;
+					byte[] bytes = new byte[shorts.length];
+					for (int i=0; i<shorts.length; i++) {
+						bytes[i] = (byte) shorts[i];
+					}
+					stream.writeInt(bytes.length);
+					stream.write(bytes);
+				} else {
+					byte[] bytes = ((ByteArrayTag) tag).value;
+					stream.writeInt(bytes.length);
+					stream.write(bytes);
+				}
+				break;
+			case 8:
+				stream.writeUTF(((StringTag) tag).value);
+				break;
+			case 9:
+				writeList((ListTag) tag, stream);
+				break;
+			case 10:
+				for (Tag t : ((CompoundTag) tag).value) {
+					if (getTagType(t) != 0) {
+						writeTagData(t, stream);
+					}
+				}
+				stream.writeByte(0);
+				break;
+			default:
+				throw new IOException("Can't write tag of type " + tag.getClass().getName());
+		}
+	}
+
+	private static void writeList(ListTag list, DataOutputStream stream) throws IOException {
+		byte type = list.getElementType();
+		int size = list.size();
+
+		// Minecraft writes empty lists as byte lists, so we do too
+		if (type == 0) {
+			type = 1;
+		}
+		stream.writeByte(type);
+		stream.writeInt(size);
+
+		if (list.value == null) {
+			for (int i=0; i<size; i++) {
+				switch(type) {
+					case 1:
+						stream.writeByte(list.getByte(i));
+						break;
+					case 3:
+						stream.writeInt(list.getInt(i));
+						break;
+					case 5:
+						stream.writeFloat(list.getFloat(i));
+						break;
+					case 6:
+						stream.writeDouble(list.getDouble(i));
+						break;
+				}
+			}
+		} else {
+			for (Tag t : list.value) {
+				writeTag(t, stream);
+			}
+		}
+	}
+
+	/**
+	 * Writes the given tag out to a gzipped file, like level.dat.
+	 */
+	public static void writeDTFFile(Tag tag, File f) throws IOException {
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(f))));
+		try {
+			writeTagData(tag, stream);
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -28,18 +28,153 @@ package com.apocalyptech.minecraft.xray.dtf;
 
 import java.util.ArrayList;
 
+/**
+ * A TAG_List.  Lists of compounds, strings and so on keep their elements as
+ * Tags in value, as always.  Lists of doubles, floats, ints or bytes (entity
+ * positions, motion and rotation, mostly) are stored in a plain array of that
+ * type instead, and value is null; use size() and getDouble() and friends to
+ * read those, or getTag() if you really need a Tag.
+ */
 public class ListTag extends Tag {
 	public ArrayList<Tag> value;
+
+	// The tag type of our elements, as in the file
+	private byte elementType;
+
+	// At most one of these is set, for primitive lists
+	private double[] doubles;
+	private float[] floats;
+	private int[] ints;
+	private byte[] bytes;
+
 	public ListTag(String name, ArrayList<Tag> value) {
 		this.name = name;
 		this.value = value;
+		this.elementType = 0;
+		if (value.size() > 0) {
+			this.elementType = DTFWriter.getTagType(value.get(0));
+		}
+	}
+	public ListTag(String name, double[] values) {
+		this.name = name;
+		this.elementType = 6;
+		this.doubles = values;
+	}
+	public ListTag(String name, float[] values) {
+		this.name = name;
+		this.elementType = 5;
+		this.floats = values;
+	}
+	public ListTag(String name, int[] values) {
+		this.name = name;
+		this.elementType = 3;
+		this.ints = values;
+	}
+	public ListTag(String name, byte[] values) {
+		this.name = name;
+		this.elementType = 1;
+		this.bytes = values;
 	}
+
+	/**
+	 * The tag type of the list's elements
+	 */
+	public byte getElementType() {
+		return elementType;
+	}
+
+	public int size() {
+		if (value != null) {
+			return value.size();
+		} else if (doubles != null) {
+			return doubles.length;
+		} else if (floats != null) {
+			return floats.length;
+		} else if (ints != null) {
+			return ints.length;
+		} else {
+			return bytes.length;
+		}
+	}
+
+	/**
+	 * Returns the given element as a double.  Works for any numeric list.
+	 */
+	public double getDouble(int i) {
+		if (doubles != null) {
+			return doubles[i];
+		} else if (floats != null) {
+			return floats[i];
+		} else if (ints != null) {
+			return ints[i];
+		} else if (bytes != null) {
+			return bytes[i];
+		}
+		return ((DoubleTag) value.get(i)).value;
+	}
+
+	/**
+	 * Returns the given element as a float.  Works for any numeric list.
+	 */
+	public float getFloat(int i) {
+		if (floats != null) {
+			return floats[i];
+		} else if (doubles != null) {
+			return (float) doubles[i];
+		} else if (ints != null) {
+			return ints[i];
+		} else if (bytes != null) {
+			return bytes[i];
+		}
+		return ((FloatTag) value.get(i)).value;
+	}
+
+	/**
+	 * Returns the given element of an int or byte list as an int.
+	 */
+	public int getInt(int i) {
+		if (ints != null) {
+			return ints[i];
+		} else if (bytes != null) {
+			return bytes[i];
+		}
+		return ((IntTag) value.get(i)).value;
+	}
+
+	/**
+	 * Returns the given element of a byte list.
+	 */
+	public byte getByte(int i) {
+		if (bytes != null) {
+			return bytes[i];
+		}
+		return ((ByteTag) value.get(i)).value;
+	}
+
+	/**
+	 * Returns the given element as a Tag.  For primitive lists this creates a new
+	 * Tag every time.
+	 */
+	public Tag getTag(int i) {
+		if (value != null) {
+			return value.get(i);
+		} else if (doubles != null) {
+			return new DoubleTag("", doubles[i]);
+		} else if (floats != null) {
+			return new FloatTag("", floats[i]);
+		} else if (ints != null) {
+			return new IntTag("", ints[i]);
+		} else {
+			return new ByteTag("", bytes[i]);
+		}
+	}
+
 	public String toString(int tab) {
 		String f = tab(tab);
 		f += "TAG_List(\"" + name + "\")\n";
 		f += tab(tab) + "(\n";
-		for(Tag t : value) {
-			f += t.toString(tab+1);
+		for(int i=0; i<size(); i++) {
+			f += getTag(i).toString(tab+1);
 		}
 		f += tab(tab) + "}\n";
 		
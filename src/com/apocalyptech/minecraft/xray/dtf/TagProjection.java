@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2010-2011, Vincent Vollers
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Minecraft X-Ray team nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL VINCENT VOLLERS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.apocalyptech.minecraft.xray.dtf;
+
+import java.util.HashMap;
+
+/**
+ * The set of tags we actually want out of a DTF file.  Chunk files in
+ * particular carry a lot of data (lighting, heightmaps, tile entities, full
+ * entity state) which we never look at, and DTFReader can skip straight over
+ * all of that rather than building Tag objects out of it.
+ * 
+ * Paths are dot-separated tag names, starting below the root tag, so
+ * "Level.Blocks" keeps the Blocks tag inside the root's Level compound.  A
+ * path which ends at a compound or list keeps everything beneath it.  Lists
+ * are transparent: the elements of a list are filtered using the list's own
+ * entry, so "Level.Entities.id" keeps just the id of every entity.
+ */
+public class TagProjection {
+	private HashMap<String, TagProjection> children;
+
+	public TagProjection() {
+		this.children = new HashMap<String, TagProjection>();
+	}
+
+	/**
+	 * Adds a path to keep, and returns this projection so calls can be chained.
+	 */
+	public TagProjection add(String path) {
+		TagProjection node = this;
+		for (String name : path.split("\\.")) {
+			TagProjection child = node.children.get(name);
+			if (child == null) {
+				child = new TagProjection();
+				node.children.put(name, child);
+			}
+			node = child;
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the projection for the named child tag, or null if that tag
+	 * shouldn't be read at all.
+	 */
+	public TagProjection child(String name) {
+		return this.children.get(name);
+	}
+
+	/**
+	 * Returns true if everything beneath this point should be kept.
+	 */
+	public boolean keepsAll() {
+		return this.children.isEmpty();
+	}
+}